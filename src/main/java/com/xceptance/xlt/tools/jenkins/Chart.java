@@ -15,12 +15,17 @@
  */
 package com.xceptance.xlt.tools.jenkins;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+
+import com.xceptance.xlt.tools.jenkins.util.RingBuffer;
 
 public class Chart<X, Y>
 {
@@ -75,37 +80,81 @@ public class Chart<X, Y>
 
     public String getDataString(String toolTipFormatter)
     {
-        String data = "[";
-        Iterator<ChartLine<X, Y>> iterator = lines.iterator();
-        while (iterator.hasNext())
+        final StringBuilder sb = new StringBuilder();
+        try
+        {
+            writeDataString(sb, toolTipFormatter);
+        }
+        catch (IOException e)
         {
-            data += iterator.next().getDataString(toolTipFormatter) + ",";
+            // cannot happen with a StringBuilder
+            throw new IllegalStateException(e);
         }
-        data += "]";
-        return data;
+        return sb.toString();
+    }
+
+    /**
+     * Writes the JavaScript array of all lines of this chart to the given output.
+     *
+     * @param out
+     *            the output
+     * @param toolTipFormatter
+     *            the JavaScript function used to format the tool tips
+     * @throws IOException
+     *             thrown if writing to the output failed
+     */
+    public void writeDataString(Appendable out, String toolTipFormatter) throws IOException
+    {
+        out.append('[');
+        for (ChartLine<X, Y> eachLine : lines)
+        {
+            eachLine.writeDataString(out, toolTipFormatter);
+            out.append(',');
+        }
+        out.append(']');
     }
 
     public String getXData()
     {
-        List<X> processedValues = new ArrayList<X>();
+        final StringBuilder sb = new StringBuilder();
+        try
+        {
+            writeXData(sb);
+        }
+        catch (IOException e)
+        {
+            // cannot happen with a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the JSON object that maps each x value of this chart to the data object values of its first chart line value.
+     *
+     * @param out
+     *            the output
+     * @throws IOException
+     *             thrown if writing to the output failed
+     */
+    public void writeXData(Appendable out) throws IOException
+    {
+        final Set<X> processedValues = new HashSet<X>();
 
-        String data = "{";
+        out.append('{');
         for (ChartLine<X, Y> eachLine : lines)
         {
-            Iterator<ChartLineValue<X, Y>> iterator = eachLine.getValues().iterator();
-            while (iterator.hasNext())
+            for (ChartLineValue<X, Y> value : eachLine.getValues())
             {
-                ChartLineValue<X, Y> value = iterator.next();
-                if (!processedValues.contains(value.xValue))
+                if (processedValues.add(value.xValue))
                 {
-                    processedValues.add(value.xValue);
-
-                    data += "\"" + value.xValue + "\":{" + value.getDataObjectValues() + "},";
+                    out.append('"').append(String.valueOf(value.xValue)).append("\":{");
+                    value.writeDataObjectValues(out);
+                    out.append("},");
                 }
             }
         }
-        data += "}";
-        return data;
+        out.append('}');
     }
 
     @Override
@@ -134,7 +183,7 @@ public class Chart<X, Y>
     public static class ChartLine<X, Y>
     {
 
-        private final List<ChartLineValue<X, Y>> values = new ArrayList<Chart.ChartLineValue<X, Y>>(20);
+        private List<ChartLineValue<X, Y>> values;
 
         private final String lineID;
 
@@ -150,6 +199,20 @@ public class Chart<X, Y>
             this.maxCount = maxCount;
             this.name = name;
             this.showNoValues = showNoValues;
+            this.values = new RingBuffer<ChartLineValue<X, Y>>(maxCount);
+        }
+
+        /**
+         * Lines stored by older versions hold their values in a plain list.
+         */
+        protected Object readResolve()
+        {
+            if (!(values instanceof RingBuffer))
+            {
+                values = values == null ? new RingBuffer<ChartLineValue<X, Y>>(maxCount)
+                                        : new RingBuffer<ChartLineValue<X, Y>>(maxCount, values);
+            }
+            return this;
         }
 
         public String getLineID()
@@ -169,32 +232,50 @@ public class Chart<X, Y>
 
         public String getDataString(String toolTipFormatter)
         {
-            String lineObject = "{";
+            final StringBuilder sb = new StringBuilder();
+            try
+            {
+                writeDataString(sb, toolTipFormatter);
+            }
+            catch (IOException e)
+            {
+                // cannot happen with a StringBuilder
+                throw new IllegalStateException(e);
+            }
+            return sb.toString();
+        }
 
-            String data = "data:[";
+        /**
+         * Writes the JavaScript object of this line, i.e. its data points, tool tip formatter and label, to the given output.
+         *
+         * @param out
+         *            the output
+         * @param toolTipFormatter
+         *            the JavaScript function used to format the tool tips
+         * @throws IOException
+         *             thrown if writing to the output failed
+         */
+        public void writeDataString(Appendable out, String toolTipFormatter) throws IOException
+        {
+            out.append("{data:[");
             Iterator<ChartLineValue<X, Y>> iterator = values.iterator();
             while (iterator.hasNext())
             {
-                data += iterator.next().getDataString();
+                iterator.next().writeDataString(out);
                 if (iterator.hasNext())
                 {
-                    data += ",";
+                    out.append(',');
                 }
             }
-            data += "],";
-
-            String mouse = "mouse:{";
-            mouse += "trackFormatter:function(o){ return (" + toolTipFormatter + ")(\"" + name + "\", o, xData);},";
+            out.append("],");
 
-            // mouse += "trackFormatter:function(o){ var xData = " + chart.getXData() + "; return (" + toolTipFormatter
-            // + ")(\"" + name +
-            // "\", o, xData);},";
-            mouse += "},";
+            out.append("mouse:{");
+            out.append("trackFormatter:function(o){ return (").append(toolTipFormatter).append(")(\"").append(name)
+               .append("\", o, xData);},");
+            out.append("},");
 
-            String label = "label:\"" + name + "\",";
-
-            lineObject += data + mouse + label + "}";
-            return lineObject;
+            out.append("label:\"").append(name).append("\",");
+            out.append('}');
         }
 
         public List<ChartLineValue<X, Y>> getValues()
@@ -204,11 +285,8 @@ public class Chart<X, Y>
 
         public void addLineValue(ChartLineValue<X, Y> value)
         {
+            // drops the oldest value once the maximum count is reached
             values.add(value);
-            if (!values.isEmpty() && values.size() > maxCount)
-            {
-                values.remove(0);
-            }
         }
 
         public String getName()
@@ -260,19 +338,46 @@ public class Chart<X, Y>
             dataObjectValues.put(key, value);
         }
 
+        public String getDataObjectValue(String key)
+        {
+            return dataObjectValues.get(key);
+        }
+
         public String getDataObjectValues()
         {
-            String data = "";
-            if (!dataObjectValues.isEmpty())
+            final StringBuilder sb = new StringBuilder();
+            try
+            {
+                writeDataObjectValues(sb);
+            }
+            catch (IOException e)
+            {
+                // cannot happen with a StringBuilder
+                throw new IllegalStateException(e);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Writes the data object values as comma-separated <code>key:value</code> pairs to the given output.
+         *
+         * @param out
+         *            the output
+         * @throws IOException
+         *             thrown if writing to the output failed
+         */
+        public void writeDataObjectValues(Appendable out) throws IOException
+        {
+            boolean first = true;
+            for (Entry<String, String> eachEntry : dataObjectValues.entrySet())
             {
-                for (Entry<String, String> eachEntry : dataObjectValues.entrySet())
+                if (!first)
                 {
-                    data += "," + eachEntry.getKey() + ":" + eachEntry.getValue();
+                    out.append(',');
                 }
-                data = data.substring(1);
+                first = false;
+                out.append(eachEntry.getKey()).append(':').append(eachEntry.getValue());
             }
-
-            return data;
         }
 
         public String getDataString()
@@ -280,6 +385,24 @@ public class Chart<X, Y>
             return "[" + String.valueOf(xValue) + "," + String.valueOf(yValue) + "]";
         }
 
+        /**
+         * Writes the JavaScript array <code>[x,y]</code> of this value to the given output.
+         *
+         * @param out
+         *            the output
+         * @throws IOException
+         *             thrown if writing to the output failed
+         */
+        public void writeDataString(Appendable out) throws IOException
+        {
+            out.append('[').append(String.valueOf(xValue)).append(',').append(String.valueOf(yValue)).append(']');
+        }
+
+        public X getXValue()
+        {
+            return xValue;
+        }
+
         public Y getYValue()
         {
             return yValue;
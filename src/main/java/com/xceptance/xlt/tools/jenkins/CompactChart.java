@@ -0,0 +1,591 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.json.JSONObject;
+
+import com.xceptance.xlt.tools.jenkins.Chart.ChartLine;
+import com.xceptance.xlt.tools.jenkins.Chart.ChartLineValue;
+
+/**
+ * A chart of build values that stores its points in primitive arrays. Unlike {@link Chart}, the points do not carry their own
+ * data object values. Instead, each x value of the chart refers to a row of a {@link BuildTable} that holds the build number
+ * and build time, and which is shared by all charts of a load test step.
+ * <p>
+ * The rendering methods produce the same output as the ones of {@link Chart}.
+ */
+public class CompactChart
+{
+    private final String chartID;
+
+    private final String title;
+
+    private final BuildTable builds;
+
+    private final List<Line> lines = new ArrayList<Line>(3);
+
+    private int xIndex;
+
+    /**
+     * The build table row of each x value.
+     */
+    private int[] rows = { -1 };
+
+    public CompactChart(final String chartID, final String title, final BuildTable builds)
+    {
+        this.chartID = chartID;
+        this.title = title;
+        this.builds = builds;
+    }
+
+    /**
+     * Converts the given charts whose values carry the build number, build time, and show-build-number flag as data object
+     * values.
+     *
+     * @param charts
+     *            the charts to convert
+     * @return the converted charts, all sharing one build table
+     */
+    public static List<CompactChart> of(final List<Chart<Integer, Double>> charts)
+    {
+        final BuildTable builds = new BuildTable();
+        final Map<String, Integer> rowByBuild = new HashMap<String, Integer>();
+
+        final List<CompactChart> result = new ArrayList<CompactChart>(charts.size());
+        for (final Chart<Integer, Double> chart : charts)
+        {
+            final CompactChart compactChart = new CompactChart(chart.getChartID(), chart.getTitle(), builds);
+            for (final ChartLine<Integer, Double> line : chart.getLines())
+            {
+                final Line compactLine = new Line(line.getLineID(), line.getName(), line.getMaxCount(), line.getShowNoValues());
+                for (final ChartLineValue<Integer, Double> value : line.getValues())
+                {
+                    final int x = value.getXValue();
+                    if (compactChart.getBuildRow(x) < 0)
+                    {
+                        final String buildNumber = StringUtils.strip(value.getDataObjectValue("buildNumber"), "\"");
+                        final String buildTime = StringUtils.strip(value.getDataObjectValue("buildTime"), "\"");
+                        final boolean showBuildNumber = Boolean.parseBoolean(value.getDataObjectValue("showBuildNumber"));
+
+                        final String key = buildNumber + "\n" + buildTime + "\n" + showBuildNumber;
+                        Integer row = rowByBuild.get(key);
+                        if (row == null)
+                        {
+                            row = builds.add(toInt(buildNumber), StringUtils.defaultString(buildTime), showBuildNumber);
+                            rowByBuild.put(key, row);
+                        }
+                        compactChart.setRow(x, row);
+                    }
+                    compactLine.addValue(x, value.getYValue());
+                }
+                compactLine.trimToSize();
+                compactChart.lines.add(compactLine);
+            }
+            compactChart.xIndex = chart.getXIndex();
+            if (compactChart.rows.length > compactChart.xIndex)
+            {
+                compactChart.rows = Arrays.copyOf(compactChart.rows, Math.max(compactChart.xIndex, 1));
+            }
+            result.add(compactChart);
+        }
+        return result;
+    }
+
+    private static int toInt(final String s)
+    {
+        try
+        {
+            return Integer.parseInt(s);
+        }
+        catch (final NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    public String getChartID()
+    {
+        return chartID;
+    }
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public BuildTable getBuilds()
+    {
+        return builds;
+    }
+
+    public List<Line> getLines()
+    {
+        return lines;
+    }
+
+    public Line getLine(final String lineID)
+    {
+        for (final Line eachLine : lines)
+        {
+            if (eachLine.getLineID().equals(lineID))
+            {
+                return eachLine;
+            }
+        }
+        return null;
+    }
+
+    public int getXIndex()
+    {
+        return xIndex;
+    }
+
+    /**
+     * Completes the current x value, which refers to the given build table row, and moves on to the next one.
+     *
+     * @param buildRow
+     *            the build table row of the current x value
+     */
+    public void nextXIndex(final int buildRow)
+    {
+        setRow(xIndex, buildRow);
+        xIndex++;
+    }
+
+    private void setRow(final int x, final int row)
+    {
+        if (x >= rows.length)
+        {
+            final int oldLength = rows.length;
+            rows = Arrays.copyOf(rows, Math.max(x + 1, oldLength * 2));
+            Arrays.fill(rows, oldLength, rows.length, -1);
+        }
+        rows[x] = row;
+    }
+
+    /**
+     * Returns the build table row of the given x value.
+     *
+     * @return the row, or -1 if the x value does not refer to any
+     */
+    public int getBuildRow(final int x)
+    {
+        return x < rows.length ? rows[x] : -1;
+    }
+
+    public String getDataString(final String toolTipFormatter)
+    {
+        final StringBuilder sb = new StringBuilder();
+        try
+        {
+            writeDataString(sb, toolTipFormatter);
+        }
+        catch (IOException e)
+        {
+            // cannot happen with a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the JavaScript array of all lines of this chart to the given output.
+     *
+     * @see Chart#writeDataString(Appendable, String)
+     */
+    public void writeDataString(final Appendable out, final String toolTipFormatter) throws IOException
+    {
+        out.append('[');
+        for (final Line eachLine : lines)
+        {
+            eachLine.writeDataString(out, toolTipFormatter);
+            out.append(',');
+        }
+        out.append(']');
+    }
+
+    public String getXData()
+    {
+        final StringBuilder sb = new StringBuilder();
+        try
+        {
+            writeXData(sb);
+        }
+        catch (IOException e)
+        {
+            // cannot happen with a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the JSON object that maps each x value of this chart to the build number and build time.
+     *
+     * @see Chart#writeXData(Appendable)
+     */
+    public void writeXData(final Appendable out) throws IOException
+    {
+        final boolean[] processed = new boolean[xIndex + 1];
+
+        out.append('{');
+        for (final Line eachLine : lines)
+        {
+            for (int i = 0; i < eachLine.size(); i++)
+            {
+                final int x = eachLine.getX(i);
+                if (x >= processed.length || !processed[x])
+                {
+                    if (x < processed.length)
+                    {
+                        processed[x] = true;
+                    }
+                    out.append('"').append(String.valueOf(x)).append("\":{");
+                    final int row = getBuildRow(x);
+                    if (row >= 0)
+                    {
+                        builds.writeDataObjectValues(out, row);
+                    }
+                    out.append("},");
+                }
+            }
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes this chart as JSON object to the given output, for example:
+     *
+     * <pre>
+     * {"id":"runtime","title":"Runtime","lines":[{"id":"avg","name":"Average","data":[[0,120.0],[1,118.5]]}],
+     *  "xData":{"0":{"buildNumber":12,"showBuildNumber":true,"buildTime":"2020-01-01 12:00"},"1":{...}}}
+     * </pre>
+     *
+     * @param out
+     *            the output
+     * @param fromBuildNumber
+     *            the lowest build number whose points to write
+     * @throws IOException
+     *             thrown if writing to the output failed
+     */
+    public void writeJson(final Appendable out, final int fromBuildNumber) throws IOException
+    {
+        final boolean[] written = new boolean[xIndex + 1];
+
+        out.append("{\"id\":").append(JSONObject.quote(chartID));
+        out.append(",\"title\":").append(JSONObject.quote(title));
+        out.append(",\"lines\":[");
+        for (int l = 0; l < lines.size(); l++)
+        {
+            final Line line = lines.get(l);
+            if (l > 0)
+            {
+                out.append(',');
+            }
+            out.append("{\"id\":").append(JSONObject.quote(line.getLineID()));
+            out.append(",\"name\":").append(JSONObject.quote(line.getName()));
+            out.append(",\"data\":[");
+            boolean first = true;
+            for (int i = 0; i < line.size(); i++)
+            {
+                final int x = line.getX(i);
+                final int row = getBuildRow(x);
+                if (row >= 0 && builds.getBuildNumber(row) < fromBuildNumber)
+                {
+                    continue;
+                }
+                if (x < written.length)
+                {
+                    written[x] = true;
+                }
+
+                if (!first)
+                {
+                    out.append(',');
+                }
+                first = false;
+
+                final double y = line.getY(i);
+                out.append('[').append(String.valueOf(x)).append(',');
+                out.append(Double.isNaN(y) || Double.isInfinite(y) ? "null" : String.valueOf(y)).append(']');
+            }
+            out.append("]}");
+        }
+        out.append("],\"xData\":{");
+        boolean first = true;
+        for (int x = 0; x < written.length; x++)
+        {
+            final int row = getBuildRow(x);
+            if (written[x] && row >= 0)
+            {
+                if (!first)
+                {
+                    out.append(',');
+                }
+                first = false;
+
+                out.append('"').append(String.valueOf(x)).append("\":{\"buildNumber\":");
+                out.append(String.valueOf(builds.getBuildNumber(row)));
+                out.append(",\"showBuildNumber\":").append(Boolean.toString(builds.isShowBuildNumber(row)));
+                out.append(",\"buildTime\":").append(JSONObject.quote(builds.getBuildTime(row))).append('}');
+            }
+        }
+        out.append("}}");
+    }
+
+    /**
+     * A chart line whose points are kept in a bounded ring buffer of primitive x and y values.
+     */
+    public static class Line
+    {
+        private final String lineID;
+
+        private final String name;
+
+        private final int maxCount;
+
+        private final boolean showNoValues;
+
+        private int[] x = new int[1];
+
+        private double[] y = new double[1];
+
+        /**
+         * The index of the oldest point.
+         */
+        private int start;
+
+        private int size;
+
+        public Line(final String lineID, final String name, final int maxCount, final boolean showNoValues)
+        {
+            this.lineID = lineID;
+            this.name = name;
+            this.maxCount = maxCount;
+            this.showNoValues = showNoValues;
+        }
+
+        public String getLineID()
+        {
+            return lineID;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getMaxCount()
+        {
+            return maxCount;
+        }
+
+        public boolean getShowNoValues()
+        {
+            return showNoValues;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * Returns the x value of the i-th point, the oldest point being the first one.
+         */
+        public int getX(final int i)
+        {
+            return x[(start + i) % x.length];
+        }
+
+        /**
+         * Returns the y value of the i-th point, the oldest point being the first one.
+         */
+        public double getY(final int i)
+        {
+            return y[(start + i) % y.length];
+        }
+
+        /**
+         * Adds a point. If the line already holds the maximum number of points, the oldest one is dropped.
+         */
+        public void addValue(final int xValue, final double yValue)
+        {
+            if (maxCount <= 0)
+            {
+                return;
+            }
+
+            if (size == maxCount)
+            {
+                x[start] = xValue;
+                y[start] = yValue;
+                start = (start + 1) % x.length;
+                return;
+            }
+
+            if (size == x.length)
+            {
+                resize(Math.min(maxCount, Math.max(1, x.length * 2)));
+            }
+
+            final int i = (start + size) % x.length;
+            x[i] = xValue;
+            y[i] = yValue;
+            size++;
+        }
+
+        /**
+         * Releases any unused capacity.
+         */
+        public void trimToSize()
+        {
+            if (size < x.length)
+            {
+                resize(Math.max(1, size));
+            }
+        }
+
+        private void resize(final int capacity)
+        {
+            final int[] newX = new int[capacity];
+            final double[] newY = new double[capacity];
+            for (int i = 0; i < size; i++)
+            {
+                newX[i] = getX(i);
+                newY[i] = getY(i);
+            }
+            x = newX;
+            y = newY;
+            start = 0;
+        }
+
+        public String getDataString(final String toolTipFormatter)
+        {
+            final StringBuilder sb = new StringBuilder();
+            try
+            {
+                writeDataString(sb, toolTipFormatter);
+            }
+            catch (IOException e)
+            {
+                // cannot happen with a StringBuilder
+                throw new IllegalStateException(e);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Writes the JavaScript object of this line, i.e. its data points, tool tip formatter and label, to the given output.
+         *
+         * @see ChartLine#writeDataString(Appendable, String)
+         */
+        public void writeDataString(final Appendable out, final String toolTipFormatter) throws IOException
+        {
+            out.append("{data:[");
+            for (int i = 0; i < size; i++)
+            {
+                if (i > 0)
+                {
+                    out.append(',');
+                }
+                out.append('[').append(String.valueOf(getX(i))).append(',').append(String.valueOf(getY(i))).append(']');
+            }
+            out.append("],");
+
+            out.append("mouse:{");
+            out.append("trackFormatter:function(o){ return (").append(toolTipFormatter).append(")(\"").append(name)
+               .append("\", o, xData);},");
+            out.append("},");
+
+            out.append("label:\"").append(name).append("\",");
+            out.append('}');
+        }
+    }
+
+    /**
+     * The build number, build time, and show-build-number flag of the builds shown in the charts of a load test step, one
+     * row per build.
+     */
+    public static class BuildTable
+    {
+        private int size;
+
+        private int[] buildNumbers = new int[1];
+
+        private String[] buildTimes = new String[1];
+
+        private boolean[] showBuildNumbers = new boolean[1];
+
+        /**
+         * Adds a row.
+         *
+         * @return the index of the new row
+         */
+        public int add(final int buildNumber, final String buildTime, final boolean showBuildNumber)
+        {
+            if (size == buildNumbers.length)
+            {
+                final int capacity = size * 2;
+                buildNumbers = Arrays.copyOf(buildNumbers, capacity);
+                buildTimes = Arrays.copyOf(buildTimes, capacity);
+                showBuildNumbers = Arrays.copyOf(showBuildNumbers, capacity);
+            }
+            buildNumbers[size] = buildNumber;
+            buildTimes[size] = buildTime;
+            showBuildNumbers[size] = showBuildNumber;
+            return size++;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        public int getBuildNumber(final int row)
+        {
+            return buildNumbers[row];
+        }
+
+        public String getBuildTime(final int row)
+        {
+            return buildTimes[row];
+        }
+
+        public boolean isShowBuildNumber(final int row)
+        {
+            return showBuildNumbers[row];
+        }
+
+        /**
+         * Writes the data object values of the given row in the same format as {@link ChartLineValue#writeDataObjectValues}.
+         */
+        void writeDataObjectValues(final Appendable out, final int row) throws IOException
+        {
+            out.append("buildNumber:\"").append(String.valueOf(buildNumbers[row])).append('"');
+            out.append(",showBuildNumber:").append(Boolean.toString(showBuildNumbers[row]));
+            out.append(",buildTime:\"").append(buildTimes[row]).append('"');
+        }
+    }
+}
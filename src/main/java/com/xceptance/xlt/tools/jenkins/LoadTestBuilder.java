@@ -29,6 +29,7 @@ import com.xceptance.xlt.tools.jenkins.config.option.DiffReportOption;
 import com.xceptance.xlt.tools.jenkins.config.option.MarkCriticalOption;
 import com.xceptance.xlt.tools.jenkins.config.option.SummaryReportOption;
 import com.xceptance.xlt.tools.jenkins.config.option.TrendReportOption;
+import com.xceptance.xlt.tools.jenkins.util.FolderTransfer;
 
 import hudson.FilePath;
 import hudson.Launcher;
@@ -98,6 +99,11 @@ public class LoadTestBuilder extends Builder implements SimpleBuildStep, LoadTes
     @CheckForNull
     private Boolean archiveResults;
 
+    @CheckForNull
+    private Integer archiveCompressionLevel;
+
+    private boolean packArchivedResults;
+
     /*
      * Backward compatibility
      */
@@ -149,6 +155,7 @@ public class LoadTestBuilder extends Builder implements SimpleBuildStep, LoadTes
 
         // misc.
         this.archiveResults = getDescriptor().getDefaultArchiveResults();
+        this.archiveCompressionLevel = getDescriptor().getDefaultArchiveCompressionLevel();
     }
 
     @Nonnull
@@ -421,6 +428,12 @@ public class LoadTestBuilder extends Builder implements SimpleBuildStep, LoadTes
         return diffReportOption != null ? diffReportOption.getCriteriaFile() : null;
     }
 
+    @Override
+    public boolean getDiffReportMetricsOnly()
+    {
+        return diffReportOption != null && diffReportOption.isMetricsOnly();
+    }
+
     @CheckForNull
     public String getAdditionalMCPropertiesFile()
     {
@@ -445,6 +458,31 @@ public class LoadTestBuilder extends Builder implements SimpleBuildStep, LoadTes
         return archiveResults;
     }
 
+    @DataBoundSetter
+    public void setArchiveCompressionLevel(final int archiveCompressionLevel)
+    {
+        this.archiveCompressionLevel = Math.max(FolderTransfer.NO_COMPRESSION,
+                                                Math.min(FolderTransfer.MAX_COMPRESSION, archiveCompressionLevel));
+    }
+
+    @Override
+    public int getArchiveCompressionLevel()
+    {
+        return archiveCompressionLevel;
+    }
+
+    @DataBoundSetter
+    public void setPackArchivedResults(final boolean packArchivedResults)
+    {
+        this.packArchivedResults = packArchivedResults;
+    }
+
+    @Override
+    public boolean getPackArchivedResults()
+    {
+        return packArchivedResults;
+    }
+
     @Override
     public XltDescriptor getDescriptor()
     {
@@ -486,6 +524,10 @@ public class LoadTestBuilder extends Builder implements SimpleBuildStep, LoadTes
         {
             archiveResults = getDescriptor().getDefaultArchiveResults();
         }
+        if (archiveCompressionLevel == null)
+        {
+            archiveCompressionLevel = getDescriptor().getDefaultArchiveCompressionLevel();
+        }
 
         return this;
     }
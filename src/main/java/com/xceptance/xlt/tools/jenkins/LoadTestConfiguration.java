@@ -21,6 +21,10 @@ public interface LoadTestConfiguration
 {
     public boolean getArchiveResults();
 
+    public int getArchiveCompressionLevel();
+
+    public boolean getPackArchivedResults();
+
     public AgentControllerConfig getAgentControllerConfig();
 
     public Integer getInitialResponseTimeout();
@@ -68,4 +72,6 @@ public interface LoadTestConfiguration
     public String getDiffReportBaseline();
 
     public String getDiffReportCriteriaFile();
+
+    public boolean getDiffReportMetricsOnly();
 }
@@ -35,7 +35,9 @@ public class PlotValuesConfiguration
      xPath,
      condition,
      plotID,
-     name
+     name,
+     maxIncrease,
+     maxDecrease
     };
 
     public static enum CONFIG_PLOT_PARAMETER
@@ -234,13 +236,20 @@ public class PlotValuesConfiguration
 
         private final String plotID;
 
-        private Value(final String aId, final String aName, final String aXPath, final String aCondition, final String aPlotID)
+        private final String maxIncrease;
+
+        private final String maxDecrease;
+
+        private Value(final String aId, final String aName, final String aXPath, final String aCondition, final String aPlotID,
+                      final String aMaxIncrease, final String aMaxDecrease)
         {
             id = aId;
             name = aName;
             xpath = aXPath;
             condition = aCondition;
             plotID = aPlotID;
+            maxIncrease = aMaxIncrease;
+            maxDecrease = aMaxDecrease;
         }
 
         private static Value fromJson(final JSONObject json) throws JSONException
@@ -255,10 +264,12 @@ public class PlotValuesConfiguration
                 final String xpath = json.getString(CONFIG_VALUE_PARAMETER.xPath.name());
                 final String cond = json.getString(CONFIG_VALUE_PARAMETER.condition.name());
                 final String plotID = json.getString(CONFIG_VALUE_PARAMETER.plotID.name());
+                final String maxIncrease = json.optString(CONFIG_VALUE_PARAMETER.maxIncrease.name());
+                final String maxDecrease = json.optString(CONFIG_VALUE_PARAMETER.maxDecrease.name());
 
                 if (StringUtils.isNoneBlank(id, xpath, plotID))
                 {
-                    return new Value(id, name, xpath, cond, plotID);
+                    return new Value(id, name, xpath, cond, plotID, maxIncrease, maxDecrease);
                 }
             }
 
@@ -290,5 +301,23 @@ public class PlotValuesConfiguration
             return plotID;
         }
 
+        /**
+         * Returns by how much the value may increase compared to the baseline of the difference report, either relative
+         * (e.g. "10%") or absolute (e.g. "200"). Empty if not limited.
+         */
+        public String getMaxIncrease()
+        {
+            return maxIncrease;
+        }
+
+        /**
+         * Returns by how much the value may decrease compared to the baseline of the difference report, either relative
+         * (e.g. "10%") or absolute (e.g. "200"). Empty if not limited.
+         */
+        public String getMaxDecrease()
+        {
+            return maxDecrease;
+        }
+
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
+
+import hudson.model.Job;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * Generates job-level reports (trend and summary reports) in the background on the master, so builds do not wait for them.
+ * <p>
+ * Requests are coalesced per job, load test step and report: while a report is being generated or waiting for a free
+ * thread, further requests replace each other, so at most one more generation follows, which uses the most recent
+ * request. When a report is done, the cached chart model of the step is discarded as the report's availability may have
+ * changed.
+ */
+public final class ReportGenerationQueue
+{
+    public static final String SUMMARY_REPORT = "summary";
+
+    public static final String TREND_REPORT = "trend";
+
+    /**
+     * The maximum number of reports generated at the same time.
+     */
+    private static final int POOL_SIZE = 2;
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(POOL_SIZE,
+                                                                                 new NamingThreadFactory(new DaemonThreadFactory(),
+                                                                                                         "XLT report generation"));
+
+    private static final ConcurrentMap<String, Slot> SLOTS = new ConcurrentHashMap<>();
+
+    private ReportGenerationQueue()
+    {
+    }
+
+    /**
+     * Requests the generation of a report.
+     *
+     * @param job
+     *            the job
+     * @param stepId
+     *            the ID of the load test step
+     * @param reportName
+     *            the name of the report, i.e. {@link #SUMMARY_REPORT} or {@link #TREND_REPORT}
+     * @param task
+     *            generates the report
+     */
+    public static void submit(final Job<?, ?> job, final String stepId, final String reportName, final Runnable task)
+    {
+        final String key = getKey(job, stepId, reportName);
+
+        Slot slot = SLOTS.get(key);
+        if (slot == null)
+        {
+            final Slot newSlot = new Slot(EXECUTOR, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    XltChartModel.invalidate(job, stepId);
+                }
+            });
+            slot = SLOTS.putIfAbsent(key, newSlot);
+            if (slot == null)
+            {
+                slot = newSlot;
+            }
+        }
+        slot.submit(task);
+    }
+
+    /**
+     * Checks whether the given report is being generated or waiting to be generated.
+     */
+    public static boolean isBusy(final Job<?, ?> job, final String stepId, final String reportName)
+    {
+        final Slot slot = SLOTS.get(getKey(job, stepId, reportName));
+        return slot != null && slot.isBusy();
+    }
+
+    private static String getKey(final Job<?, ?> job, final String stepId, final String reportName)
+    {
+        return job.getFullName() + "\n" + stepId + "\n" + reportName;
+    }
+
+    /**
+     * Runs the requests of one report one after the other, skipping all but the most recent one.
+     */
+    static final class Slot implements Runnable
+    {
+        private final Executor executor;
+
+        /**
+         * Called after each task, whether it succeeded or not.
+         */
+        private final Runnable onDone;
+
+        private Runnable pending;
+
+        private boolean scheduled;
+
+        Slot(final Executor executor, final Runnable onDone)
+        {
+            this.executor = executor;
+            this.onDone = onDone;
+        }
+
+        synchronized void submit(final Runnable task)
+        {
+            pending = task;
+            if (!scheduled)
+            {
+                scheduled = true;
+                executor.execute(this);
+            }
+        }
+
+        synchronized boolean isBusy()
+        {
+            return scheduled;
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                final Runnable task;
+                synchronized (this)
+                {
+                    task = pending;
+                    pending = null;
+                    if (task == null)
+                    {
+                        scheduled = false;
+                        return;
+                    }
+                }
+
+                try
+                {
+                    task.run();
+                }
+                catch (final RuntimeException e)
+                {
+                    LOGGER.error("Report generation failed", e);
+                }
+                finally
+                {
+                    onDone.run();
+                }
+            }
+        }
+    }
+}
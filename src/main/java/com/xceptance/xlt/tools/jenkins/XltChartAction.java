@@ -15,13 +15,23 @@
  */
 package com.xceptance.xlt.tools.jenkins;
 
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import com.xceptance.xlt.tools.jenkins.Chart.ChartLine;
-import com.xceptance.xlt.tools.jenkins.Chart.ChartLineValue;
+import com.xceptance.xlt.tools.jenkins.CompactChart.BuildTable;
+import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
+import com.xceptance.xlt.tools.jenkins.util.BuildMetrics;
+import com.xceptance.xlt.tools.jenkins.util.Helper;
+import com.xceptance.xlt.tools.jenkins.util.MetricsHistory;
 
 import hudson.model.Action;
 import hudson.model.InvisibleAction;
@@ -32,7 +42,7 @@ import jenkins.tasks.SimpleBuildStep.LastBuildAction;
 
 public class XltChartAction extends InvisibleAction implements RunAction2, LastBuildAction
 {
-    private final List<Chart<Integer, Double>> charts;
+    private List<CompactChart> compactCharts;
 
     private final int plotWidth;
 
@@ -50,12 +60,22 @@ public class XltChartAction extends InvisibleAction implements RunAction2, LastB
 
     private final int buildCount;
 
+    private final String timeFormatPattern;
+
+    private final boolean showBuildNumber;
+
+    /**
+     * Whether the values of this build were recorded in the job's metrics history. Actions of older builds were not.
+     */
+    private final boolean historyEnabled;
+
     private transient Run<?, ?> run;
 
     public XltChartAction(List<Chart<Integer, Double>> charts, int plotWidth, int plotHeight, String title, String stepId,
-                          final int buildCount, boolean isPlotVertical, boolean isTrendReportEnabled, boolean isSummaryReportEnabled)
+                          final int buildCount, boolean isPlotVertical, boolean isTrendReportEnabled, boolean isSummaryReportEnabled,
+                          final String timeFormatPattern, final boolean showBuildNumber)
     {
-        this.charts = charts;
+        this.compactCharts = CompactChart.of(charts);
         this.plotWidth = plotWidth;
         this.plotHeight = plotHeight;
         this.title = title;
@@ -64,6 +84,9 @@ public class XltChartAction extends InvisibleAction implements RunAction2, LastB
         this.isPlotVertical = isPlotVertical;
         this.isTrendReportEnabled = isTrendReportEnabled;
         this.isSummaryReportEnabled = isSummaryReportEnabled;
+        this.timeFormatPattern = timeFormatPattern;
+        this.showBuildNumber = showBuildNumber;
+        this.historyEnabled = true;
     }
 
     public String getStepId()
@@ -77,9 +100,9 @@ public class XltChartAction extends InvisibleAction implements RunAction2, LastB
     }
 
     // called from jelly files
-    public List<Chart<Integer, Double>> getCharts()
+    public List<CompactChart> getCharts()
     {
-        return charts;
+        return compactCharts;
     }
 
     public int getPlotWidth()
@@ -133,20 +156,33 @@ public class XltChartAction extends InvisibleAction implements RunAction2, LastB
 
     private List<Run<?, ?>> getRuns()
     {
+        // builds without values of this step are skipped using the metrics history, as far as it covers them
+        int[] index = null;
+        try
+        {
+            final MetricsHistory history = MetricsHistory.of(run.getParent(), stepId);
+            if (history.exists())
+            {
+                index = history.getBuildNumbers();
+            }
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn("Failed to read metrics history of step: " + stepId, e);
+        }
+
         final List<Run<?, ?>> runs = new ArrayList<>();
-        Run<?, ?> r = run;
-        while (r != null && (buildCount < 0 || buildCount > runs.size()))
+        for (final Run<?, ?> r : Helper.getRuns(run, buildCount, null, index))
         {
             runs.add(r);
-            r = r.getPreviousBuild();
         }
 
         return runs;
     }
 
-    private Chart<Integer, Double> lookupChart(final List<Chart<Integer, Double>> theCharts, final String chartID)
+    private static CompactChart lookupChart(final List<CompactChart> theCharts, final String chartID)
     {
-        for (final Chart<Integer, Double> c : theCharts)
+        for (final CompactChart c : theCharts)
         {
             if (c.getChartID().equals(chartID))
             {
@@ -156,19 +192,20 @@ public class XltChartAction extends InvisibleAction implements RunAction2, LastB
         return null;
     }
 
-    private List<Chart<Integer, Double>> initCharts()
+    /**
+     * Creates empty charts with the same charts and lines as the given ones, all sharing the given build table.
+     */
+    static List<CompactChart> initCharts(final List<CompactChart> template, final BuildTable builds)
     {
-        final List<Chart<Integer, Double>> list = new ArrayList<>();
-        for (final Chart<Integer, Double> c : charts)
+        final List<CompactChart> list = new ArrayList<>();
+        for (final CompactChart c : template)
         {
-            final Chart<Integer, Double> c2 = new Chart<Integer, Double>(c.getChartID(), c.getTitle());
+            final CompactChart c2 = new CompactChart(c.getChartID(), c.getTitle(), builds);
             list.add(c2);
 
-            for (final ChartLine<Integer, Double> line : c.getLines())
+            for (final CompactChart.Line line : c.getLines())
             {
-
-                c2.getLines()
-                  .add(new ChartLine<Integer, Double>(line.getLineID(), line.getName(), line.getMaxCount(), line.getShowNoValues()));
+                c2.getLines().add(new CompactChart.Line(line.getLineID(), line.getName(), line.getMaxCount(), line.getShowNoValues()));
             }
         }
 
@@ -188,56 +225,235 @@ public class XltChartAction extends InvisibleAction implements RunAction2, LastB
         return list;
     }
 
-    public List<Chart<Integer, Double>> getAllCharts()
+    public List<CompactChart> getAllCharts()
     {
+        if (historyEnabled)
+        {
+            final List<CompactChart> allCharts = getChartsFromHistory();
+            if (allCharts != null)
+            {
+                return allCharts;
+            }
+        }
+
         final List<Run<?, ?>> runs = getRuns();
-        final List<Chart<Integer, Double>> allCharts = initCharts();
+        final BuildTable builds = new BuildTable();
+        final List<CompactChart> allCharts = initCharts(compactCharts, builds);
         for (int i = runs.size() - 1; i > -1; i--)
         {
             final Run<?, ?> r = runs.get(i);
             for (final XltChartAction axn : getActions(r))
             {
-                for (final Chart<Integer, Double> c : axn.charts)
+                addCharts(allCharts, builds, axn.compactCharts);
+            }
+        }
+
+        return allCharts;
+    }
+
+    /**
+     * Appends the values of the given charts of a single build to the matching charts.
+     */
+    static void addCharts(final List<CompactChart> allCharts, final BuildTable builds, final List<CompactChart> buildCharts)
+    {
+        // rows of the action's build table mapped to rows of the new one
+        final Map<Integer, Integer> rows = new HashMap<>();
+        for (final CompactChart c : buildCharts)
+        {
+            final CompactChart match = lookupChart(allCharts, c.getChartID());
+            if (match != null)
+            {
+                int row = -1;
+                boolean added = false;
+                for (final CompactChart.Line line : c.getLines())
                 {
-                    final Chart<Integer, Double> match = lookupChart(allCharts, c.getChartID());
-                    if (match != null)
+                    final CompactChart.Line l = match.getLine(line.getLineID());
+                    if (l != null)
                     {
-                        boolean added = false;
-                        for (final ChartLine<Integer, Double> line : c.getLines())
+                        for (int j = 0; j < line.size(); j++)
                         {
-                            final ChartLine<Integer, Double> l = match.getLine(line.getLineID());
-                            if (l != null)
-                            {
-                                for (final ChartLineValue<Integer, Double> val : line.getValues())
-                                {
-                                    final ChartLineValue<Integer, Double> theVal = val.forNewX(match.getXIndex());
-                                    l.addLineValue(theVal);
-
-                                    added = true;
-                                }
-                            }
+                            l.addValue(match.getXIndex(), line.getY(j));
+                            row = c.getBuildRow(line.getX(j));
+
+                            added = true;
                         }
-                        if (added)
+                    }
+                }
+                if (added)
+                {
+                    match.nextXIndex(row < 0 ? -1 : copyRow(c.getBuilds(), row, builds, rows));
+                }
+            }
+        }
+    }
+
+    private static int copyRow(final BuildTable from, final int row, final BuildTable to, final Map<Integer, Integer> rows)
+    {
+        Integer newRow = rows.get(row);
+        if (newRow == null)
+        {
+            newRow = to.add(from.getBuildNumber(row), from.getBuildTime(row), from.isShowBuildNumber(row));
+            rows.put(row, newRow);
+        }
+        return newRow;
+    }
+
+    /**
+     * Builds the charts from the job's metrics history, which needs a single sequential read per value instead of loading
+     * the previous builds.
+     *
+     * @return the charts, or <code>null</code> if the history does not contain this build
+     */
+    private List<CompactChart> getChartsFromHistory()
+    {
+        final BuildTable builds = new BuildTable();
+        final List<CompactChart> allCharts = initCharts(compactCharts, builds);
+
+        final Set<String> valueIds = new HashSet<>();
+        for (final CompactChart c : allCharts)
+        {
+            for (final CompactChart.Line line : c.getLines())
+            {
+                valueIds.add(line.getLineID());
+            }
+        }
+
+        final List<BuildMetrics> rows;
+        try
+        {
+            rows = MetricsHistory.of(run.getParent(), stepId).readLast(buildCount < 0 ? Integer.MAX_VALUE : buildCount,
+                                                                         run.getNumber(), valueIds);
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn("Failed to read metrics history of step: " + stepId, e);
+            return null;
+        }
+
+        if (rows.isEmpty() || rows.get(rows.size() - 1).getBuildNumber() != run.getNumber())
+        {
+            return null;
+        }
+
+        final SimpleDateFormat dateFormat = getDateFormat();
+        for (final BuildMetrics row : rows)
+        {
+            addHistoryRow(allCharts, builds, row, dateFormat.format(new Date(row.getTimestamp())), showBuildNumber);
+        }
+
+        return allCharts;
+    }
+
+    /**
+     * Appends the values of the given history row to the charts, treating missing values the same way as
+     * {@link com.xceptance.xlt.tools.jenkins.util.ChartUtils#xml2Charts} does for a single build.
+     */
+    static void addHistoryRow(final List<CompactChart> allCharts, final BuildTable builds, final BuildMetrics row,
+                              final String buildTime, final boolean showBuildNumber)
+    {
+        final int buildRow = builds.add(row.getBuildNumber(), buildTime, showBuildNumber);
+        for (final CompactChart c : allCharts)
+        {
+            boolean added = false;
+            for (final CompactChart.Line line : c.getLines())
+            {
+                // values missing in a build are stored as NaN
+                Double value = row.getValues().get(line.getLineID());
+                if (value != null && value.isNaN())
+                {
+                    value = null;
+                }
+                if (value == null && line.getShowNoValues())
+                {
+                    value = 0.0;
+                }
+
+                if (value != null)
+                {
+                    line.addValue(c.getXIndex(), value);
+
+                    added = true;
+                }
+            }
+            if (added)
+            {
+                c.nextXIndex(buildRow);
+            }
+        }
+    }
+
+    /**
+     * Returns the values of the given build as recorded in the given charts. Only points that belong to the build are taken,
+     * and points that merely fill a gap of a line that shows missing values as 0 are treated as missing.
+     *
+     * @param charts
+     *            the charts
+     * @param buildNumber
+     *            the build number
+     * @return the values keyed by value ID
+     */
+    public static Map<String, Double> getBuildValues(final List<CompactChart> charts, final int buildNumber)
+    {
+        final Map<String, Double> values = new HashMap<>();
+        for (final CompactChart c : charts)
+        {
+            final BuildTable builds = c.getBuilds();
+            for (final CompactChart.Line line : c.getLines())
+            {
+                for (int i = line.size() - 1; i >= 0; i--)
+                {
+                    final int row = c.getBuildRow(line.getX(i));
+                    if (row >= 0 && builds.getBuildNumber(row) == buildNumber)
+                    {
+                        final double value = line.getY(i);
+                        if (!(line.getShowNoValues() && value == 0.0))
                         {
-                            match.nextXIndex();
+                            values.put(line.getLineID(), value);
                         }
+                        break;
                     }
                 }
             }
         }
+        return values;
+    }
 
-        return allCharts;
+    private SimpleDateFormat getDateFormat()
+    {
+        if (timeFormatPattern != null)
+        {
+            try
+            {
+                return new SimpleDateFormat(timeFormatPattern);
+            }
+            catch (Exception ex)
+            {
+                LOGGER.warn("Failed to create date format for pattern: " + timeFormatPattern, ex);
+            }
+        }
+        return new SimpleDateFormat();
     }
 
     @Deprecated
     private transient String builderID;
 
+    /**
+     * The charts as stored by older versions, with each value carrying its own build data.
+     */
+    @Deprecated
+    private List<Chart<Integer, Double>> charts;
+
     protected Object readResolve()
     {
         if (builderID != null)
         {
             stepId = builderID;
         }
+        if (charts != null)
+        {
+            compactCharts = CompactChart.of(charts);
+            charts = null;
+        }
         return this;
     }
 }
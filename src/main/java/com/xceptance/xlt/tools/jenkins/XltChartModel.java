@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+
+/**
+ * Everything the project page shows for a load test step: the chart action of the last completed build, the charts built
+ * from it, and whether trend and summary reports are available.
+ * <p>
+ * Models are cached per job and step ID. A model is built on first access and discarded only when a build of the job that
+ * ran the step completes or is deleted (see {@link XltRunListener}), so repeated page views do not walk the builds again.
+ */
+public final class XltChartModel
+{
+    /**
+     * The cached models keyed by the full name of the job and the step ID.
+     */
+    private static final ConcurrentMap<String, ConcurrentMap<String, Holder>> CACHE = new ConcurrentHashMap<>();
+
+    private final XltChartAction lastBuildAction;
+
+    private final List<CompactChart> charts;
+
+    private final boolean trendReportAvailable;
+
+    private final boolean summaryReportAvailable;
+
+    /**
+     * When this model was built, which is when its data last changed as far as clients are concerned.
+     */
+    private final long lastModified = System.currentTimeMillis();
+
+    private XltChartModel(final Job<?, ?> job, final String stepId)
+    {
+        lastBuildAction = findLastBuildAction(job, stepId);
+        if (lastBuildAction != null)
+        {
+            charts = Collections.unmodifiableList(lastBuildAction.getAllCharts());
+            trendReportAvailable = lastBuildAction.isTrendReportEnabled() && isNotEmpty(job, "trendReport", stepId);
+            summaryReportAvailable = lastBuildAction.isSummaryReportEnabled() && isNotEmpty(job, "summaryReport", stepId);
+        }
+        else
+        {
+            charts = Collections.emptyList();
+            trendReportAvailable = false;
+            summaryReportAvailable = false;
+        }
+    }
+
+    /**
+     * Returns the model of the given step of the given job, building it if necessary.
+     */
+    public static XltChartModel get(final Job<?, ?> job, final String stepId)
+    {
+        ConcurrentMap<String, Holder> holders = CACHE.get(job.getFullName());
+        if (holders == null)
+        {
+            final ConcurrentMap<String, Holder> newHolders = new ConcurrentHashMap<>();
+            holders = CACHE.putIfAbsent(job.getFullName(), newHolders);
+            if (holders == null)
+            {
+                holders = newHolders;
+            }
+        }
+
+        Holder holder = holders.get(stepId);
+        if (holder == null)
+        {
+            final Holder newHolder = new Holder();
+            holder = holders.putIfAbsent(stepId, newHolder);
+            if (holder == null)
+            {
+                holder = newHolder;
+            }
+        }
+        return holder.get(job, stepId);
+    }
+
+    /**
+     * Discards the cached model of the given step of the given job.
+     */
+    public static void invalidate(final Job<?, ?> job, final String stepId)
+    {
+        final ConcurrentMap<String, Holder> holders = CACHE.get(job.getFullName());
+        if (holders != null)
+        {
+            holders.remove(stepId);
+        }
+    }
+
+    public XltChartAction getLastBuildAction()
+    {
+        return lastBuildAction;
+    }
+
+    public List<CompactChart> getCharts()
+    {
+        return charts;
+    }
+
+    public CompactChart getChart(final String chartID)
+    {
+        for (final CompactChart c : charts)
+        {
+            if (c.getChartID().equals(chartID))
+            {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public boolean isTrendReportAvailable()
+    {
+        return trendReportAvailable;
+    }
+
+    public boolean isSummaryReportAvailable()
+    {
+        return summaryReportAvailable;
+    }
+
+    private static XltChartAction findLastBuildAction(final Job<?, ?> job, final String stepId)
+    {
+        Run<?, ?> r = job.getLastSuccessfulBuild();
+
+        Run<?, ?> run = job.getLastBuild();
+        while (run != null)
+        {
+            final List<XltChartAction> axns = run.getActions(XltChartAction.class);
+            for (final XltChartAction a : axns)
+            {
+                if (a != null && !run.isBuilding())
+                {
+                    final String stId = a.getStepId();
+                    if (stId != null && stId.equals(stepId))
+                    {
+                        return a;
+                    }
+                }
+            }
+            if (run == r)
+            {
+                return null;
+            }
+            run = run.getPreviousBuild();
+        }
+        return null;
+    }
+
+    private static boolean isNotEmpty(final Job<?, ?> job, final String folderName, final String stepId)
+    {
+        final String[] children = new File(new File(job.getRootDir(), folderName), stepId).list();
+        return children != null && children.length > 0;
+    }
+
+    /**
+     * Drops the cached models of deleted, renamed or moved jobs.
+     */
+    @Extension
+    public static final class JobListener extends ItemListener
+    {
+        @Override
+        public void onDeleted(final Item item)
+        {
+            CACHE.remove(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName)
+        {
+            CACHE.remove(oldFullName);
+        }
+    }
+
+    /**
+     * Builds the model at most once, even if several requests ask for it at the same time.
+     */
+    private static final class Holder
+    {
+        private XltChartModel model;
+
+        private synchronized XltChartModel get(final Job<?, ?> job, final String stepId)
+        {
+            if (model == null)
+            {
+                model = new XltChartModel(job, stepId);
+            }
+            return model;
+        }
+    }
+}
@@ -17,19 +17,21 @@ package com.xceptance.xlt.tools.jenkins;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.MalformedURLException;
+import java.util.Collections;
 import java.util.List;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang3.StringUtils;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import hudson.FilePath;
 import hudson.model.Action;
 import hudson.model.Job;
-import hudson.model.Run;
 
 public class XltChartProjectAction implements Action
 {
@@ -71,49 +73,128 @@ public class XltChartProjectAction implements Action
         return null;
     }
 
+    private XltChartModel getModel()
+    {
+        return XltChartModel.get(job, stepId);
+    }
+
     public XltChartAction getLastBuildAction()
     {
-        Run<?, ?> r = job.getLastSuccessfulBuild();
+        return getModel().getLastBuildAction();
+    }
+
+    // called from jelly files
+    public List<CompactChart> getCharts()
+    {
+        return getModel().getCharts();
+    }
+
+    /**
+     * Serves the data of the charts as JSON, see {@link CompactChart#writeJson(Appendable, int)}. Request parameters:
+     * <ul>
+     * <li><code>plot</code> - the ID of the chart to return, all charts are returned if not given</li>
+     * <li><code>from</code> - the lowest build number to return values of, values of all builds are returned if not
+     * given</li>
+     * </ul>
+     */
+    public void doData(StaplerRequest req, StaplerResponse rsp) throws IOException
+    {
+        final XltChartModel model = getModel();
+        if (model.getLastBuildAction() == null)
+        {
+            rsp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
 
-        Run<?, ?> run = job.getLastBuild();
-        while (run != null)
+        final List<CompactChart> charts;
+        final String plot = req.getParameter("plot");
+        if (StringUtils.isNotBlank(plot))
         {
-            final List<XltChartAction> axns = run.getActions(XltChartAction.class);
-            for (final XltChartAction a : axns)
+            final CompactChart chart = model.getChart(plot);
+            if (chart == null)
             {
-                if (a != null && !run.isBuilding())
-                {
-                    final String stId = a.getStepId();
-                    if (stId != null && stId.equals(stepId))
-                    {
-                        return a;
-                    }
-                }
+                rsp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-            if (run == r)
+            charts = Collections.singletonList(chart);
+        }
+        else
+        {
+            charts = model.getCharts();
+        }
+
+        int from = 0;
+        final String fromParam = req.getParameter("from");
+        if (StringUtils.isNotBlank(fromParam))
+        {
+            try
             {
-                return null;
+                from = Integer.parseInt(fromParam.trim());
+            }
+            catch (final NumberFormatException e)
+            {
+                rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid build number: " + fromParam);
+                return;
             }
-            run = run.getPreviousBuild();
         }
-        return null;
+
+        // the model is rebuilt whenever the data changes, so its build time identifies the data
+        final String etag = "\"" + Long.toHexString(model.getLastModified()) + "\"";
+        rsp.setHeader("ETag", etag);
+        rsp.setDateHeader("Last-Modified", model.getLastModified());
+        rsp.setHeader("Cache-Control", "private, no-cache");
+        // when the client sent an entity tag, decide by it alone, the one-second precision of dates is too coarse (RFC 7232)
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null ? matchesETag(ifNoneMatch, etag) : req.checkIfModified(model.getLastModified(), rsp))
+        {
+            rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        final Writer out = rsp.getWriter();
+        out.append("{\"charts\":[");
+        for (int i = 0; i < charts.size(); i++)
+        {
+            if (i > 0)
+            {
+                out.append(',');
+            }
+            charts.get(i).writeJson(out, from);
+        }
+        out.append("]}");
+        out.flush();
     }
 
-    public boolean isTrendReportAvailable() throws IOException, InterruptedException
+    /**
+     * Checks whether the given If-None-Match header value lists the given entity tag.
+     */
+    static boolean matchesETag(final String ifNoneMatch, final String etag)
     {
-        final XltChartAction action = getLastBuildAction();
-        if (action != null && action.isTrendReportEnabled())
+        for (final String candidate : StringUtils.split(ifNoneMatch, ','))
         {
-            final FilePath trendReportDirectory = new FilePath(new File(job.getRootDir(), "trendReport")).child(action.getStepId());
-            if (trendReportDirectory.exists() && trendReportDirectory.isDirectory() && trendReportDirectory.list().size() > 0)
+            final String tag = StringUtils.removeStart(candidate.trim(), "W/");
+            if (tag.equals("*") || tag.equals(etag))
             {
                 return true;
             }
         }
-
         return false;
     }
 
+    public boolean isTrendReportAvailable()
+    {
+        return getModel().isTrendReportAvailable();
+    }
+
+    /**
+     * Whether the trend report is being regenerated in the background right now.
+     */
+    public boolean isTrendReportRegenerating()
+    {
+        return ReportGenerationQueue.isBusy(job, stepId, ReportGenerationQueue.TREND_REPORT);
+    }
+
     public void doTrendReport(StaplerRequest req, StaplerResponse rsp)
         throws MalformedURLException, ServletException, IOException, InterruptedException
     {
@@ -135,18 +216,17 @@ public class XltChartProjectAction implements Action
         }
     }
 
-    public boolean isSummaryReportAvailable() throws IOException, InterruptedException
+    public boolean isSummaryReportAvailable()
     {
-        final XltChartAction action = getLastBuildAction();
-        if (action != null && action.isSummaryReportEnabled())
-        {
-            final FilePath summaryReport = new FilePath(new File(job.getRootDir(), "summaryReport")).child(action.getStepId());
-            if (summaryReport.exists() && summaryReport.isDirectory() && summaryReport.list().size() > 0)
-            {
-                return true;
-            }
-        }
-        return false;
+        return getModel().isSummaryReportAvailable();
+    }
+
+    /**
+     * Whether the summary report is being regenerated in the background right now.
+     */
+    public boolean isSummaryReportRegenerating()
+    {
+        return ReportGenerationQueue.isBusy(job, stepId, ReportGenerationQueue.SUMMARY_REPORT);
     }
 
     public void doSummaryReport(StaplerRequest req, StaplerResponse rsp)
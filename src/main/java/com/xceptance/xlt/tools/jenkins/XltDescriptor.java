@@ -24,6 +24,7 @@ import org.kohsuke.stapler.QueryParameter;
 import com.xceptance.xlt.tools.jenkins.config.AgentControllerConfig;
 import com.xceptance.xlt.tools.jenkins.config.Embedded;
 import com.xceptance.xlt.tools.jenkins.util.ConfigurationValidator;
+import com.xceptance.xlt.tools.jenkins.util.FolderTransfer;
 import com.xceptance.xlt.tools.jenkins.util.PluginDefaults;
 import com.xceptance.xlt.tools.jenkins.util.ValidationUtils.Flags;
 
@@ -122,6 +123,11 @@ public class XltDescriptor extends BuildStepDescriptor<Builder>
         return PluginDefaults.INITIAL_RESPONSE_TIMEOUT;
     }
 
+    public int getDefaultArchiveCompressionLevel()
+    {
+        return PluginDefaults.ARCHIVE_COMPRESSION_LEVEL;
+    }
+
     public String getDefaultStepId()
     {
         return UUID.randomUUID().toString();
@@ -300,6 +306,19 @@ public class XltDescriptor extends BuildStepDescriptor<Builder>
         return validateNumber(value, 0, null, Flags.IGNORE_BLANK_VALUE, Flags.IGNORE_MAX, Flags.IS_INTEGER);
     }
 
+    /**
+     * Performs on-the-fly validation of the form field 'archiveCompressionLevel'.
+     * 
+     * @param value
+     *            the input value
+     * @return form validation object
+     */
+    public FormValidation doCheckArchiveCompressionLevel(@QueryParameter String value)
+    {
+        return validateNumber(value, FolderTransfer.NO_COMPRESSION, FolderTransfer.MAX_COMPRESSION, Flags.IGNORE_BLANK_VALUE,
+                              Flags.IS_INTEGER);
+    }
+
     @Initializer(before = InitMilestone.PLUGINS_STARTED)
     public static void addAliases()
     {
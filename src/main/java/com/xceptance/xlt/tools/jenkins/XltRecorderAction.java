@@ -15,11 +15,15 @@
  */
 package com.xceptance.xlt.tools.jenkins;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.servlet.ServletException;
 
@@ -29,6 +33,8 @@ import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import com.xceptance.xlt.tools.jenkins.util.Helper;
+import com.xceptance.xlt.tools.jenkins.util.Helper.FOLDER_NAMES;
+import com.xceptance.xlt.tools.jenkins.util.ResultsContainer;
 
 import hudson.FilePath;
 import hudson.model.Run;
@@ -156,9 +162,59 @@ public class XltRecorderAction implements RunAction2
         throws MalformedURLException, ServletException, IOException, InterruptedException
     {
         final FilePath reportPath = Helper.getArtifact(run, request.getRestOfPath());
+        if (!reportPath.exists() && serveFromResultsContainer(request, response))
+        {
+            return;
+        }
         response.serveFile(request, reportPath.toURI().toURL());
     }
 
+    /**
+     * Serves a file of the archived results from the build's results container, if the results were stored as such.
+     *
+     * @return whether the file was served
+     */
+    private boolean serveFromResultsContainer(StaplerRequest request, StaplerResponse response) throws ServletException, IOException
+    {
+        // the path looks like "<stepId>/results/<path of the file>"
+        final String path = StringUtils.removeStart(request.getRestOfPath(), "/");
+        final String resultsPrefix = "/" + FOLDER_NAMES.ARTIFACT_RESULT + "/";
+        final int index = path.indexOf(resultsPrefix);
+        if (index <= 0 || path.substring(0, index).contains("/"))
+        {
+            return false;
+        }
+
+        final File resultsFolder = new File(Helper.getArtifact(run, path.substring(0, index) + "/" + FOLDER_NAMES.ARTIFACT_RESULT)
+                                                  .getRemote());
+        final File container = ResultsContainer.getContainerFile(resultsFolder);
+        if (!container.isFile())
+        {
+            return false;
+        }
+
+        String name = path.substring(index + resultsPrefix.length());
+        if (name.isEmpty() || name.endsWith("/"))
+        {
+            name += "index.html";
+        }
+
+        try (final ZipFile zip = new ZipFile(container))
+        {
+            final ZipEntry entry = zip.getEntry(name);
+            if (entry == null || entry.isDirectory())
+            {
+                return false;
+            }
+
+            try (final InputStream in = zip.getInputStream(entry))
+            {
+                response.serveFile(request, in, entry.getTime(), entry.getSize(), name);
+            }
+        }
+        return true;
+    }
+
     @Override
     public void onAttached(Run<?, ?> r)
     {
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
+import com.xceptance.xlt.tools.jenkins.util.CriterionLedger;
+import com.xceptance.xlt.tools.jenkins.util.MetricsHistory;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+/**
+ * Keeps the job-level chart data in sync with the job's builds: the cached chart models of the load test steps a build ran
+ * are discarded when it completes or is deleted, and deleted builds are removed from the metrics history and the criterion
+ * ledger.
+ */
+@Extension
+public class XltRunListener extends RunListener<Run<?, ?>>
+{
+    @Override
+    public void onCompleted(final Run<?, ?> run, final TaskListener listener)
+    {
+        invalidateChartModels(run);
+    }
+
+    @Override
+    public void onFinalized(final Run<?, ?> run)
+    {
+        // the run is no longer building only now, so drop any model that was built in between
+        invalidateChartModels(run);
+    }
+
+    @Override
+    public void onDeleted(final Run<?, ?> run)
+    {
+        invalidateChartModels(run);
+
+        for (final XltChartAction action : run.getActions(XltChartAction.class))
+        {
+            try
+            {
+                MetricsHistory.of(run.getParent(), action.getStepId()).markDeleted(run.getNumber());
+            }
+            catch (final IOException e)
+            {
+                LOGGER.warn("Failed to remove build from metrics history: " + run.getFullDisplayName(), e);
+            }
+        }
+
+        for (final XltRecorderAction action : run.getActions(XltRecorderAction.class))
+        {
+            try
+            {
+                CriterionLedger.of(run.getParent(), action.getStepId()).markDeleted(run.getNumber());
+            }
+            catch (final IOException e)
+            {
+                LOGGER.warn("Failed to remove build from criterion ledger: " + run.getFullDisplayName(), e);
+            }
+        }
+    }
+
+    /**
+     * Discards the cached chart models of the load test steps the given run ran.
+     */
+    private static void invalidateChartModels(final Run<?, ?> run)
+    {
+        final Set<String> stepIds = new HashSet<>();
+        for (final XltChartAction action : run.getActions(XltChartAction.class))
+        {
+            stepIds.add(action.getStepId());
+        }
+        for (final XltRecorderAction action : run.getActions(XltRecorderAction.class))
+        {
+            stepIds.add(action.getStepId());
+        }
+
+        for (final String stepId : stepIds)
+        {
+            if (stepId != null)
+            {
+                XltChartModel.invalidate(run.getParent(), stepId);
+            }
+        }
+    }
+}
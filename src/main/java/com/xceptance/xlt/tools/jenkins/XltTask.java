@@ -15,28 +15,32 @@
  */
 package com.xceptance.xlt.tools.jenkins;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
-import org.apache.commons.io.Charsets;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
@@ -49,11 +53,26 @@ import com.xceptance.xlt.tools.jenkins.config.UrlFile;
 import com.xceptance.xlt.tools.jenkins.config.UrlList;
 import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
 import com.xceptance.xlt.tools.jenkins.pipeline.LoadTestResult;
+import com.xceptance.xlt.tools.jenkins.util.BaselineReportCache;
+import com.xceptance.xlt.tools.jenkins.util.BuildMetrics;
 import com.xceptance.xlt.tools.jenkins.util.ChartUtils;
 import com.xceptance.xlt.tools.jenkins.util.ChartUtils.ChartLineListener;
 import com.xceptance.xlt.tools.jenkins.util.CriterionChecker;
+import com.xceptance.xlt.tools.jenkins.util.CriterionLedger;
+import com.xceptance.xlt.tools.jenkins.util.FolderTransfer;
 import com.xceptance.xlt.tools.jenkins.util.Helper;
 import com.xceptance.xlt.tools.jenkins.util.Helper.FOLDER_NAMES;
+import com.xceptance.xlt.tools.jenkins.util.MetricDiff;
+import com.xceptance.xlt.tools.jenkins.util.MetricsHistory;
+import com.xceptance.xlt.tools.jenkins.util.ReportData;
+import com.xceptance.xlt.tools.jenkins.util.ReportBlobStore;
+import com.xceptance.xlt.tools.jenkins.util.ReportData.RecordPath;
+import com.xceptance.xlt.tools.jenkins.util.ReportMetrics;
+import com.xceptance.xlt.tools.jenkins.util.ResultsContainer;
+import com.xceptance.xlt.tools.jenkins.util.StageGraph;
+import com.xceptance.xlt.tools.jenkins.util.SummaryResultsStaging;
+import com.xceptance.xlt.tools.jenkins.util.TrendResultsStaging;
+import com.xceptance.xlt.tools.jenkins.util.XltInstallationCache;
 import com.xceptance.xlt.tools.jenkins.util.XmlUtils;
 
 import hudson.AbortException;
@@ -65,10 +84,51 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.security.ACL;
 import hudson.util.Secret;
+import hudson.util.StreamTaskListener;
 import jenkins.model.Jenkins;
 
 public class XltTask
 {
+    private static final RecordPath ERROR_RECORDS = new RecordPath("/testreport/errors/error", "testCaseName", "actionName", "message");
+
+    private static final RecordPath SLOWEST_REQUEST_RECORDS = new RecordPath("/testreport/general/slowestRequests/request", "url",
+                                                                              "runtime");
+
+    /**
+     * The maximum number of stages running at the same time.
+     */
+    private static final int STAGE_PARALLELISM = 2;
+
+    /**
+     * How much of the output of the criteria check is logged if the check fails.
+     */
+    private static final int MAX_LOGGED_CRITERIA_OUTPUT = 64 * 1024;
+
+    /**
+     * How many previous builds a new criterion ledger is seeded with at least.
+     */
+    private static final int CRITERION_LEDGER_SEED_BUILD_COUNT = 20;
+
+    private static final String STAGE_INSTALL_XLT = "install XLT";
+
+    private static final String STAGE_VALIDATE_TEST_SUITE = "validate test suite";
+
+    private static final String STAGE_CONFIGURE_AGENT_CONTROLLERS = "configure agent controllers";
+
+    private static final String STAGE_PREPARE_RESULTS = "prepare results";
+
+    private static final String STAGE_SAVE_RESULTS = "archive results";
+
+    private static final String STAGE_CREATE_REPORT = "create report";
+
+    private static final String STAGE_CREATE_DIFF_REPORT = "create difference report";
+
+    private static final String STAGE_SAVE_REPORTS = "archive reports";
+
+    private static final String STAGE_COMPARE_METRICS = "compare metrics";
+
+    private static final String STAGE_VALIDATE_CRITERIA = "validate criteria";
+
     private final LoadTestConfiguration taskConfig;
 
     private transient PlotValuesConfiguration config;
@@ -79,21 +139,27 @@ public class XltTask
 
     private transient XltResult result;
 
-    private transient JSONObject critOutJSON;
+    private transient List<CriterionResult> diffCriteriaResults;
+
+    private transient List<CriterionResult> metricDiffResults;
 
     private transient FilePath tempXltFolder;
 
+    private transient ReportMetrics metrics;
+
+    private transient boolean metricsEvaluated;
+
     public XltTask(final LoadTestConfiguration cfg)
     {
         taskConfig = cfg;
     }
 
-    private Document getDataDocument(final Run<?, ?> run) throws IOException, InterruptedException
+    private ReportData getReportData(final Run<?, ?> run) throws IOException, InterruptedException
     {
         FilePath testDataFile = getTestReportDataFile(run);
         if (testDataFile.exists())
         {
-            return XmlUtils.parse(testDataFile);
+            return ReportData.load(testDataFile, config, ERROR_RECORDS, SLOWEST_REQUEST_RECORDS);
         }
         else
         {
@@ -103,24 +169,64 @@ public class XltTask
         return null;
     }
 
-    private void addBuildToCharts(final Run<?, ?> run)
+    /**
+     * Returns the metrics of the given build. The test report is read and all configured values are evaluated only once per
+     * build, the result is shared by charting and criterion checking. After the first evaluation, the number values are also
+     * written to the build's metrics sidecar file.
+     */
+    private ReportMetrics getReportMetrics(final Run<?, ?> run)
     {
-        Document dataXml = null;
-
-        try
+        if (!metricsEvaluated)
         {
-            dataXml = getDataDocument(run);
+            metricsEvaluated = true;
+            try
+            {
+                metrics = ReportMetrics.evaluate(getReportData(run), config, ERROR_RECORDS, SLOWEST_REQUEST_RECORDS);
+            }
+            catch (Exception e)
+            {
+                LOGGER.error("Failed to read test data xml", e);
+            }
+
+            if (metrics != null)
+            {
+                try
+                {
+                    new BuildMetrics(run.getNumber(), run.getTimeInMillis(), metrics.getNumbers()).write(getBuildMetricsFile(run));
+                }
+                catch (Exception e)
+                {
+                    LOGGER.warn("Failed to write metrics file", e);
+                }
+            }
         }
-        catch (Exception e)
-        {
-            LOGGER.error("Failed to read test data xml", e);
+        return metrics;
+    }
 
+    /**
+     * Returns the number values of the given build. The metrics sidecar file is preferred over the test report, if it exists.
+     */
+    private Map<String, Double> getChartValues(final Run<?, ?> run)
+    {
+        if (!metricsEvaluated)
+        {
+            final BuildMetrics buildMetrics = BuildMetrics.read(getBuildMetricsFile(run));
+            if (buildMetrics != null)
+            {
+                return buildMetrics.getValues();
+            }
         }
 
-        if (dataXml == null)
+        final ReportMetrics reportMetrics = getReportMetrics(run);
+        return reportMetrics != null ? reportMetrics.getNumbers() : null;
+    }
+
+    private void addBuildToCharts(final Run<?, ?> run, final Map<String, Double> data)
+    {
+        if (data == null)
             return;
 
-        charts.addAll(ChartUtils.xml2Charts(dataXml, config, new ChartLineListener()
+        charts.addAll(ChartUtils.xml2Charts(data, config, new ChartLineListener()
         {
             @Override
             public void onValueAdded(ChartLineValue<Integer, Double> value)
@@ -141,12 +247,101 @@ public class XltTask
         // Clear list of charts
         charts.clear();
 
-        addBuildToCharts(run);
+        final Map<String, Double> values = getChartValues(run);
+        addBuildToCharts(run, values);
 
         run.addAction(new XltChartAction(ChartUtils.getEnabledCharts(charts, config), taskConfig.getPlotWidth(), taskConfig.getPlotHeight(),
                                          taskConfig.getPlotTitle(), taskConfig.getStepId(), ChartUtils.getMaxBuildCount(config),
                                          taskConfig.isPlotVertical(), taskConfig.getCreateTrendReport(),
-                                         taskConfig.getCreateSummaryReport()));
+                                         taskConfig.getCreateSummaryReport(), taskConfig.getTimeFormatPattern(),
+                                         taskConfig.isShowBuildNumber()));
+
+        updateMetricsHistory(run, values);
+
+        LOGGER.debug("XPath expression cache: " + XmlUtils.getXPathCacheHits() + " hits, " + XmlUtils.getXPathCacheMisses() +
+                     " misses");
+    }
+
+    /**
+     * Appends the values of the given build to the job's metrics history. When the history is created, it is seeded with the
+     * values of the previous builds first.
+     */
+    private void updateMetricsHistory(final Run<?, ?> run, final Map<String, Double> values)
+    {
+        if (values == null)
+        {
+            return;
+        }
+
+        final MetricsHistory history = MetricsHistory.of(run.getParent(), taskConfig.getStepId());
+        try
+        {
+            if (!history.exists())
+            {
+                final int maxBuildCount = ChartUtils.getMaxBuildCount(config);
+                final List<Run<?, ?>> previousRuns = new ArrayList<>();
+                Run<?, ?> r = run.getPreviousBuild();
+                while (r != null && previousRuns.size() < maxBuildCount)
+                {
+                    previousRuns.add(r);
+                    r = r.getPreviousBuild();
+                }
+
+                for (int i = previousRuns.size() - 1; i >= 0; i--)
+                {
+                    final BuildMetrics previous = getRecordedBuildMetrics(previousRuns.get(i));
+                    if (previous != null)
+                    {
+                        history.append(previous);
+                    }
+                }
+            }
+
+            history.append(new BuildMetrics(run.getNumber(), run.getTimeInMillis(), values));
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Failed to update metrics history", e);
+        }
+    }
+
+    /**
+     * Returns the numbers of the builds that have report data of this step, or <code>null</code> if they are not known.
+     */
+    private int[] getRunIndex(final Job<?, ?> job)
+    {
+        try
+        {
+            final MetricsHistory history = MetricsHistory.of(job, taskConfig.getStepId());
+            return history.exists() ? history.getBuildNumbers() : null;
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Failed to read metrics history", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the values recorded for a previous build, either from its metrics sidecar file or from its chart action.
+     */
+    private BuildMetrics getRecordedBuildMetrics(final Run<?, ?> run)
+    {
+        final BuildMetrics buildMetrics = BuildMetrics.read(getBuildMetricsFile(run));
+        if (buildMetrics != null)
+        {
+            return buildMetrics;
+        }
+
+        for (final XltChartAction action : run.getActions(XltChartAction.class))
+        {
+            if (taskConfig.getStepId().equals(action.getStepId()))
+            {
+                return new BuildMetrics(run.getNumber(), run.getTimeInMillis(),
+                                        XltChartAction.getBuildValues(action.getCharts(), run.getNumber()));
+            }
+        }
+        return null;
     }
 
     private void updateConfig()
@@ -167,6 +362,11 @@ public class XltTask
         return getBuildReportFolder(run).child("testreport.xml");
     }
 
+    private FilePath getBuildMetricsFile(final Run<?, ?> run)
+    {
+        return Helper.getArtifact(run, taskConfig.getStepId() + "/" + BuildMetrics.FILE_NAME);
+    }
+
     private FilePath getXltResultFolder(final Run<?, ?> run, final Launcher launcher)
         throws BuildNodeGoneException, IOException, InterruptedException
     {
@@ -210,11 +410,6 @@ public class XltTask
         return null;
     }
 
-    private FilePath getBuildResultConfigFolder(final Run<?, ?> run)
-    {
-        return new FilePath(getBuildResultFolder(run), "config");
-    }
-
     private FilePath getBuildLogsFolder(final Run<?, ?> build)
     {
         return Helper.getArtifact(build, taskConfig.getStepId() + "/log");
@@ -235,6 +430,11 @@ public class XltTask
         return Helper.getArtifact(run, taskConfig.getStepId() + "/" + FOLDER_NAMES.ARTIFACT_RESULT);
     }
 
+    private FilePath getBuildResultContainer(final Run<?, ?> run)
+    {
+        return Helper.getArtifact(run, taskConfig.getStepId() + "/" + FOLDER_NAMES.ARTIFACT_RESULT + ResultsContainer.FILE_EXTENSION);
+    }
+
     private String getBuildReportURL(final Run<?, ?> run)
     {
         final StringBuilder sb = new StringBuilder();
@@ -275,9 +475,14 @@ public class XltTask
         return new FilePath(job.getRootDir()).child("summaryResults").child(taskConfig.getStepId());
     }
 
-    private FilePath getSummaryResultsConfigFolder(final Job<?, ?> job)
+    private static ReportBlobStore getReportBlobStore(final Job<?, ?> job)
+    {
+        return new ReportBlobStore(new File(job.getRootDir(), "reportBlobs"));
+    }
+
+    private File getJobReportLogFile(final Job<?, ?> job, final String reportName)
     {
-        return new FilePath(getSummaryResultsFolder(job), "config");
+        return new File(new File(job.getRootDir(), reportName + "Report"), taskConfig.getStepId() + ".log");
     }
 
     private static FilePath getTemporaryXltBaseFolder(final Run<?, ?> run, final Launcher launcher) throws BuildNodeGoneException
@@ -329,21 +534,25 @@ public class XltTask
 
     private void validateCriteria(final Run<?, ?> run, final TaskListener listener) throws IOException, InterruptedException
     {
-        // get the test report document
-        final Document dataXml = getDataDocument(run);
+        // get the test report data
+        final ReportMetrics data = getReportMetrics(run);
 
         listener.getLogger().println("-----------------------------------------------------------------\nChecking success criteria ...\n");
 
         // process the test report
-        final List<CriterionResult> failedAlerts = CriterionChecker.getFailed(dataXml, config);
+        final List<CriterionResult> failedAlerts = CriterionChecker.getFailed(data, config);
 
-        final List<TestCaseInfo> failedTestCases = determineFailedTestCases(run, listener, dataXml);
-        final List<SlowRequestInfo> slowestRequests = determineSlowestRequests(run, listener, dataXml);
+        final List<TestCaseInfo> failedTestCases = determineFailedTestCases(run, listener, data);
+        final List<SlowRequestInfo> slowestRequests = determineSlowestRequests(run, listener, data);
 
         final boolean hasDiffReport = result.getDiffReportUrl() != null;
-        if (hasDiffReport && critOutJSON != null)
+        if (hasDiffReport && diffCriteriaResults != null)
         {
-            failedAlerts.addAll(CriterionChecker.parseCriteriaValidationResult(critOutJSON));
+            failedAlerts.addAll(diffCriteriaResults);
+        }
+        if (metricDiffResults != null)
+        {
+            failedAlerts.addAll(metricDiffResults);
         }
 
         result.setFailedCriteria(failedAlerts);
@@ -355,6 +564,7 @@ public class XltTask
                                                                  failedTestCases, slowestRequests,
                                                                  hasDiffReport ? getBuildDiffReportURL(run) : null);
         run.addAction(recorderAction);
+        updateCriterionLedger(run, recorderAction);
 
         // log failed criteria to the build's console
         if (!failedAlerts.isEmpty())
@@ -386,26 +596,80 @@ public class XltTask
         result.setConditionMessage(recorderAction.getConditionMessage());
     }
 
+    /**
+     * Appends the criterion outcome of the given build to the job's criterion ledger. When the ledger is created, it is seeded
+     * with the outcomes of the previous builds in the mark-critical window, or in a default window if mark-critical is not
+     * configured yet.
+     */
+    private void updateCriterionLedger(final Run<?, ?> run, final XltRecorderAction recorderAction)
+    {
+        final CriterionLedger ledger = CriterionLedger.of(run.getParent(), taskConfig.getStepId());
+        try
+        {
+            if (!ledger.exists())
+            {
+                final int minBuildNumber = run.getNumber() - Math.max(taskConfig.getMarkCriticalBuildCount(),
+                                                                      CRITERION_LEDGER_SEED_BUILD_COUNT);
+                final List<CriterionLedger.Outcome> previousOutcomes = new ArrayList<>();
+                Run<?, ?> r = run.getPreviousBuild();
+                while (r != null && r.getNumber() > minBuildNumber)
+                {
+                    for (final XltRecorderAction action : r.getActions(XltRecorderAction.class))
+                    {
+                        if (taskConfig.getStepId().equals(action.getStepId()))
+                        {
+                            previousOutcomes.add(new CriterionLedger.Outcome(r.getNumber(), action.getFailedAlerts().size(),
+                                                                             action.getErrorAlerts().size()));
+                            break;
+                        }
+                    }
+                    r = r.getPreviousBuild();
+                }
+
+                for (int i = previousOutcomes.size() - 1; i >= 0; i--)
+                {
+                    ledger.append(previousOutcomes.get(i));
+                }
+            }
+
+            ledger.append(new CriterionLedger.Outcome(run.getNumber(), recorderAction.getFailedAlerts().size(),
+                                                      recorderAction.getErrorAlerts().size()));
+        }
+        catch (IOException e)
+        {
+            LOGGER.warn("Failed to update criterion ledger", e);
+        }
+    }
+
     private void checkForCritical(final Run<?, ?> run)
     {
         final int mcBuildCount = taskConfig.getMarkCriticalBuildCount();
         final int mcCondCount = taskConfig.getMarkCriticalConditionCount();
         if (taskConfig.getMarkCriticalEnabled() && (mcBuildCount > 0 && mcCondCount > 0 && mcBuildCount >= mcCondCount))
         {
+            final List<CriterionLedger.Outcome> outcomes;
+            try
+            {
+                // the window spans the last builds of the job, builds without an entry did not fail any criterion
+                outcomes = CriterionLedger.of(run.getParent(), taskConfig.getStepId())
+                                          .readLast(mcBuildCount, run.getNumber() - mcBuildCount);
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Failed to read criterion ledger", e);
+                return;
+            }
+
             int failedCriterionBuilds = 0;
-            for (Run<?, ?> eachBuild : Helper.getRuns(run, 0, mcBuildCount))
+            for (final CriterionLedger.Outcome outcome : outcomes)
             {
-                XltRecorderAction recorderAction = eachBuild.getAction(XltRecorderAction.class);
-                if (recorderAction != null)
+                if (outcome.getFailedCount() > 0)
                 {
-                    if (!recorderAction.getFailedAlerts().isEmpty())
+                    failedCriterionBuilds++;
+                    if (failedCriterionBuilds == mcCondCount)
                     {
-                        failedCriterionBuilds++;
-                        if (failedCriterionBuilds == mcCondCount)
-                        {
-                            result.setConditionCritical(true);
-                            break;
-                        }
+                        result.setConditionCritical(true);
+                        break;
                     }
                 }
             }
@@ -417,28 +681,26 @@ public class XltTask
      * 
      * @param run
      * @param listener
-     * @param document
-     *            the test report document
+     * @param data
+     *            the test report data
      * @return the list of failure info objects
      * @throws IOException
      * @throws InterruptedException
      */
-    private List<TestCaseInfo> determineFailedTestCases(final Run<?, ?> run, final TaskListener listener, final Document document)
+    private List<TestCaseInfo> determineFailedTestCases(final Run<?, ?> run, final TaskListener listener, final ReportMetrics data)
         throws IOException, InterruptedException
     {
         final List<TestCaseInfo> failedTestCases = new ArrayList<TestCaseInfo>();
 
         // get the info from the test report
-        if (document != null)
+        if (data != null)
         {
-            @SuppressWarnings("unchecked")
-            final List<Node> matches = XmlUtils.evaluateXPath(document, "/testreport/errors/error", List.class);
-            for (final Node n : matches)
+            for (final String[] record : data.getRecords(ERROR_RECORDS))
             {
-                final String testCaseName = XmlUtils.evaluateXPath(n, "testCaseName");
+                final String testCaseName = StringUtils.defaultString(record[0]);
                 // ensure action name is null if it was not given in test report
-                final String actionName = StringUtils.defaultIfBlank(XmlUtils.evaluateXPath(n, "actionName"), null);
-                final String message = XmlUtils.evaluateXPath(n, "message");
+                final String actionName = StringUtils.defaultIfBlank(record[1], null);
+                final String message = StringUtils.defaultString(record[2]);
 
                 failedTestCases.add(new TestCaseInfo(testCaseName, actionName, message));
             }
@@ -455,26 +717,24 @@ public class XltTask
      * 
      * @param run
      * @param listener
-     * @param document
-     *            the test report document
+     * @param data
+     *            the test report data
      * @return the list of info objects
      * @throws IOException
      * @throws InterruptedException
      */
-    private List<SlowRequestInfo> determineSlowestRequests(final Run<?, ?> run, final TaskListener listener, final Document document)
+    private List<SlowRequestInfo> determineSlowestRequests(final Run<?, ?> run, final TaskListener listener, final ReportMetrics data)
         throws IOException, InterruptedException
     {
         final List<SlowRequestInfo> slowestRequests = new ArrayList<SlowRequestInfo>();
 
         // get the info from the test report
-        if (document != null)
+        if (data != null)
         {
-            @SuppressWarnings("unchecked")
-            final List<Node> matches = XmlUtils.evaluateXPath(document, "/testreport/general/slowestRequests/request", List.class);
-            for (final Node n : matches)
+            for (final String[] record : data.getRecords(SLOWEST_REQUEST_RECORDS))
             {
-                final String url = XmlUtils.evaluateXPath(n, "url");
-                final String runtime = XmlUtils.evaluateXPath(n, "runtime");
+                final String url = StringUtils.defaultString(record[0]);
+                final String runtime = StringUtils.defaultString(record[1]);
 
                 slowestRequests.add(new SlowRequestInfo(url, runtime));
             }
@@ -540,35 +800,33 @@ public class XltTask
 
         if (taskConfig.getCreateSummaryReport() && resultsSaved)
         {
-            try
+            if (taskConfig.getArchiveResults())
             {
-                if (taskConfig.getArchiveResults())
+                submitJobReport(run, listener, ReportGenerationQueue.SUMMARY_REPORT, new JobReport()
                 {
-                    createSummaryReport(run, listener);
-                }
-                else
-                {
-                    listener.getLogger().println("Test results were not archived => SKIPPING creation of summary report");
-                }
+                    @Override
+                    public void create(final TaskListener reportListener) throws Exception
+                    {
+                        createSummaryReport(run, reportListener);
+                    }
+                });
             }
-            catch (Exception e)
+            else
             {
-                listener.getLogger().println("Summary report failed. " + e);
-                LOGGER.error("Summary report failed", e);
+                listener.getLogger().println("Test results were not archived => SKIPPING creation of summary report");
             }
         }
 
         if (taskConfig.getCreateTrendReport() && reportsSaved)
         {
-            try
+            submitJobReport(run, listener, ReportGenerationQueue.TREND_REPORT, new JobReport()
             {
-                createTrendReport(run, listener);
-            }
-            catch (Exception e)
-            {
-                listener.getLogger().println("Trend report failed. " + e);
-                LOGGER.error("Trend report failed", e);
-            }
+                @Override
+                public void create(final TaskListener reportListener) throws Exception
+                {
+                    createTrendReport(run, reportListener);
+                }
+            });
         }
 
         listener.getLogger().println("\n\n-----------------------------------------------------------------\nArchive logs ...\n");
@@ -587,7 +845,8 @@ public class XltTask
         // delete temporary directory with local XLT
         try
         {
-            getTemporaryXltFolder(run, launcher).deleteRecursive();
+            final hudson.model.Node node = Helper.getBuildNodeIfOnlineOrFail(launcher);
+            new XltInstallationCache(node.getRootPath()).uninstall(getTemporaryXltFolder(run, launcher), listener);
         }
         catch (Exception e)
         {
@@ -598,6 +857,57 @@ public class XltTask
         listener.getLogger().println("\nFinished");
     }
 
+    /**
+     * Hands the creation of a job-level report over to the {@link ReportGenerationQueue}, so the build does not have to wait
+     * for it. The output of the report generator goes to a log file next to the report.
+     */
+    private void submitJobReport(final Run<?, ?> run, final TaskListener listener, final String reportName, final JobReport report)
+    {
+        final Job<?, ?> job = run.getParent();
+        final File logFile = getJobReportLogFile(job, reportName);
+        listener.getLogger().println("Creation of " + reportName + " report scheduled, see " + logFile + " for its output");
+
+        ReportGenerationQueue.submit(job, taskConfig.getStepId(), reportName, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                StreamTaskListener reportListener = null;
+                try
+                {
+                    FileUtils.forceMkdir(logFile.getParentFile());
+                    reportListener = new StreamTaskListener(logFile);
+                    reportListener.getLogger().println("Build: " + run.getFullDisplayName());
+
+                    report.create(reportListener);
+                }
+                catch (Exception e)
+                {
+                    if (reportListener != null)
+                    {
+                        reportListener.getLogger().println(StringUtils.capitalize(reportName) + " report failed. " + e);
+                    }
+                    LOGGER.error(StringUtils.capitalize(reportName) + " report failed for " + run.getFullDisplayName(), e);
+                }
+                finally
+                {
+                    if (reportListener != null)
+                    {
+                        reportListener.closeQuietly();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates a job-level report.
+     */
+    private interface JobReport
+    {
+        void create(TaskListener listener) throws Exception;
+    }
+
     private boolean isEC2UsageEnabled()
     {
         return taskConfig.getAgentControllerConfig() instanceof AmazonEC2;
@@ -891,10 +1201,10 @@ public class XltTask
         FilePath destDir = getTemporaryXltFolder(run, launcher);
         listener.getLogger().println("Target directory: " + destDir.getRemote());
 
-        // copy XLT to a remote directory
-        String excludePattern = "config/scriptdoc/, config/externaldataconfig.xml.sample, config/scriptdocgenerator.properties";
-        int copyCount = srcDir.copyRecursiveTo("bin/**, config/**, lib/**", excludePattern, destDir);
-        if (copyCount == 0 || destDir.list() == null || destDir.list().isEmpty())
+        // set up XLT in a remote directory, the bulk of it is cached on the node and shared between builds
+        final hudson.model.Node node = Helper.getBuildNodeIfOnlineOrFail(launcher);
+        new XltInstallationCache(node.getRootPath()).install(srcDir, destDir, listener);
+        if (destDir.list() == null || destDir.list().isEmpty())
         {
             throw new Exception("Copy template failed. Nothing was copyed from xlt template \"" + srcDir.getRemote() +
                                 "\" to destination \"" + destDir + "\"");
@@ -941,10 +1251,10 @@ public class XltTask
         }
         commandLine.add("-auto");
 
+        // the test suite and the properties files have been validated before
         final String mcPropertiesFile = taskConfig.getAdditionalMCPropertiesFile();
         if (StringUtils.isNotBlank(mcPropertiesFile))
         {
-            validateMCPropertiesFile(launcher, workspace);
             commandLine.add("-pf");
             commandLine.add(getMCPropertiesFile(workspace).getRemote());
         }
@@ -952,12 +1262,10 @@ public class XltTask
         final String testPropertiesFile = taskConfig.getTestPropertiesFile();
         if (StringUtils.isNotBlank(testPropertiesFile))
         {
-            validateTestPropertiesFile(launcher, workspace);
             commandLine.add("-testPropertiesFile");
             commandLine.add(testPropertiesFile);
         }
 
-        validateTestSuiteDirectory(workspace);
         commandLine.add("-Dcom.xceptance.xlt.mastercontroller.testSuitePath=" + getTestSuiteFolder(workspace).getRemote());
         commandLine.add("-Dcom.xceptance.xlt.mastercontroller.results=" + getXltResultFolder(run, launcher).getRemote());
 
@@ -972,6 +1280,13 @@ public class XltTask
         }
     }
 
+    private void validateTestSuite(final Launcher launcher, final FilePath workspace) throws Exception
+    {
+        validateTestSuiteDirectory(workspace);
+        validateMCPropertiesFile(launcher, workspace);
+        validateTestPropertiesFile(launcher, workspace);
+    }
+
     private void validateTestPropertiesFile(final Launcher launcher, final FilePath workspace) throws Exception
     {
         final String testPropertiesFile = taskConfig.getTestPropertiesFile();
@@ -1074,11 +1389,9 @@ public class XltTask
         }
     }
 
-    private void saveResults(final Run<?, ?> run, final Launcher launcher, final TaskListener listener)
+    private void prepareResults(final Run<?, ?> run, final Launcher launcher, final TaskListener listener)
         throws IOException, InterruptedException, BuildNodeGoneException, Exception
     {
-        listener.getLogger().println("\n\n-----------------------------------------------------------------\nArchive results...\n");
-
         run.pickArtifactManager();
 
         final FilePath resultFolder = getXltResultFolder(run, launcher);
@@ -1088,11 +1401,26 @@ public class XltTask
             throw new Exception("No results found at: " + resultFolder.getRemote());
         }
         resultSubFolder.moveAllChildrenTo(resultFolder);
+    }
+
+    private void saveResults(final Run<?, ?> run, final Launcher launcher, final TaskListener listener)
+        throws IOException, InterruptedException, BuildNodeGoneException, Exception
+    {
+        listener.getLogger().println("\n\n-----------------------------------------------------------------\nArchive results...\n");
 
         // save load test results (copy from node)
         if (taskConfig.getArchiveResults())
         {
-            Helper.copyFolder(resultFolder, getBuildResultFolder(run));
+            if (taskConfig.getPackArchivedResults())
+            {
+                FolderTransfer.pack(getXltResultFolder(run, launcher), getBuildResultContainer(run),
+                                    taskConfig.getArchiveCompressionLevel(), listener);
+            }
+            else
+            {
+                FolderTransfer.copy(getXltResultFolder(run, launcher), getBuildResultFolder(run),
+                                    taskConfig.getArchiveCompressionLevel(), listener);
+            }
         }
     }
 
@@ -1106,7 +1434,8 @@ public class XltTask
             final FilePath reportFolder = getXltReportFolder(run, launcher);
             if (reportFolder.exists())
             {
-                Helper.moveFolder(reportFolder, getBuildReportFolder(run));
+                FolderTransfer.move(reportFolder, getBuildReportFolder(run), taskConfig.getArchiveCompressionLevel(), listener);
+                deduplicateReport(run.getParent(), getBuildReportFolder(run), listener);
 
                 result.setReportUrl(getBuildReportURL(run));
             }
@@ -1117,11 +1446,87 @@ public class XltTask
             final FilePath diffReportFolder = getXltDiffReportFolder(run, launcher);
             if (diffReportFolder.exists())
             {
-                Helper.moveFolder(diffReportFolder, getBuildDiffReportFolder(run));
+                FolderTransfer.move(diffReportFolder, getBuildDiffReportFolder(run), taskConfig.getArchiveCompressionLevel(), listener);
+                deduplicateReport(run.getParent(), getBuildDiffReportFolder(run), listener);
 
                 result.setDiffReportUrl(getBuildDiffReportURL(run));
             }
         }
+
+        // remove the files of deleted builds
+        try
+        {
+            final int removed = getReportBlobStore(run.getParent()).collectGarbage();
+            if (removed > 0)
+            {
+                listener.getLogger().println("Removed " + removed + " report file(s) no longer used by any build");
+            }
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn("Failed to clean up report files of job " + run.getParent().getFullName(), e);
+        }
+    }
+
+    /**
+     * Shares the files of the given report with the other reports of the job where they are identical.
+     */
+    private static void deduplicateReport(final Job<?, ?> job, final FilePath reportFolder, final TaskListener listener)
+    {
+        try
+        {
+            final ReportBlobStore.Stats dedup = getReportBlobStore(job).deduplicate(new File(reportFolder.getRemote()));
+            if (dedup.getSharedFiles() > 0)
+            {
+                listener.getLogger().println(dedup.getSharedFiles() + " of " + dedup.getFiles() + " file(s) in " +
+                                             reportFolder.getRemote() + " shared with other reports, " +
+                                             dedup.getSavedBytes() / 1024 + " KB saved");
+            }
+        }
+        catch (final IOException e)
+        {
+            // the report is complete anyway, it just takes up more space
+            LOGGER.warn("Failed to deduplicate report " + reportFolder.getRemote(), e);
+        }
+    }
+
+    /**
+     * Returns the sibling folder a job-level report is generated into before it replaces the given report folder, so the
+     * previous report stays available while the new one is being generated and survives a failing report generator.
+     */
+    private static FilePath getReportStagingFolder(final FilePath reportFolder)
+    {
+        return reportFolder.getParent().child("." + reportFolder.getName() + ".new");
+    }
+
+    /**
+     * Replaces the given report folder with the report generated into its staging folder. The previous report is removed
+     * only after the new one has been moved in place.
+     */
+    private static void publishStagedReport(final FilePath reportFolder) throws IOException, InterruptedException
+    {
+        final FilePath stagingFolder = getReportStagingFolder(reportFolder);
+        final FilePath oldFolder = reportFolder.getParent().child("." + reportFolder.getName() + ".old");
+
+        oldFolder.deleteRecursive();
+        if (reportFolder.exists())
+        {
+            reportFolder.renameTo(oldFolder);
+        }
+        try
+        {
+            stagingFolder.renameTo(reportFolder);
+        }
+        catch (IOException | InterruptedException e)
+        {
+            // restore the previous report
+            if (oldFolder.exists() && !reportFolder.exists())
+            {
+                oldFolder.renameTo(reportFolder);
+            }
+            throw e;
+        }
+        oldFolder.deleteRecursive();
     }
 
     private void createSummaryReport(final Run<?, ?> run, final TaskListener listener) throws Exception
@@ -1149,96 +1554,58 @@ public class XltTask
             commandLine.add("create_report.cmd");
         }
 
-        FilePath outputFolder = getSummaryReportFolder(run.getParent());
+        final FilePath outputFolder = getSummaryReportFolder(run.getParent());
+        final FilePath stagingFolder = getReportStagingFolder(outputFolder);
         commandLine.add("-o");
-        commandLine.add(outputFolder.getRemote());
+        commandLine.add(stagingFolder.getRemote());
 
         commandLine.add(getSummaryResultsFolder(run.getParent()).getRemote());
 
         // Redmine #2999: Agent charts pile up in summary report
-        // -> wipe out output folder before generating the report
-        outputFolder.deleteRecursive();
+        // -> generate into an empty folder that replaces the previous report afterwards
+        stagingFolder.deleteRecursive();
 
         // run the report generator on the master
         int commandResult = Helper.executeCommand(launcher, getXltBinFolderOnMaster(), commandLine, listener);
         listener.getLogger().println("Load report generator returned with exit code: " + commandResult);
         if (commandResult != 0)
         {
-            run.setResult(Result.FAILURE);
+            // the build is already finished, so its result cannot be changed anymore
+            LOGGER.warn("Load report generator returned with exit code " + commandResult + " for " + run.getFullDisplayName());
+            stagingFolder.deleteRecursive();
+        }
+        else
+        {
+            deduplicateReport(run.getParent(), stagingFolder, listener);
+            publishStagedReport(outputFolder);
         }
     }
 
     private void copyResults(final Run<?, ?> run, final TaskListener listener) throws InterruptedException, IOException
     {
-        // recreate a fresh summary results directory
-        FilePath summaryResultsFolder = getSummaryResultsFolder(run.getParent());
-
-        summaryResultsFolder.deleteRecursive();
-        summaryResultsFolder.mkdirs();
-
-        // copy config from the current build's results
-        FilePath configFolder = getBuildResultConfigFolder(run);
-        FilePath summaryConfigFolder = getSummaryResultsConfigFolder(run.getParent());
-
-        configFolder.copyRecursiveTo(summaryConfigFolder);
-
-        // copy timer data from the last n builds
-
-        List<Run<?, ?>> builds = new ArrayList<Run<?, ?>>(run.getPreviousBuildsOverThreshold(taskConfig.getNumberOfBuildsForSummaryReport() -
-                                                                                             1, Result.UNSTABLE));
-        builds.add(0, run);
+        // stage the timer data of the last n builds, the files of builds already staged before are kept
+        // (results may exist for builds without report data, so the metrics history cannot serve as index here)
+        final Iterable<Run<?, ?>> builds = Helper.getRuns(run, taskConfig.getNumberOfBuildsForSummaryReport(), Result.UNSTABLE, null);
 
+        final Map<Integer, File> resultsFolders = new TreeMap<>();
         for (Run<?, ?> build : builds)
         {
-            FilePath resultsFolder = getBuildResultFolder(build);
+            // in this case using File is ok, because copying results is done on master
+            final File resultsFolder = new File(getBuildResultFolder(build).getRemote());
+            final File resultsContainer = new File(getBuildResultContainer(build).getRemote());
             if (resultsFolder.isDirectory())
             {
-                copyResults(summaryResultsFolder, resultsFolder, build.getNumber());
+                resultsFolders.put(build.getNumber(), resultsFolder);
             }
-        }
-    }
-
-    private void copyResults(final FilePath targetDir, final FilePath srcDir, final int buildNumber)
-        throws IOException, InterruptedException
-    {
-        List<FilePath> files = srcDir.list();
-        if (files != null)
-        {
-            for (FilePath file : files)
+            else if (resultsContainer.isFile())
             {
-                if (file.isDirectory())
-                {
-                    copyResults(new FilePath(targetDir, file.getName()), file, buildNumber);
-                }
-                else if (file.getName().startsWith("timers.csv"))
-                {
-                    // regular timer files
-                    // use File instead of FilePath to prevent error on Windows systems
-                    // in this case using File is ok, because copying results is done on master
-                    File renamedResultsFile = new File(targetDir.getRemote(), file.getName() + "." + buildNumber);
-                    FileUtils.copyFile(new File(file.getRemote()), renamedResultsFile);
-                }
-                else if (file.getName().endsWith(".csv"))
-                {
-                    // WebDriver timer files
-                    FileUtils.copyFileToDirectory(new File(file.getRemote()), new File(targetDir.getRemote()));
-                }
+                resultsFolders.put(build.getNumber(), resultsContainer);
             }
         }
-    }
 
-    private FilePath copyReport(final FilePath targetDirectory, final FilePath reportDirectory, final int buildNumber)
-        throws IOException, InterruptedException
-    {
-        final FilePath dest = targetDirectory.child(Integer.toString(buildNumber));
-        for (final FilePath file : reportDirectory.list())
-        {
-            if (file.getName().endsWith(".xml"))
-            {
-                FileUtils.copyFile(new File(file.getRemote()), new File(dest.getRemote(), file.getName()));
-            }
-        }
-        return dest;
+        final File summaryResultsFolder = new File(getSummaryResultsFolder(run.getParent()).getRemote());
+        final int added = new SummaryResultsStaging(summaryResultsFolder).update(resultsFolders);
+        listener.getLogger().println("Staged results of " + resultsFolders.size() + " build(s), " + added + " of them new");
     }
 
     private void createTrendReport(final Run<?, ?> run, final TaskListener listener) throws Exception
@@ -1262,90 +1629,114 @@ public class XltTask
             commandLine.add("create_trend_report.cmd");
         }
 
-        FilePath trendReportDest = getTrendReportFolder(run.getParent());
+        final FilePath trendReportDest = getTrendReportFolder(run.getParent());
+        final FilePath stagingFolder = getReportStagingFolder(trendReportDest);
         commandLine.add("-o");
-        commandLine.add(trendReportDest.getRemote());
+        commandLine.add(stagingFolder.getRemote());
+
+        // get the current build and some previous builds with reports that were either UNSTABLE or SUCCESS
+        final List<Run<?, ?>> builds = new ArrayList<>();
+        for (final Run<?, ?> eachBuild : Helper.getRuns(run, taskConfig.getNumberOfBuildsForTrendReport(), Result.UNSTABLE,
+                                                        getRunIndex(run.getParent())))
+        {
+            builds.add(eachBuild);
+        }
 
-        // get some previous builds that were either UNSTABLE or SUCCESS
-        List<Run<?, ?>> builds = new ArrayList<Run<?, ?>>(run.getPreviousBuildsOverThreshold(taskConfig.getNumberOfBuildsForTrendReport() -
-                                                                                             1, Result.UNSTABLE));
-        // add the current build
-        builds.add(0, run);
+        // link the XML files of the reports into the trend results folder, reports staged for previous builds are kept
+        // in this case using File is ok, because the trend report is created on master
+        final Map<Integer, File> reportFolders = new TreeMap<>();
+        for (Run<?, ?> eachBuild : builds)
+        {
+            final FilePath reportDirectory = getBuildReportFolder(eachBuild);
+            if (reportDirectory.isDirectory())
+            {
+                reportFolders.put(eachBuild.getNumber(), new File(reportDirectory.getRemote()));
+            }
+        }
 
-        final FilePath trendResultsFolder = getTrendResultsFolder(run.getParent());
+        final TrendResultsStaging staging = new TrendResultsStaging(new File(getTrendResultsFolder(run.getParent()).getRemote()));
+        final int added = staging.update(reportFolders);
+        listener.getLogger().println("Staged reports of " + reportFolders.size() + " build(s), " + added + " of them new");
 
-        try
+        // add the report directories
+        int numberOfBuildsWithReports = 0;
+        for (Run<?, ?> eachBuild : builds)
         {
-            // add the report directories
-            int numberOfBuildsWithReports = 0;
-            for (Run<?, ?> eachBuild : builds)
+            // folder might not exist (e.g. no XML file in the report)
+            final File buildFolder = staging.getBuildFolder(eachBuild.getNumber());
+            if (buildFolder.isDirectory())
             {
-                final FilePath reportDirectory = getBuildReportFolder(eachBuild);
-                if (reportDirectory.isDirectory())
-                {
-                    // copy all XML files to a temporary folder whose name is the number of the build
-                    final FilePath tempReportCopy = copyReport(trendResultsFolder, reportDirectory, eachBuild.getNumber());
-                    // folder might not exist (e.g. no XML file copied)
-                    if (tempReportCopy.exists())
-                    {
-                        commandLine.add(tempReportCopy.getRemote());
-                        numberOfBuildsWithReports++;
-                    }
-                }
+                commandLine.add(buildFolder.getAbsolutePath());
+                numberOfBuildsWithReports++;
             }
+        }
+
+        // check whether we have enough builds with reports to create a trend report
+        if (numberOfBuildsWithReports > 1)
+        {
+            // the files of the previous trend report may be shared with other reports and must not be overwritten in place,
+            // so the report is generated into an empty folder that replaces the previous report afterwards
+            stagingFolder.deleteRecursive();
 
-            // check whether we have enough builds with reports to create a trend report
-            if (numberOfBuildsWithReports > 1)
+            // run trend report generator on master
+            int commandResult = Helper.executeCommand(launcher, getXltBinFolderOnMaster(), commandLine, listener);
+            listener.getLogger().println("Trend report generator returned with exit code: " + commandResult);
+            if (commandResult != 0)
             {
-                // run trend report generator on master
-                int commandResult = Helper.executeCommand(launcher, getXltBinFolderOnMaster(), commandLine, listener);
-                listener.getLogger().println("Trend report generator returned with exit code: " + commandResult);
-                if (commandResult != 0)
-                {
-                    run.setResult(Result.FAILURE);
-                }
+                // the build is already finished, so its result cannot be changed anymore
+                LOGGER.warn("Trend report generator returned with exit code " + commandResult + " for " + run.getFullDisplayName());
+                stagingFolder.deleteRecursive();
             }
             else
             {
-                listener.getLogger().println("Cannot create trend report because no previous reports available!");
+                deduplicateReport(run.getParent(), stagingFolder, listener);
+                publishStagedReport(trendReportDest);
             }
         }
-        finally
+        else
         {
-            // trend report generation done -> temporary folder can be removed
-            trendResultsFolder.deleteRecursive();
+            listener.getLogger().println("Cannot create trend report because no previous reports available!");
         }
     }
 
-    private void createDiffReport(final Run<?, ?> run, final Launcher launcher, final FilePath workspace, final TaskListener listener)
-        throws Exception
+    /**
+     * Returns the build whose report is the baseline of the difference report.
+     *
+     * @return the build, or <code>null</code> if there is no such build or the baseline is a directory
+     */
+    private Run<?, ?> getDiffReportBaselineBuild(final Run<?, ?> run)
     {
-        if (!taskConfig.getCreateDiffReport())
+        final String baseLine = taskConfig.getDiffReportBaseline();
+        if (StringUtils.isBlank(baseLine))
         {
-            return;
+            return run.getPreviousSuccessfulBuild();
         }
+        else if (baseLine.startsWith("#"))
+        {
+            return run.getParent().getBuildByNumber(Integer.parseInt(baseLine.substring(1)));
+        }
+        return null;
+    }
 
-        listener.getLogger().println("-----------------------------------------------------------------\nCreating difference report ...\n");
-
+    /**
+     * Returns the report directory that is the baseline of the difference report.
+     *
+     * @return the directory, or <code>null</code> if the previous successful build is the baseline, but there is none
+     * @throws Exception
+     *             thrown if the configured baseline cannot be resolved
+     */
+    private FilePath getDiffReportBaselineFolder(final Run<?, ?> run, final TaskListener listener) throws Exception
+    {
         final String baseLine = taskConfig.getDiffReportBaseline();
         FilePath baseLinePath = null;
         if (StringUtils.isBlank(baseLine) || baseLine.startsWith("#"))
         {
-            Run<?, ?> r = null;
-
-            if (StringUtils.isBlank(baseLine))
+            final Run<?, ?> r = getDiffReportBaselineBuild(run);
+            if (r == null && StringUtils.isBlank(baseLine))
             {
-                r = run.getPreviousSuccessfulBuild();
-                if (r == null)
-                {
-                    listener.getLogger()
-                            .println("Did not find a previous build that was successful => Creation of difference report will be SKIPPED");
-                    return;
-                }
-            }
-            else
-            {
-                r = run.getParent().getBuildByNumber(Integer.parseInt(baseLine.substring(1)));
+                listener.getLogger()
+                        .println("Did not find a previous build that was successful => Creation of difference report will be SKIPPED");
+                return null;
             }
 
             if (r != null)
@@ -1362,10 +1753,142 @@ public class XltTask
         {
             throw new Exception("Failed to resolve difference report directory for '" + baseLine + "'");
         }
+        return baseLinePath;
+    }
+
+    /**
+     * Compares the configured values of the build with those of the baseline, instead of creating the full difference report
+     * on the build node. The full report is created on the master only if a value exceeds its limit.
+     */
+    private void compareMetrics(final Run<?, ?> run, final TaskListener listener) throws Exception
+    {
+        if (!taskConfig.getCreateDiffReport() || !taskConfig.getDiffReportMetricsOnly())
+        {
+            return;
+        }
+
+        listener.getLogger().println("-----------------------------------------------------------------\nComparing values with baseline ...\n");
+
+        final FilePath baseLinePath = getDiffReportBaselineFolder(run, listener);
+        if (baseLinePath == null)
+        {
+            return;
+        }
 
-        // copy baseline report to temporary directory
-        final FilePath tempBaseLineDir = workspace.createTempDir("diff-report", "base");
-        baseLinePath.copyRecursiveTo(tempBaseLineDir);
+        final ReportMetrics reportMetrics = getReportMetrics(run);
+        if (reportMetrics == null)
+        {
+            throw new Exception("No test report found for build " + run.getFullDisplayName());
+        }
+
+        // prefer what was recorded for a baseline build over reading its test report, as long as it covers all limited values
+        Map<String, Double> baseLineValues = null;
+        final Run<?, ?> baseLineBuild = getDiffReportBaselineBuild(run);
+        if (baseLineBuild != null)
+        {
+            final BuildMetrics baseLineMetrics = getRecordedBuildMetrics(baseLineBuild);
+            if (baseLineMetrics != null && MetricDiff.hasLimitedValues(baseLineMetrics.getValues(), config))
+            {
+                baseLineValues = baseLineMetrics.getValues();
+            }
+        }
+        if (baseLineValues == null)
+        {
+            final ReportMetrics baseLineMetrics = ReportMetrics.evaluate(ReportData.load(baseLinePath.child("testreport.xml"), config),
+                                                                         config);
+            if (baseLineMetrics == null)
+            {
+                throw new Exception("No test report found in baseline " + baseLinePath.getRemote());
+            }
+            baseLineValues = baseLineMetrics.getNumbers();
+        }
+
+        metricDiffResults = MetricDiff.getFailed(reportMetrics.getNumbers(), baseLineValues, config);
+        listener.getLogger().println(metricDiffResults.size() + " value(s) changed more than allowed compared to " +
+                                     baseLinePath.getRemote());
+
+        if (!metricDiffResults.isEmpty())
+        {
+            createDiffReportOnMaster(run, baseLinePath, listener);
+        }
+    }
+
+    /**
+     * Creates the full difference report from the archived reports, to help analyzing values that exceeded their limits.
+     */
+    private void createDiffReportOnMaster(final Run<?, ?> run, final FilePath baseLinePath, final TaskListener listener)
+        throws Exception
+    {
+        listener.getLogger().println("-----------------------------------------------------------------\nCreating difference report ...\n");
+
+        final jenkins.model.Jenkins masterNode = Jenkins.getActiveInstance();
+        final Launcher launcher = masterNode.createLauncher(listener);
+        launcher.decorateFor(masterNode);
+
+        final List<String> commandLine = new ArrayList<String>();
+        if (launcher.isUnix())
+        {
+            commandLine.add("./create_diff_report.sh");
+        }
+        else
+        {
+            commandLine.add("cmd.exe");
+            commandLine.add("/c");
+            commandLine.add("create_diff_report.cmd");
+        }
+
+        final FilePath diffReportDest = getBuildDiffReportFolder(run);
+        commandLine.add("-o");
+        commandLine.add(diffReportDest.getRemote());
+        commandLine.add(baseLinePath.getRemote());
+        commandLine.add(getBuildReportFolder(run).getRemote());
+
+        final int commandResult = Helper.executeCommand(launcher, getXltBinFolderOnMaster(), commandLine, listener);
+        listener.getLogger().println("Difference report generator returned with exit code: " + commandResult);
+        if (commandResult != 0)
+        {
+            run.setResult(Result.FAILURE);
+            return;
+        }
+
+        deduplicateReport(run.getParent(), diffReportDest, listener);
+        result.setDiffReportUrl(getBuildDiffReportURL(run));
+    }
+
+    private void createDiffReport(final Run<?, ?> run, final Launcher launcher, final FilePath workspace, final TaskListener listener)
+        throws Exception
+    {
+        // when comparing values only, the full report is created later on the master if needed
+        if (!taskConfig.getCreateDiffReport() || taskConfig.getDiffReportMetricsOnly())
+        {
+            return;
+        }
+
+        listener.getLogger().println("-----------------------------------------------------------------\nCreating difference report ...\n");
+
+        final String baseLine = taskConfig.getDiffReportBaseline();
+        final FilePath baseLinePath = getDiffReportBaselineFolder(run, listener);
+        if (baseLinePath == null)
+        {
+            return;
+        }
+
+        // a fixed baseline is transferred to the build node only once and then taken from the node's cache, the
+        // previous build's report changes with every build and is copied to a temporary directory instead
+        final FilePath baseLineDir;
+        final FilePath tempBaseLineDir;
+        if (StringUtils.isNotBlank(baseLine))
+        {
+            final hudson.model.Node node = Helper.getBuildNodeIfOnlineOrFail(launcher);
+            baseLineDir = new BaselineReportCache(node.getRootPath()).get(baseLinePath, listener);
+            tempBaseLineDir = null;
+        }
+        else
+        {
+            tempBaseLineDir = workspace.createTempDir("diff-report", "base");
+            baseLinePath.copyRecursiveTo(tempBaseLineDir);
+            baseLineDir = tempBaseLineDir;
+        }
 
         final ArrayList<String> cmdLine = new ArrayList<>();
         if (launcher.isUnix())
@@ -1385,7 +1908,7 @@ public class XltTask
         cmdLine.add(diffReportDest.getRemote());
 
         // add remaining args
-        cmdLine.add(tempBaseLineDir.getRemote());
+        cmdLine.add(baseLineDir.getRemote());
         cmdLine.add(getXltReportFolder(run, launcher).getRemote());
 
         // run difference report generator
@@ -1404,7 +1927,10 @@ public class XltTask
         }
         finally
         {
-            tempBaseLineDir.deleteRecursive();
+            if (tempBaseLineDir != null)
+            {
+                tempBaseLineDir.deleteRecursive();
+            }
         }
 
         final String critFile = Helper.environmentResolve(taskConfig.getDiffReportCriteriaFile());
@@ -1427,43 +1953,58 @@ public class XltTask
             cmdLine.add(critFilePath.getRemote());
             cmdLine.add(diffReportDest.child("diffreport.xml").getRemote());
 
-            final ByteArrayOutputStream os = new ByteArrayOutputStream(4096);
-            final BufferedOutputStream buf = new BufferedOutputStream(os);
-            try
-            {
-                commandResult = Helper.executeCommand(launcher, xltBinFolder, cmdLine, buf);
-            }
-            finally
+            // the output is parsed while it is produced, only its beginning is kept to be logged in case of an error
+            final ByteArrayOutputStream head = new ByteArrayOutputStream();
+            final OutputStream headOut = new OutputStream()
             {
-                buf.flush();
-                buf.close();
-            }
+                @Override
+                public void write(final int b)
+                {
+                    if (head.size() < MAX_LOGGED_CRITERIA_OUTPUT)
+                    {
+                        head.write(b);
+                    }
+                }
 
-            final byte[] bytes = os.toByteArray();
-            final String out = new String(bytes, Charsets.UTF_8);
+                @Override
+                public void write(final byte[] b, final int off, final int len)
+                {
+                    head.write(b, off, Math.max(0, Math.min(len, MAX_LOGGED_CRITERIA_OUTPUT - head.size())));
+                }
+            };
 
-            listener.getLogger().println("Criteria check returned with exit code: " + commandResult);
-            if (commandResult != 0)
+            final List<CriterionResult> criteriaResults = new ArrayList<>();
+            commandResult = Helper.executeCommand(launcher, xltBinFolder, cmdLine, new Helper.OutputHandler()
             {
-                run.setResult(Result.FAILURE);
-                listener.getLogger().println("check_criteria output: " + out);
-            }
-            else
-            {
-                if (StringUtils.isNotBlank(out))
+                @Override
+                public void handle(final InputStream out) throws IOException
                 {
-                    JSONObject o = null;
+                    final InputStream in = new TeeInputStream(out, headOut);
                     try
                     {
-                        o = new JSONObject(out);
+                        final Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+                        criteriaResults.addAll(CriterionChecker.parseCriteriaValidationResult(reader));
                     }
-                    catch (JSONException e)
+                    catch (final IOException e)
                     {
-                        // ignore
+                        // no valid output, e.g. an error message
+                        LOGGER.debug("Failed to parse output of criteria check: " + e);
                     }
 
-                    critOutJSON = o;
+                    // read the rest through the tee as well, so the log gets the full head of the output
+                    IOUtils.copy(in, NullOutputStream.NULL_OUTPUT_STREAM);
                 }
+            });
+
+            listener.getLogger().println("Criteria check returned with exit code: " + commandResult);
+            if (commandResult != 0)
+            {
+                run.setResult(Result.FAILURE);
+                listener.getLogger().println("check_criteria output: " + new String(head.toByteArray(), StandardCharsets.UTF_8));
+            }
+            else
+            {
+                diffCriteriaResults = criteriaResults;
             }
         }
     }
@@ -1488,24 +2029,99 @@ public class XltTask
 
         init();
 
-        boolean reportsSaved = false, resultsSaved = false;
+        StageGraph postTestStages = null;
         try
         {
-            copyXlt(run, launcher, listener);
+            // installing XLT overlaps with validating the test suite, agent controllers are set up only if both succeeded
+            final StageGraph preTestStages = new StageGraph("Pre-test stage", STAGE_PARALLELISM, listener.getLogger());
+            preTestStages.add(STAGE_INSTALL_XLT, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    copyXlt(run, launcher, listener);
+                }
+            });
+            preTestStages.add(STAGE_VALIDATE_TEST_SUITE, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    validateTestSuite(launcher, workspace);
+                }
+            });
+            preTestStages.add(STAGE_CONFIGURE_AGENT_CONTROLLERS, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    configureAgentController(run, workspace, launcher, listener);
+                }
+            }, STAGE_INSTALL_XLT, STAGE_VALIDATE_TEST_SUITE);
+            preTestStages.execute();
 
-            configureAgentController(run, workspace, launcher, listener);
             runMasterController(run, launcher, workspace, listener);
 
-            saveResults(run, launcher, listener);
-            resultsSaved = true;
-
-            createReport(run, launcher, listener);
-            createDiffReport(run, launcher, workspace, listener);
-
-            saveReports(run, launcher, listener);
-            reportsSaved = true;
+            // the post-test stages, archiving the results overlaps with creating and evaluating the report(s)
+            postTestStages = new StageGraph("Post-test stage", STAGE_PARALLELISM, listener.getLogger());
+            postTestStages.add(STAGE_PREPARE_RESULTS, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    prepareResults(run, launcher, listener);
+                }
+            });
+            postTestStages.add(STAGE_SAVE_RESULTS, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    saveResults(run, launcher, listener);
+                }
+            }, STAGE_PREPARE_RESULTS);
+            postTestStages.add(STAGE_CREATE_REPORT, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    createReport(run, launcher, listener);
+                }
+            }, STAGE_PREPARE_RESULTS);
+            postTestStages.add(STAGE_CREATE_DIFF_REPORT, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    createDiffReport(run, launcher, workspace, listener);
+                }
+            }, STAGE_CREATE_REPORT);
+            postTestStages.add(STAGE_SAVE_REPORTS, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    saveReports(run, launcher, listener);
+                }
+            }, STAGE_CREATE_DIFF_REPORT);
+            postTestStages.add(STAGE_COMPARE_METRICS, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    compareMetrics(run, listener);
+                }
+            }, STAGE_SAVE_REPORTS);
+            postTestStages.add(STAGE_VALIDATE_CRITERIA, new StageGraph.Stage()
+            {
+                @Override
+                public void run() throws Exception
+                {
+                    validateCriteria(run, listener);
+                }
+            }, STAGE_SAVE_RESULTS, STAGE_SAVE_REPORTS, STAGE_COMPARE_METRICS);
 
-            validateCriteria(run, listener);
+            postTestStages.execute();
         }
         catch (InterruptedException e)
         {
@@ -1519,6 +2135,9 @@ public class XltTask
         }
         finally
         {
+            final boolean resultsSaved = postTestStages != null && postTestStages.isDone(STAGE_SAVE_RESULTS);
+            final boolean reportsSaved = postTestStages != null && postTestStages.isDone(STAGE_SAVE_REPORTS);
+
             performPostTestSteps(run, launcher, listener, resultsSaved, reportsSaved);
 
             if (run.getResult() == Result.FAILURE)
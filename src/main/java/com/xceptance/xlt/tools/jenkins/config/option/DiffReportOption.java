@@ -16,6 +16,7 @@
 package com.xceptance.xlt.tools.jenkins.config.option;
 
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import com.xceptance.xlt.tools.jenkins.util.ConfigurationValidator;
@@ -30,6 +31,8 @@ public class DiffReportOption extends AbstractOption
 
     private final String criteriaFile;
 
+    private boolean metricsOnly;
+
     @DataBoundConstructor
     public DiffReportOption(final String baseline, final String criteriaFile)
     {
@@ -47,6 +50,17 @@ public class DiffReportOption extends AbstractOption
         return criteriaFile;
     }
 
+    public boolean isMetricsOnly()
+    {
+        return metricsOnly;
+    }
+
+    @DataBoundSetter
+    public void setMetricsOnly(final boolean metricsOnly)
+    {
+        this.metricsOnly = metricsOnly;
+    }
+
     @Extension
     public static class DescriptorImpl extends Descriptor<AbstractOption>
     {
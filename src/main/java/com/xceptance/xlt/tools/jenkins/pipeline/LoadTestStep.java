@@ -41,6 +41,7 @@ import com.xceptance.xlt.tools.jenkins.config.option.MarkCriticalOption;
 import com.xceptance.xlt.tools.jenkins.config.option.SummaryReportOption;
 import com.xceptance.xlt.tools.jenkins.config.option.TrendReportOption;
 import com.xceptance.xlt.tools.jenkins.util.ConfigurationValidator;
+import com.xceptance.xlt.tools.jenkins.util.FolderTransfer;
 import com.xceptance.xlt.tools.jenkins.util.PluginDefaults;
 import com.xceptance.xlt.tools.jenkins.util.ValidationUtils.Flags;
 
@@ -56,6 +57,10 @@ public class LoadTestStep extends Step implements LoadTestConfiguration
 {
     private boolean archiveResults;
 
+    private int archiveCompressionLevel;
+
+    private boolean packArchivedResults;
+
     @CheckForNull
     private String additionalMCPropertiesFile;
 
@@ -127,6 +132,7 @@ public class LoadTestStep extends Step implements LoadTestConfiguration
 
         // misc.
         this.archiveResults = getDescriptor().getDefaultArchiveResults();
+        this.archiveCompressionLevel = getDescriptor().getDefaultArchiveCompressionLevel();
     }
 
     @Nonnull
@@ -399,6 +405,12 @@ public class LoadTestStep extends Step implements LoadTestConfiguration
         return diffReport != null ? diffReport.getCriteriaFile() : null;
     }
 
+    @Override
+    public boolean getDiffReportMetricsOnly()
+    {
+        return diffReport != null && diffReport.isMetricsOnly();
+    }
+
     @CheckForNull
     public String getAdditionalMCPropertiesFile()
     {
@@ -423,6 +435,31 @@ public class LoadTestStep extends Step implements LoadTestConfiguration
         this.archiveResults = archiveResults;
     }
 
+    @Override
+    public int getArchiveCompressionLevel()
+    {
+        return archiveCompressionLevel;
+    }
+
+    @DataBoundSetter
+    public void setArchiveCompressionLevel(final int archiveCompressionLevel)
+    {
+        this.archiveCompressionLevel = Math.max(FolderTransfer.NO_COMPRESSION,
+                                                Math.min(FolderTransfer.MAX_COMPRESSION, archiveCompressionLevel));
+    }
+
+    @Override
+    public boolean getPackArchivedResults()
+    {
+        return packArchivedResults;
+    }
+
+    @DataBoundSetter
+    public void setPackArchivedResults(final boolean packArchivedResults)
+    {
+        this.packArchivedResults = packArchivedResults;
+    }
+
     @Override
     public StepExecution start(StepContext context) throws Exception
     {
@@ -514,6 +551,11 @@ public class LoadTestStep extends Step implements LoadTestConfiguration
             return PluginDefaults.INITIAL_RESPONSE_TIMEOUT;
         }
 
+        public int getDefaultArchiveCompressionLevel()
+        {
+            return PluginDefaults.ARCHIVE_COMPRESSION_LEVEL;
+        }
+
         public String getDefaultStepId()
         {
             return UUID.randomUUID().toString();
@@ -691,5 +733,18 @@ public class LoadTestStep extends Step implements LoadTestConfiguration
         {
             return validateNumber(value, 0, null, Flags.IGNORE_BLANK_VALUE, Flags.IGNORE_MAX, Flags.IS_INTEGER);
         }
+
+        /**
+         * Performs on-the-fly validation of the form field 'archiveCompressionLevel'.
+         * 
+         * @param value
+         *            the input value
+         * @return form validation object
+         */
+        public FormValidation doCheckArchiveCompressionLevel(@QueryParameter String value)
+        {
+            return validateNumber(value, FolderTransfer.NO_COMPRESSION, FolderTransfer.MAX_COMPRESSION, Flags.IGNORE_BLANK_VALUE,
+                                  Flags.IS_INTEGER);
+        }
     }
 }
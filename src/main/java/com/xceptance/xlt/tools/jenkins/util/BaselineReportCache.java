@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.IOException;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+
+/**
+ * The baseline reports of difference reports cached on a node.
+ * <p>
+ * When the difference report is always created against the same baseline, i.e. a certain build or a fixed path, the
+ * baseline report is transferred to the node only once. A cache entry is identified by the location of the baseline report
+ * and a fingerprint of its file list, so a baseline report that was changed in the meantime is transferred again.
+ * <p>
+ * Cache entries are used by the report generator as they are and must not be modified. Entries that have not been used for
+ * a while are evicted, keeping only the most recently used baselines.
+ */
+public final class BaselineReportCache
+{
+    private static final String CACHE_FOLDER_NAME = "xlt-baselines";
+
+    /**
+     * The number of baselines kept regardless of when they were used last.
+     */
+    private static final int MAX_VERSIONS = 3;
+
+    private final NodeFolderCache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param nodeRoot
+     *            the root folder of the node
+     */
+    public BaselineReportCache(final FilePath nodeRoot)
+    {
+        cache = new NodeFolderCache(nodeRoot.child(CACHE_FOLDER_NAME), "baseline report", MAX_VERSIONS);
+    }
+
+    /**
+     * Returns the cached copy of the given baseline report, transferring the report to the node if necessary.
+     *
+     * @param baselineDir
+     *            the baseline report folder
+     * @param listener
+     *            the listener to log to
+     * @return the folder of the cached copy
+     * @throws IOException
+     *             thrown if the baseline report could not be transferred
+     * @throws InterruptedException
+     *             thrown if interrupted
+     */
+    public FilePath get(final FilePath baselineDir, final TaskListener listener) throws IOException, InterruptedException
+    {
+        final String fingerprint = baselineDir.act(new NodeFolderCache.Fingerprint(baselineDir.getRemote(), ""));
+        final FilePath entryDir = cache.getEntry(fingerprint, new NodeFolderCache.Filler()
+        {
+            @Override
+            public void fill(final FilePath dir) throws IOException, InterruptedException
+            {
+                baselineDir.copyRecursiveTo(dir);
+            }
+        }, listener);
+
+        cache.evict(fingerprint, listener);
+        return entryDir;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
+
+import hudson.FilePath;
+
+/**
+ * The number values of a single build, keyed by value ID. This is what gets stored in the compact metrics sidecar file next
+ * to the build's artifacts, so that consumers do not have to go back to the test report.
+ */
+public final class BuildMetrics
+{
+    /**
+     * The name of the sidecar file.
+     */
+    public static final String FILE_NAME = "metrics.json";
+
+    private static final int VERSION = 1;
+
+    private final int buildNumber;
+
+    private final long timestamp;
+
+    private final Map<String, Double> values;
+
+    /**
+     * Constructor.
+     *
+     * @param buildNumber
+     *            the build number
+     * @param timestamp
+     *            the build's start time in milliseconds
+     * @param values
+     *            the number values keyed by value ID, values that are not a number are skipped
+     */
+    public BuildMetrics(final int buildNumber, final long timestamp, final Map<String, Double> values)
+    {
+        this.buildNumber = buildNumber;
+        this.timestamp = timestamp;
+
+        final Map<String, Double> map = new HashMap<>();
+        for (final Map.Entry<String, Double> e : values.entrySet())
+        {
+            if (e.getValue() != null && !e.getValue().isNaN() && !e.getValue().isInfinite())
+            {
+                map.put(e.getKey(), e.getValue());
+            }
+        }
+        this.values = Collections.unmodifiableMap(map);
+    }
+
+    public int getBuildNumber()
+    {
+        return buildNumber;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Returns the number values keyed by value ID. Values that were not a number are not contained.
+     */
+    public Map<String, Double> getValues()
+    {
+        return values;
+    }
+
+    /**
+     * Writes these metrics to the given file.
+     *
+     * @param file
+     *            the sidecar file
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void write(final FilePath file) throws IOException, InterruptedException
+    {
+        final JSONObject jsonValues = new JSONObject();
+        for (final Map.Entry<String, Double> e : values.entrySet())
+        {
+            jsonValues.put(e.getKey(), e.getValue().doubleValue());
+        }
+
+        final JSONObject json = new JSONObject();
+        json.put("version", VERSION);
+        json.put("build", buildNumber);
+        json.put("timestamp", timestamp);
+        json.put("values", jsonValues);
+
+        file.write(json.toString(), "UTF-8");
+    }
+
+    /**
+     * Reads the metrics from the given file.
+     *
+     * @param file
+     *            the sidecar file
+     * @return the metrics, or <code>null</code> if the file does not exist or cannot be read
+     */
+    public static BuildMetrics read(final FilePath file)
+    {
+        try
+        {
+            if (!file.exists())
+            {
+                return null;
+            }
+
+            final JSONObject json = new JSONObject(file.readToString());
+            if (json.optInt("version") != VERSION)
+            {
+                LOGGER.debug("Ignoring metrics file with unknown version: " + file.getRemote());
+                return null;
+            }
+
+            final Map<String, Double> values = new HashMap<>();
+            final JSONObject jsonValues = json.getJSONObject("values");
+            for (final Iterator<String> it = jsonValues.keys(); it.hasNext();)
+            {
+                final String id = it.next();
+                values.put(id, jsonValues.getDouble(id));
+            }
+
+            return new BuildMetrics(json.getInt("build"), json.getLong("timestamp"), values);
+        }
+        catch (IOException | InterruptedException | JSONException e)
+        {
+            LOGGER.warn("Failed to read metrics file: " + file.getRemote(), e);
+            return null;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.xceptance.xlt.tools.jenkins.util;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.w3c.dom.Document;
 
@@ -40,9 +41,37 @@ public final class ChartUtils
     }
 
     public static List<Chart<Integer, Double>> xml2Charts(Document document, PlotValuesConfiguration config, ChartLineListener listener)
+    {
+        return xml2Charts(ReportData.of(document), config, listener);
+    }
+
+    public static List<Chart<Integer, Double>> xml2Charts(ReportData data, PlotValuesConfiguration config, ChartLineListener listener)
+    {
+        return xml2Charts(ReportMetrics.evaluate(data, config), config, listener);
+    }
+
+    public static List<Chart<Integer, Double>> xml2Charts(ReportMetrics metrics, PlotValuesConfiguration config,
+                                                          ChartLineListener listener)
+    {
+        return xml2Charts(metrics != null ? metrics.getNumbers() : null, config, listener);
+    }
+
+    /**
+     * Creates the charts for a single build from the given number values.
+     *
+     * @param values
+     *            the number values keyed by value ID, missing values are treated as not a number
+     * @param config
+     *            the plot/value configuration
+     * @param listener
+     *            the listener to notify about added chart line values
+     * @return the charts
+     */
+    public static List<Chart<Integer, Double>> xml2Charts(Map<String, Double> values, PlotValuesConfiguration config,
+                                                          ChartLineListener listener)
     {
         final List<Chart<Integer, Double>> charts = new ArrayList<>();
-        if (document != null && config != null)
+        if (values != null && config != null)
         {
             for (final Plot plot : config.getPlots())
             {
@@ -65,7 +94,7 @@ public final class ChartUtils
                     ChartLineValue<Integer, Double> lineValue = null;
 
                     final String xPath = config.getValueById(eachValueID).getXpath();
-                    final Double number = XmlUtils.evaluateXPath(document, xPath, Double.class);
+                    final Double number = values.get(eachValueID);
                     if (number == null || number.isNaN())
                     {
                         LOGGER.warn(String.format("Value is not a number. (ID: \"%s\", XPath: \"%s\"", eachValueID, xPath));
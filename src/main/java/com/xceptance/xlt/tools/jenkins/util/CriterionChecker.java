@@ -15,20 +15,23 @@
  */
 package com.xceptance.xlt.tools.jenkins.util;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import com.xceptance.xlt.tools.jenkins.CriterionResult;
 import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration;
 import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration.Value;
 import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
+import com.xceptance.xlt.tools.jenkins.util.JsonPullParser.Token;
+import com.xceptance.xlt.tools.jenkins.util.ReportMetrics.Metric;
 
 public final class CriterionChecker
 {
@@ -37,9 +40,19 @@ public final class CriterionChecker
     }
 
     public static List<CriterionResult> getFailed(final Document document, final PlotValuesConfiguration config)
+    {
+        return getFailed(ReportData.of(document), config);
+    }
+
+    public static List<CriterionResult> getFailed(final ReportData data, final PlotValuesConfiguration config)
+    {
+        return getFailed(ReportMetrics.evaluate(data, config), config);
+    }
+
+    public static List<CriterionResult> getFailed(final ReportMetrics metrics, final PlotValuesConfiguration config)
     {
         final List<CriterionResult> failedAlerts = new ArrayList<>();
-        if (document == null)
+        if (metrics == null)
         {
             CriterionResult criterionResult = CriterionResult.error("No XML document given.");
             failedAlerts.add(criterionResult);
@@ -64,10 +77,10 @@ public final class CriterionChecker
                     failedAlerts.add(criterionResult);
                     continue;
                 }
-                final String conditionPath = xPath + condition;
-                final Node node = XmlUtils.evaluateXPath(document, xPath);
+                final Metric metric = metrics.getMetric(critId);
+                final String text = metric != null ? metric.getText() : null;
 
-                if (node == null)
+                if (text == null)
                 {
                     CriterionResult criterionResult = CriterionResult.error("No result for XPath");
                     criterionResult.setCriterionID(critId);
@@ -77,12 +90,11 @@ public final class CriterionChecker
                 }
 
                 // test the condition
-                final Node no2 = XmlUtils.evaluateXPath(document, conditionPath);
-                if (no2 == null)
+                if (!Boolean.TRUE.equals(metric.isConditionMet()))
                 {
                     CriterionResult criterionResult = CriterionResult.failed("Condition");
                     criterionResult.setCriterionID(critId);
-                    criterionResult.setValue(node.getTextContent().trim());
+                    criterionResult.setValue(text);
                     criterionResult.setCondition(condition);
                     criterionResult.setXPath(xPath);
                     failedAlerts.add(criterionResult);
@@ -92,90 +104,219 @@ public final class CriterionChecker
         return failedAlerts;
     }
 
-    public static List<CriterionResult> parseCriteriaValidationResult(JSONObject critOutJSON)
+    /**
+     * Parses the output of the criteria check of the difference report while it is being read. Only the failed criteria and
+     * errors are kept, together with the conditions of the criteria.
+     *
+     * @param reader
+     *            the output of the criteria check, which is a JSON document
+     * @return the failed criteria and errors
+     * @throws IOException
+     *             thrown if the output could not be read or is not valid JSON
+     */
+    public static List<CriterionResult> parseCriteriaValidationResult(final Reader reader) throws IOException
     {
-        final ArrayList<CriterionResult> list = new ArrayList<>();
-        if (critOutJSON != null)
+        final Map<String, String> conditions = new HashMap<>();
+        final List<CriterionResult> list = new ArrayList<>();
+
+        try (final JsonPullParser parser = new JsonPullParser(reader))
         {
-            final HashMap<String, JSONObject> critById = new HashMap<>();
-            final JSONArray criteria = critOutJSON.optJSONArray("criteria");
-            if (criteria != null)
+            final Token token = parser.next();
+            if (token != Token.BEGIN_OBJECT)
+            {
+                return list;
+            }
+
+            while (parser.next() == Token.NAME)
             {
-                for (int j = 0, l = criteria.length(); j < l; j++)
+                final String name = parser.getText();
+                if ("criteria".equals(name))
                 {
-                    final JSONObject c = criteria.optJSONObject(j);
-                    if (c != null)
-                    {
-                        final String cid = c.optString("id");
-                        if (StringUtils.isNotBlank(cid))
-                        {
-                            critById.put(cid, c);
-                        }
-                    }
+                    parseCriteria(parser, conditions);
+                }
+                else if ("checks".equals(name))
+                {
+                    parseCriteriaChecks(parser, list);
+                }
+                else
+                {
+                    parser.skipValue();
                 }
             }
+        }
 
-            parseCriteriaChecks(critById, critOutJSON.optJSONArray("checks"), list);
+        // the checks may come before the criteria, so the conditions are set at the end
+        for (final Iterator<CriterionResult> it = list.iterator(); it.hasNext();)
+        {
+            final CriterionResult cr = it.next();
+            final String condition = conditions.get(cr.getCriterionID());
+            if (condition == null)
+            {
+                it.remove();
+            }
+            else
+            {
+                cr.setCondition(condition);
+            }
         }
 
         return list;
     }
 
-    private static void parseCriteriaChecks(HashMap<String, JSONObject> critById, JSONArray checks, ArrayList<CriterionResult> list)
+    private static void parseCriteria(final JsonPullParser parser, final Map<String, String> conditions) throws IOException
     {
-        if (checks == null)
+        Token token = parser.next();
+        if (token != Token.BEGIN_ARRAY)
         {
+            parser.skip(token);
             return;
         }
 
-        for (int i = 0, l = checks.length(); i < l; i++)
+        for (token = parser.next(); token != Token.END_ARRAY; token = parser.next())
         {
-            final JSONObject check = checks.optJSONObject(i);
-            if (check != null)
+            if (token != Token.BEGIN_OBJECT)
+            {
+                parser.skip(token);
+                continue;
+            }
+
+            String id = null;
+            String condition = "";
+            while (parser.next() == Token.NAME)
+            {
+                final String name = parser.getText();
+                if ("id".equals(name))
+                {
+                    id = readString(parser);
+                }
+                else if ("condition".equals(name))
+                {
+                    condition = StringUtils.defaultString(readString(parser));
+                }
+                else
+                {
+                    parser.skipValue();
+                }
+            }
+
+            if (StringUtils.isNotBlank(id))
             {
-                parseCriteriaCheck(critById, check, list);
+                conditions.put(id, condition);
             }
         }
     }
 
-    private static void parseCriteriaCheck(HashMap<String, JSONObject> critById, JSONObject check, ArrayList<CriterionResult> list)
+    private static void parseCriteriaChecks(final JsonPullParser parser, final List<CriterionResult> list) throws IOException
     {
-        final JSONObject details = check.optJSONObject("details");
-        if (details != null)
+        Token token = parser.next();
+        if (token != Token.BEGIN_ARRAY)
         {
-            for (final String critID : details.keySet())
+            parser.skip(token);
+            return;
+        }
+
+        for (token = parser.next(); token != Token.END_ARRAY; token = parser.next())
+        {
+            if (token != Token.BEGIN_OBJECT)
             {
-                if (StringUtils.isBlank(critID))
+                parser.skip(token);
+                continue;
+            }
+
+            while (parser.next() == Token.NAME)
+            {
+                if ("details".equals(parser.getText()))
                 {
-                    continue;
+                    parseCriteriaCheckDetails(parser, list);
                 }
-
-                final JSONObject detail = details.optJSONObject(critID);
-                final JSONObject crit = critById.get(critID);
-                if (detail == null || crit == null)
+                else
                 {
-                    continue;
+                    parser.skipValue();
                 }
-                final String status = detail.optString("status").toLowerCase();
-                final String message = detail.optString("message");
-                CriterionResult cr = null;
-                if ("error".equals(status))
+            }
+        }
+    }
+
+    private static void parseCriteriaCheckDetails(final JsonPullParser parser, final List<CriterionResult> list) throws IOException
+    {
+        final Token token = parser.next();
+        if (token != Token.BEGIN_OBJECT)
+        {
+            parser.skip(token);
+            return;
+        }
+
+        while (parser.next() == Token.NAME)
+        {
+            final String critID = parser.getText();
+
+            final Token detailToken = parser.next();
+            if (detailToken != Token.BEGIN_OBJECT)
+            {
+                parser.skip(detailToken);
+                continue;
+            }
+
+            String status = "";
+            String message = "";
+            while (parser.next() == Token.NAME)
+            {
+                final String name = parser.getText();
+                if ("status".equals(name))
                 {
-                    cr = CriterionResult.error(message);
+                    status = StringUtils.defaultString(readString(parser)).toLowerCase();
                 }
-                else if ("failed".equals(status))
+                else if ("message".equals(name))
                 {
-                    cr = CriterionResult.failed(message);
+                    message = StringUtils.defaultString(readString(parser));
                 }
-
-                if (cr != null)
+                else
                 {
-                    cr.setCondition(crit.optString("condition"));
-                    cr.setCriterionID(critID);
-                    list.add(cr);
+                    parser.skipValue();
                 }
             }
+
+            if (StringUtils.isBlank(critID))
+            {
+                continue;
+            }
+
+            // passed criteria are not kept
+            CriterionResult cr = null;
+            if ("error".equals(status))
+            {
+                cr = CriterionResult.error(message);
+            }
+            else if ("failed".equals(status))
+            {
+                cr = CriterionResult.failed(message);
+            }
+
+            if (cr != null)
+            {
+                cr.setCriterionID(critID);
+                list.add(cr);
+            }
         }
     }
 
+    /**
+     * Reads the next value as text.
+     *
+     * @return the text of a scalar value, <code>null</code> for null, objects and arrays
+     */
+    private static String readString(final JsonPullParser parser) throws IOException
+    {
+        final Token token = parser.next();
+        switch (token)
+        {
+            case STRING:
+            case NUMBER:
+            case BOOLEAN:
+                return parser.getText();
+            default:
+                parser.skip(token);
+                return null;
+        }
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import hudson.model.Job;
+
+/**
+ * Job-level, append-only ledger of the criterion outcomes of all builds of a load test step.
+ * <p>
+ * Each build is recorded as a fixed-size big-endian entry of its build number and the numbers of failed and erroneous
+ * criteria, so the outcomes of the most recent builds can be read from the end of the file without loading any build.
+ * Builds that did not get to the criteria check have no entry.
+ * Deleted builds are marked by negating their build number in place.
+ */
+public final class CriterionLedger
+{
+    /**
+     * The name of the job-level folder that holds the ledgers of all steps.
+     */
+    public static final String FOLDER_NAME = "criterionLedger";
+
+    private static final String LEDGER_FILE = "ledger.bin";
+
+    private static final int ENTRY_SIZE = 12;
+
+    private static final Object WRITE_LOCK = new Object();
+
+    private final File file;
+
+    public CriterionLedger(final File dir)
+    {
+        file = new File(dir, LEDGER_FILE);
+    }
+
+    /**
+     * Returns the ledger of the given load test step of the given job.
+     */
+    public static CriterionLedger of(final Job<?, ?> job, final String stepId)
+    {
+        return new CriterionLedger(new File(new File(job.getRootDir(), FOLDER_NAME), stepId));
+    }
+
+    /**
+     * Checks whether any entry has been written yet.
+     */
+    public boolean exists()
+    {
+        return file.isFile();
+    }
+
+    /**
+     * Appends an entry for the given build.
+     *
+     * @param outcome
+     *            the criterion outcome of the build
+     * @throws IOException
+     *             thrown if the ledger could not be written
+     */
+    public void append(final Outcome outcome) throws IOException
+    {
+        synchronized (WRITE_LOCK)
+        {
+            final File dir = file.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs())
+            {
+                throw new IOException("Failed to create directory: " + dir);
+            }
+
+            // repair leftovers of an interrupted append
+            final long length = file.length() / ENTRY_SIZE * ENTRY_SIZE;
+            if (file.length() > length)
+            {
+                try (final RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+                {
+                    raf.setLength(length);
+                }
+            }
+
+            try (final FileOutputStream out = new FileOutputStream(file, true))
+            {
+                out.write(ByteBuffer.allocate(ENTRY_SIZE).putInt(outcome.getBuildNumber()).putInt(outcome.getFailedCount())
+                                    .putInt(outcome.getErrorCount()).array());
+            }
+        }
+    }
+
+    /**
+     * Marks the entries of the given build as deleted.
+     *
+     * @param buildNumber
+     *            the build number
+     * @throws IOException
+     *             thrown if the ledger could not be written
+     */
+    public void markDeleted(final int buildNumber) throws IOException
+    {
+        synchronized (WRITE_LOCK)
+        {
+            if (!file.isFile())
+            {
+                return;
+            }
+
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+            {
+                final long entries = raf.length() / ENTRY_SIZE;
+                for (long i = 0; i < entries; i++)
+                {
+                    raf.seek(i * ENTRY_SIZE);
+                    if (raf.readInt() == buildNumber)
+                    {
+                        raf.seek(i * ENTRY_SIZE);
+                        raf.writeInt(-buildNumber);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the outcomes of the most recent builds above the given build number. The file is read backwards in chunks,
+     * starting at its end, until enough builds have been found or as many entries of older builds have been passed, which
+     * tolerates builds that finished out of order. So the effort does not depend on the number of builds recorded.
+     *
+     * @param count
+     *            the maximum number of builds to return
+     * @param minBuildNumber
+     *            only builds with a higher build number are returned
+     * @return the outcomes of the builds, most recent entry first
+     * @throws IOException
+     *             thrown if the ledger could not be read
+     */
+    public List<Outcome> readLast(final int count, final int minBuildNumber) throws IOException
+    {
+        final List<Outcome> result = new ArrayList<>();
+        if (count <= 0 || !file.isFile())
+        {
+            return result;
+        }
+
+        // a build that was recorded more than once counts with its last entry
+        final Set<Integer> seen = new HashSet<>();
+        int olderEntries = 0;
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            long end = raf.length() / ENTRY_SIZE;
+            while (end > 0 && result.size() < count && olderEntries < count)
+            {
+                final long start = Math.max(0, end - count);
+                final byte[] bytes = new byte[(int) (end - start) * ENTRY_SIZE];
+                raf.seek(start * ENTRY_SIZE);
+                raf.readFully(bytes);
+
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                for (int i = bytes.length - ENTRY_SIZE; i >= 0 && result.size() < count && olderEntries < count; i -= ENTRY_SIZE)
+                {
+                    final int buildNumber = buffer.getInt(i);
+                    if (Math.abs(buildNumber) <= minBuildNumber)
+                    {
+                        olderEntries++;
+                    }
+                    else if (buildNumber > 0 && seen.add(buildNumber))
+                    {
+                        result.add(new Outcome(buildNumber, buffer.getInt(i + 4), buffer.getInt(i + 8)));
+                    }
+                }
+                end = start;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The criterion outcome of a single build.
+     */
+    public static final class Outcome
+    {
+        private final int buildNumber;
+
+        private final int failedCount;
+
+        private final int errorCount;
+
+        public Outcome(final int buildNumber, final int failedCount, final int errorCount)
+        {
+            this.buildNumber = buildNumber;
+            this.failedCount = failedCount;
+            this.errorCount = errorCount;
+        }
+
+        public int getBuildNumber()
+        {
+            return buildNumber;
+        }
+
+        public int getFailedCount()
+        {
+            return failedCount;
+        }
+
+        public int getErrorCount()
+        {
+            return errorCount;
+        }
+    }
+}
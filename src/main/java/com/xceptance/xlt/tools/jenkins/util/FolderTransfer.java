@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import hudson.FilePath;
+import hudson.FilePath.TarCompression;
+import hudson.model.TaskListener;
+import hudson.remoting.Pipe;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Copies, moves or packs folders from a build node to the master.
+ * <p>
+ * The folder is packed into a single tar stream on the build node, compressed there with the given level, and unpacked
+ * on the master directly into the target folder while it is being received. Progress and throughput are logged. Folders
+ * that are on the same host already are copied locally, and moved by renaming them where possible.
+ */
+public final class FolderTransfer
+{
+    /**
+     * The compression level that means no compression at all.
+     */
+    public static final int NO_COMPRESSION = 0;
+
+    public static final int MAX_COMPRESSION = 9;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * How often the progress of a transfer is logged.
+     */
+    private static final long PROGRESS_INTERVAL = 10 * 1000;
+
+    private FolderTransfer()
+    {
+    }
+
+    /**
+     * Copies the contents of the given source folder to the given target folder.
+     *
+     * @param srcFolder
+     *            the source folder
+     * @param destFolder
+     *            the target folder
+     * @param compressionLevel
+     *            the compression level to use when the folder has to be transferred between hosts, from
+     *            {@link #NO_COMPRESSION} to {@link #MAX_COMPRESSION}
+     * @param listener
+     *            the listener to log to
+     */
+    public static void copy(final FilePath srcFolder, final FilePath destFolder, final int compressionLevel,
+                            final TaskListener listener)
+        throws IOException, InterruptedException
+    {
+        if (srcFolder.isDirectory())
+        {
+            transfer(srcFolder, destFolder, compressionLevel, listener);
+        }
+    }
+
+    /**
+     * Moves the contents of the given source folder to the given target folder and deletes the source folder.
+     *
+     * @param srcFolder
+     *            the source folder
+     * @param destFolder
+     *            the target folder
+     * @param compressionLevel
+     *            the compression level to use when the folder has to be transferred between hosts, from
+     *            {@link #NO_COMPRESSION} to {@link #MAX_COMPRESSION}
+     * @param listener
+     *            the listener to log to
+     */
+    public static void move(final FilePath srcFolder, final FilePath destFolder, final int compressionLevel,
+                            final TaskListener listener)
+        throws IOException, InterruptedException
+    {
+        if (!srcFolder.isDirectory())
+        {
+            return;
+        }
+
+        if (srcFolder.getChannel() == destFolder.getChannel() && !destFolder.exists())
+        {
+            destFolder.getParent().mkdirs();
+            try
+            {
+                srcFolder.renameTo(destFolder);
+            }
+            catch (final IOException e)
+            {
+                // fall back to copying, e.g. across file systems
+            }
+
+            if (!srcFolder.exists() && destFolder.isDirectory())
+            {
+                return;
+            }
+        }
+
+        transfer(srcFolder, destFolder, compressionLevel, listener);
+        srcFolder.deleteRecursive();
+    }
+
+    /**
+     * Packs the contents of the given folder into the given {@link ResultsContainer} on the master. The container is created
+     * on the build node and streamed to the master.
+     *
+     * @param srcFolder
+     *            the source folder
+     * @param destFile
+     *            the container file, which must be on the master
+     * @param compressionLevel
+     *            the compression level, from {@link #NO_COMPRESSION} to {@link #MAX_COMPRESSION}
+     * @param listener
+     *            the listener to log to
+     */
+    public static void pack(final FilePath srcFolder, final FilePath destFile, final int compressionLevel, final TaskListener listener)
+        throws IOException, InterruptedException
+    {
+        if (!srcFolder.isDirectory())
+        {
+            return;
+        }
+        if (destFile.isRemote())
+        {
+            throw new IOException("Results container must be created on the master: " + destFile.getRemote());
+        }
+
+        final int level = Math.max(NO_COMPRESSION, Math.min(MAX_COMPRESSION, compressionLevel));
+        final PrintStream logger = listener.getLogger();
+        logger.printf("Packing %s (compression level %d) ...%n", srcFolder.getRemote(), level);
+
+        final File target = new File(destFile.getRemote());
+        final File tempFile = new File(target.getParentFile(), target.getName() + ".tmp");
+        FileUtils.forceMkdir(target.getParentFile());
+
+        final long start = System.currentTimeMillis();
+        final int fileCount;
+        final long size;
+        if (srcFolder.isRemote())
+        {
+            final Pipe pipe = Pipe.createRemoteToLocal();
+            final Future<Integer> sender = srcFolder.actAsync(new Sender(pipe, level, true));
+
+            final ProgressInputStream in = new ProgressInputStream(pipe.getIn(), logger, start);
+            try
+            {
+                try (final OutputStream out = new FileOutputStream(tempFile))
+                {
+                    IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+                }
+                fileCount = sender.get();
+            }
+            catch (final ExecutionException e)
+            {
+                throw new IOException("Failed to transfer " + srcFolder.getRemote(), e.getCause());
+            }
+            finally
+            {
+                in.close();
+                sender.cancel(true);
+            }
+            size = in.count;
+        }
+        else
+        {
+            fileCount = ResultsContainer.write(new File(srcFolder.getRemote()),
+                                               new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE), level);
+            size = tempFile.length();
+        }
+
+        Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        logSummary(logger, fileCount, size, start);
+    }
+
+    private static void transfer(final FilePath srcFolder, final FilePath destFolder, final int compressionLevel,
+                                 final TaskListener listener)
+        throws IOException, InterruptedException
+    {
+        if (srcFolder.getChannel() == destFolder.getChannel() || destFolder.isRemote())
+        {
+            srcFolder.copyRecursiveTo(destFolder);
+            return;
+        }
+
+        final int level = Math.max(NO_COMPRESSION, Math.min(MAX_COMPRESSION, compressionLevel));
+        final PrintStream logger = listener.getLogger();
+        logger.printf("Transferring %s (compression level %d) ...%n", srcFolder.getRemote(), level);
+
+        destFolder.mkdirs();
+
+        final Pipe pipe = Pipe.createRemoteToLocal();
+        final Future<Integer> sender = srcFolder.actAsync(new Sender(pipe, level, false));
+
+        final long start = System.currentTimeMillis();
+        final ProgressInputStream in = new ProgressInputStream(pipe.getIn(), logger, start);
+        final int fileCount;
+        try
+        {
+            destFolder.untarFrom(in, level == NO_COMPRESSION ? TarCompression.NONE : TarCompression.GZIP);
+            fileCount = sender.get();
+        }
+        catch (final ExecutionException e)
+        {
+            throw new IOException("Failed to transfer " + srcFolder.getRemote(), e.getCause());
+        }
+        finally
+        {
+            sender.cancel(true);
+        }
+
+        logSummary(logger, fileCount, in.count, start);
+    }
+
+    private static void logSummary(final PrintStream logger, final int fileCount, final long bytes, final long start)
+    {
+        final long duration = Math.max(1, System.currentTimeMillis() - start);
+        logger.printf(Locale.ENGLISH, "Transferred %d files, %s in %.1f s (%s/s)%n", fileCount, formatBytes(bytes), duration / 1000.0,
+                      formatBytes(bytes * 1000 / duration));
+    }
+
+    private static String formatBytes(final long bytes)
+    {
+        if (bytes < 1024)
+        {
+            return bytes + " B";
+        }
+        else if (bytes < 1024 * 1024)
+        {
+            return String.format(Locale.ENGLISH, "%.1f KB", bytes / 1024.0);
+        }
+        else
+        {
+            return String.format(Locale.ENGLISH, "%.1f MB", bytes / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * Packs and compresses a folder on the build node and writes it to a pipe, either as tar stream or as results container.
+     */
+    private static final class Sender extends MasterToSlaveFileCallable<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Pipe pipe;
+
+        private final int level;
+
+        private final boolean container;
+
+        private Sender(final Pipe pipe, final int level, final boolean container)
+        {
+            this.pipe = pipe;
+            this.level = level;
+            this.container = container;
+        }
+
+        @Override
+        public Integer invoke(final File folder, final VirtualChannel channel) throws IOException, InterruptedException
+        {
+            OutputStream out = new BufferedOutputStream(pipe.getOut(), BUFFER_SIZE);
+            if (container)
+            {
+                return ResultsContainer.write(folder, out, level);
+            }
+
+            if (level != NO_COMPRESSION)
+            {
+                out = new GZIPOutputStream(out, BUFFER_SIZE)
+                {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            }
+
+            try
+            {
+                return new FilePath(folder).tar(out, "**");
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes received and logs the progress from time to time.
+     */
+    private static final class ProgressInputStream extends FilterInputStream
+    {
+        private final PrintStream logger;
+
+        private final long start;
+
+        private long count;
+
+        private long lastReport;
+
+        private ProgressInputStream(final InputStream in, final PrintStream logger, final long start)
+        {
+            super(in);
+            this.logger = logger;
+            this.start = start;
+            lastReport = start;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final int b = super.read();
+            if (b >= 0)
+            {
+                received(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException
+        {
+            final int n = super.read(b, off, len);
+            if (n > 0)
+            {
+                received(n);
+            }
+            return n;
+        }
+
+        private void received(final int n)
+        {
+            count += n;
+
+            final long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL)
+            {
+                lastReport = now;
+                logger.printf("... %s received (%s/s)%n", formatBytes(count), formatBytes(count * 1000 / Math.max(1, now - start)));
+            }
+        }
+    }
+}
@@ -17,12 +17,19 @@ package com.xceptance.xlt.tools.jenkins.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import com.xceptance.xlt.tools.jenkins.BuildNodeGoneException;
@@ -30,11 +37,13 @@ import com.xceptance.xlt.tools.jenkins.BuildNodeGoneException;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Launcher.ProcStarter;
+import hudson.Proc;
 import hudson.PluginWrapper;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.Computer;
 import hudson.model.Job;
+import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import jenkins.model.Jenkins;
@@ -194,6 +203,70 @@ public final class Helper
         }
     }
 
+    /**
+     * Makes the given target file a hard link to the given source file, or a copy of it if the file system does not support
+     * hard links between the two. An existing target file is replaced.
+     *
+     * @param source
+     *            the source file
+     * @param target
+     *            the target file
+     * @return <code>true</code> if a link was created, <code>false</code> if the file was copied
+     * @throws IOException
+     *             thrown if the file could neither be linked nor copied
+     */
+    public static boolean linkOrCopyFile(final File source, final File target) throws IOException
+    {
+        return linkOrCopyFile(source, target, false);
+    }
+
+    /**
+     * Makes the given target file a hard link to the given source file. If the file system does not support hard links
+     * between the two, a symbolic link is tried if allowed, and the file is copied as last resort. An existing target file is
+     * replaced.
+     *
+     * @param source
+     *            the source file
+     * @param target
+     *            the target file
+     * @param allowSymbolicLink
+     *            whether a symbolic link may be created, which breaks when the source file is deleted
+     * @return <code>true</code> if a link was created, <code>false</code> if the file was copied
+     * @throws IOException
+     *             thrown if the file could neither be linked nor copied
+     */
+    public static boolean linkOrCopyFile(final File source, final File target, final boolean allowSymbolicLink) throws IOException
+    {
+        final Path targetPath = target.toPath();
+        Files.createDirectories(targetPath.getParent());
+        Files.deleteIfExists(targetPath);
+        try
+        {
+            Files.createLink(targetPath, source.toPath());
+            return true;
+        }
+        catch (final IOException | UnsupportedOperationException e)
+        {
+            // e.g. FAT file system or different volumes
+        }
+
+        if (allowSymbolicLink)
+        {
+            try
+            {
+                Files.createSymbolicLink(targetPath, source.getAbsoluteFile().toPath());
+                return true;
+            }
+            catch (final IOException | UnsupportedOperationException e)
+            {
+                // e.g. missing privilege on Windows
+            }
+        }
+
+        Files.copy(source.toPath(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        return false;
+    }
+
     public static int executeCommand(Launcher launcher, FilePath workingDirectory, List<String> commandLine, TaskListener logger)
         throws IOException, InterruptedException
     {
@@ -221,6 +294,44 @@ public final class Helper
         return starter.join();
     }
 
+    /**
+     * Processes the standard output of a command while the command is running.
+     */
+    public interface OutputHandler
+    {
+        void handle(InputStream out) throws IOException;
+    }
+
+    /**
+     * Executes the given command and passes its standard output to the given handler as it is produced, so the output does
+     * not need to be buffered. Whatever the handler leaves unread is discarded.
+     */
+    public static int executeCommand(Launcher launcher, FilePath workingDirectory, List<String> commandLine, OutputHandler handler)
+        throws IOException, InterruptedException
+    {
+        final ProcStarter starter = launcher.launch();
+        starter.pwd(workingDirectory);
+        starter.cmds(commandLine);
+        starter.readStdout();
+
+        final Proc proc = starter.start();
+        try (final InputStream in = proc.getStdout())
+        {
+            handler.handle(in);
+
+            // the process must not block on a full pipe
+            IOUtils.skip(in, Long.MAX_VALUE);
+        }
+        catch (final IOException e)
+        {
+            proc.kill();
+            throw e;
+        }
+
+        // waits for the process's completion
+        return proc.join();
+    }
+
     public static int executeCommand(final hudson.model.Node node, final FilePath workingDirectory, final List<String> commandLine,
                                      final TaskListener logger)
         throws IOException, InterruptedException
@@ -231,19 +342,120 @@ public final class Helper
         return executeCommand(launcher, workingDirectory, commandLine, logger);
     }
 
-    public static List<Run<?, ?>> getRuns(final Run<?, ?> currentRun, final int startFrom, final int count)
+    /**
+     * Returns a window of the given build and its predecessors. The builds are loaded lazily while iterating, and loading
+     * stops as soon as the window is full.
+     * <p>
+     * If an index of the builds that carry data of a load test step is given, only the indexed builds are loaded as long as
+     * the index covers the builds in question, i.e. down to the oldest indexed build. Older builds are walked one by one.
+     *
+     * @param run
+     *            the most recent build of the window, always included
+     * @param count
+     *            the maximum number of builds in the window including the given build, a negative value for no limit
+     * @param threshold
+     *            if not <code>null</code>, previous builds that are still building or whose result is worse are skipped
+     * @param index
+     *            the numbers of the builds with data in ascending order, may be <code>null</code>
+     * @return the builds, most recent first
+     */
+    public static Iterable<Run<?, ?>> getRuns(final Run<?, ?> run, final int count, final Result threshold, final int[] index)
     {
-        final Job<?, ?> job = currentRun.getParent();
+        return new Iterable<Run<?, ?>>()
+        {
+            @Override
+            public Iterator<Run<?, ?>> iterator()
+            {
+                return new RunWindowIterator(run, count, threshold, index);
+            }
+        };
+    }
+
+    private static final class RunWindowIterator implements Iterator<Run<?, ?>>
+    {
+        private final Result threshold;
+
+        private final int[] index;
+
+        private Run<?, ?> next;
 
-        final List<Run<?, ?>> allBuilds = new ArrayList<Run<?, ?>>(job.getBuilds());
-        final int maxBuilds = allBuilds.size();
-        int to = Math.min(startFrom + count, maxBuilds);
-        if (to < 0 || to > maxBuilds)
+        private int remaining;
+
+        RunWindowIterator(final Run<?, ?> run, final int count, final Result threshold, final int[] index)
         {
-            to = maxBuilds;
+            this.threshold = threshold;
+            this.index = index != null && index.length > 0 ? index : null;
+            next = count != 0 ? run : null;
+            remaining = count;
         }
 
-        return allBuilds.subList(startFrom, to);
-    }
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override
+        public Run<?, ?> next()
+        {
+            if (next == null)
+            {
+                throw new NoSuchElementException();
+            }
+
+            final Run<?, ?> current = next;
+            if (remaining > 0)
+            {
+                remaining--;
+            }
+
+            // look up the next build only if it is still needed
+            next = null;
+            if (remaining != 0)
+            {
+                Run<?, ?> r = getPrevious(current);
+                while (r != null && !isOverThreshold(r))
+                {
+                    r = getPrevious(r);
+                }
+                next = r;
+            }
+
+            return current;
+        }
 
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        private boolean isOverThreshold(final Run<?, ?> r)
+        {
+            return threshold == null || (!r.isBuilding() && r.getResult() != null && r.getResult().isBetterOrEqualTo(threshold));
+        }
+
+        private Run<?, ?> getPrevious(final Run<?, ?> r)
+        {
+            if (index == null || r.getNumber() <= index[0])
+            {
+                return r.getPreviousBuild();
+            }
+
+            // jump to the most recent indexed build before the given one, skipping the builds in between without loading them
+            final Job<?, ?> job = r.getParent();
+            final int i = Arrays.binarySearch(index, r.getNumber());
+            for (int pos = i >= 0 ? i - 1 : -i - 2; pos >= 0; pos--)
+            {
+                final Run<?, ?> indexed = job.getBuildByNumber(index[pos]);
+                if (indexed != null)
+                {
+                    return indexed;
+                }
+            }
+
+            // all indexed builds are gone, continue with the builds before the index
+            return job.getNearestOldBuild(index[0] - 1);
+        }
+    }
 }
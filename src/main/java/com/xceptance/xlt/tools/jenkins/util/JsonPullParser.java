@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A minimal pull parser for JSON documents, which reads the document token by token instead of building a tree, so large
+ * documents can be processed while they are being read without holding them in memory.
+ * <p>
+ * The parser is lenient with separators: commas and colons are skipped, which is fine for the well-formed output of tools.
+ */
+public final class JsonPullParser implements Closeable
+{
+    public enum Token
+    {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private final Reader reader;
+
+    /**
+     * Whether the enclosing containers are objects (<code>true</code>) or arrays (<code>false</code>).
+     */
+    private final Deque<Boolean> containers = new ArrayDeque<>();
+
+    private final StringBuilder text = new StringBuilder();
+
+    private boolean expectName;
+
+    private int peeked = -2;
+
+    public JsonPullParser(final Reader reader)
+    {
+        this.reader = new BufferedReader(reader);
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the token
+     * @throws IOException
+     *             thrown if the document could not be read or is malformed
+     */
+    public Token next() throws IOException
+    {
+        int c = read();
+        while (c == ',' || c == ':' || Character.isWhitespace(c))
+        {
+            c = read();
+        }
+
+        text.setLength(0);
+        switch (c)
+        {
+            case -1:
+                if (!containers.isEmpty())
+                {
+                    throw new IOException("Unexpected end of document");
+                }
+                return Token.END_DOCUMENT;
+            case '{':
+                containers.push(Boolean.TRUE);
+                expectName = true;
+                return Token.BEGIN_OBJECT;
+            case '[':
+                containers.push(Boolean.FALSE);
+                expectName = false;
+                return Token.BEGIN_ARRAY;
+            case '}':
+            case ']':
+                if (containers.isEmpty() || containers.pop() != (c == '}'))
+                {
+                    throw new IOException("Unexpected '" + (char) c + "'");
+                }
+                valueRead();
+                return c == '}' ? Token.END_OBJECT : Token.END_ARRAY;
+            case '"':
+                readString();
+                if (expectName && isInObject())
+                {
+                    expectName = false;
+                    return Token.NAME;
+                }
+                valueRead();
+                return Token.STRING;
+            default:
+                if (c != '-' && c != '+' && c != '.' && !Character.isLetterOrDigit(c))
+                {
+                    throw new IOException("Unexpected '" + (char) c + "'");
+                }
+
+                text.append((char) c);
+                while (isLiteralChar(peek()))
+                {
+                    text.append((char) read());
+                }
+                valueRead();
+
+                final String literal = text.toString();
+                if (literal.equals("true") || literal.equals("false"))
+                {
+                    return Token.BOOLEAN;
+                }
+                else if (literal.equals("null"))
+                {
+                    return Token.NULL;
+                }
+                return Token.NUMBER;
+        }
+    }
+
+    /**
+     * Returns the text of the current name or scalar value.
+     */
+    public String getText()
+    {
+        return text.toString();
+    }
+
+    /**
+     * Skips the next value including all values it contains.
+     */
+    public void skipValue() throws IOException
+    {
+        skip(next());
+    }
+
+    /**
+     * Skips the rest of the value that starts with the given token, which has just been read.
+     */
+    public void skip(final Token token) throws IOException
+    {
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY)
+        {
+            final int depth = containers.size() - 1;
+            while (containers.size() > depth)
+            {
+                next();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+
+    private boolean isInObject()
+    {
+        return !containers.isEmpty() && containers.peek();
+    }
+
+    /**
+     * Called after a complete value was read. In an object, a name follows next.
+     */
+    private void valueRead()
+    {
+        expectName = isInObject();
+    }
+
+    private void readString() throws IOException
+    {
+        while (true)
+        {
+            int c = read();
+            if (c == -1)
+            {
+                throw new IOException("Unterminated string");
+            }
+            else if (c == '"')
+            {
+                return;
+            }
+            else if (c == '\\')
+            {
+                c = read();
+                switch (c)
+                {
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'u':
+                        final char[] hex = new char[4];
+                        for (int i = 0; i < hex.length; i++)
+                        {
+                            hex[i] = (char) read();
+                        }
+                        try
+                        {
+                            text.append((char) Integer.parseInt(new String(hex), 16));
+                        }
+                        catch (final NumberFormatException e)
+                        {
+                            throw new IOException("Invalid escape sequence: \\u" + new String(hex));
+                        }
+                        break;
+                    case -1:
+                        throw new IOException("Unterminated string");
+                    default:
+                        // '"', '\\' and '/'
+                        text.append((char) c);
+                }
+            }
+            else
+            {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private static boolean isLiteralChar(final int c)
+    {
+        return c == '-' || c == '+' || c == '.' || (c != -1 && Character.isLetterOrDigit(c));
+    }
+
+    private int peek() throws IOException
+    {
+        if (peeked == -2)
+        {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException
+    {
+        if (peeked != -2)
+        {
+            final int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+}
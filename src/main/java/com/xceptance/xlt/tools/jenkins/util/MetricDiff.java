@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.tools.jenkins.CriterionResult;
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration;
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration.CONFIG_VALUE_PARAMETER;
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration.Value;
+
+/**
+ * Compares the values of a build with those of a baseline build, as a fast alternative to the difference report for jobs
+ * that only gate on a few key values.
+ * <p>
+ * Each value may limit its increase and decrease compared to the baseline, either relative to the baseline value (e.g.
+ * "10%") or absolute (e.g. "200"). Values that exceed a limit are reported as failed criteria.
+ */
+public final class MetricDiff
+{
+    private MetricDiff()
+    {
+    }
+
+    /**
+     * Returns the values that changed more than allowed.
+     *
+     * @param values
+     *            the number values of the build keyed by value ID
+     * @param baselineValues
+     *            the number values of the baseline keyed by value ID
+     * @param config
+     *            the plot/value configuration with the limits
+     * @return the failed criteria, empty if all values are within their limits
+     */
+    public static List<CriterionResult> getFailed(final Map<String, Double> values, final Map<String, Double> baselineValues,
+                                                  final PlotValuesConfiguration config)
+    {
+        final List<CriterionResult> failedAlerts = new ArrayList<>();
+        for (final Value val : config.getValues())
+        {
+            final String maxIncrease = val.getMaxIncrease();
+            final String maxDecrease = val.getMaxDecrease();
+            if (StringUtils.isBlank(maxIncrease) && StringUtils.isBlank(maxDecrease))
+            {
+                continue;
+            }
+
+            final Double value = values.get(val.getId());
+            final Double baseline = baselineValues.get(val.getId());
+            // values whose XPath did not match anything are NaN
+            final boolean valueMissing = value == null || value.isNaN();
+            if (valueMissing || baseline == null || baseline.isNaN())
+            {
+                final CriterionResult criterionResult = CriterionResult.error(valueMissing ? "No result for XPath"
+                                                                                           : "No result for XPath in baseline");
+                criterionResult.setCriterionID(val.getId());
+                criterionResult.setXPath(val.getXpath());
+                failedAlerts.add(criterionResult);
+                continue;
+            }
+
+            if (StringUtils.isNotBlank(maxIncrease))
+            {
+                check(val, CONFIG_VALUE_PARAMETER.maxIncrease, maxIncrease, value - baseline, value, baseline, failedAlerts);
+            }
+            if (StringUtils.isNotBlank(maxDecrease))
+            {
+                check(val, CONFIG_VALUE_PARAMETER.maxDecrease, maxDecrease, baseline - value, value, baseline, failedAlerts);
+            }
+        }
+        return failedAlerts;
+    }
+
+    /**
+     * Checks whether the given values contain all values that have a limit. Values recorded from the charts of a build only
+     * cover the plotted values.
+     *
+     * @param values
+     *            the number values keyed by value ID
+     * @param config
+     *            the plot/value configuration with the limits
+     * @return <code>true</code> if no value with a limit is missing, <code>false</code> otherwise
+     */
+    public static boolean hasLimitedValues(final Map<String, Double> values, final PlotValuesConfiguration config)
+    {
+        for (final Value val : config.getValues())
+        {
+            if ((StringUtils.isNotBlank(val.getMaxIncrease()) || StringUtils.isNotBlank(val.getMaxDecrease())) &&
+                !values.containsKey(val.getId()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void check(final Value val, final CONFIG_VALUE_PARAMETER limitName, final String limit, final double change,
+                              final double value, final double baseline, final List<CriterionResult> failedAlerts)
+    {
+        final String condition = limitName.name() + ": " + limit.trim();
+
+        final boolean relative = limit.trim().endsWith("%");
+        final double max;
+        try
+        {
+            max = Double.parseDouble(StringUtils.removeEnd(limit.trim(), "%").trim());
+        }
+        catch (final NumberFormatException e)
+        {
+            final CriterionResult criterionResult = CriterionResult.error("Invalid limit");
+            criterionResult.setCriterionID(val.getId());
+            criterionResult.setCondition(condition);
+            failedAlerts.add(criterionResult);
+            return;
+        }
+
+        final double allowedChange = relative ? Math.abs(baseline) * max / 100 : max;
+        if (change > allowedChange)
+        {
+            final String direction = limitName == CONFIG_VALUE_PARAMETER.maxIncrease ? "increased" : "decreased";
+            final CriterionResult criterionResult = CriterionResult.failed("Value " + direction + " from " + format(baseline) +
+                                                                           " (baseline) to " + format(value));
+            criterionResult.setCriterionID(val.getId());
+            criterionResult.setValue(format(value));
+            criterionResult.setCondition(condition);
+            criterionResult.setXPath(val.getXpath());
+            failedAlerts.add(criterionResult);
+        }
+    }
+
+    private static String format(final double d)
+    {
+        return d == Math.rint(d) && Math.abs(d) < 1e15 ? Long.toString((long) d) : Double.toString(d);
+    }
+}
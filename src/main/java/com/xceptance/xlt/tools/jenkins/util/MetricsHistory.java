@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hudson.model.Job;
+
+/**
+ * Job-level, append-only, columnar store of the number values of all builds of a load test step.
+ * <p>
+ * Each column lives in its own file of fixed-size big-endian entries, one entry per build: the build numbers (int), the build
+ * timestamps (long), and one column per value ID (double). Rows are committed by appending to the build number column last,
+ * so a partially written row is simply ignored and repaired on the next append. Columns of values that did not exist yet
+ * when earlier rows were written are shorter than the others, missing entries read as {@link Double#NaN}. Deleted builds are
+ * marked by negating their build number in place.
+ */
+public final class MetricsHistory
+{
+    /**
+     * The name of the job-level folder that holds the histories of all steps.
+     */
+    public static final String FOLDER_NAME = "chartHistory";
+
+    private static final String BUILDS_FILE = "builds.bin";
+
+    private static final String TIMESTAMPS_FILE = "timestamps.bin";
+
+    private static final String VALUE_FILE_PREFIX = "value-";
+
+    private static final String VALUE_FILE_SUFFIX = ".bin";
+
+    private static final Object WRITE_LOCK = new Object();
+
+    private final File dir;
+
+    public MetricsHistory(final File dir)
+    {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the history of the given load test step of the given job.
+     */
+    public static MetricsHistory of(final Job<?, ?> job, final String stepId)
+    {
+        return new MetricsHistory(new File(new File(job.getRootDir(), FOLDER_NAME), stepId));
+    }
+
+    /**
+     * Checks whether any row has been written yet.
+     */
+    public boolean exists()
+    {
+        return new File(dir, BUILDS_FILE).isFile();
+    }
+
+    /**
+     * Appends a row for the given build.
+     *
+     * @param metrics
+     *            the metrics of the build
+     * @throws IOException
+     *             thrown if the store could not be written
+     */
+    public void append(final BuildMetrics metrics) throws IOException
+    {
+        synchronized (WRITE_LOCK)
+        {
+            if (!dir.isDirectory() && !dir.mkdirs())
+            {
+                throw new IOException("Failed to create directory: " + dir);
+            }
+
+            final File buildsFile = new File(dir, BUILDS_FILE);
+            final long rows = buildsFile.length() / 4;
+
+            // repair leftovers of an interrupted append
+            truncate(buildsFile, rows * 4);
+            truncate(new File(dir, TIMESTAMPS_FILE), rows * 8);
+            final File[] files = dir.listFiles();
+            if (files != null)
+            {
+                for (final File f : files)
+                {
+                    if (f.getName().startsWith(VALUE_FILE_PREFIX))
+                    {
+                        truncate(f, rows * 8);
+                    }
+                }
+            }
+
+            for (final Map.Entry<String, Double> e : metrics.getValues().entrySet())
+            {
+                final File valueFile = getValueFile(e.getKey());
+                final long length = valueFile.length() / 8;
+
+                final ByteBuffer buffer = ByteBuffer.allocate((int) (rows - length + 1) * 8);
+                for (long i = length; i < rows; i++)
+                {
+                    buffer.putDouble(Double.NaN);
+                }
+                buffer.putDouble(e.getValue());
+                append(valueFile, buffer.array());
+            }
+
+            append(new File(dir, TIMESTAMPS_FILE), ByteBuffer.allocate(8).putLong(metrics.getTimestamp()).array());
+            append(buildsFile, ByteBuffer.allocate(4).putInt(metrics.getBuildNumber()).array());
+        }
+    }
+
+    /**
+     * Marks the row of the given build as deleted.
+     *
+     * @param buildNumber
+     *            the build number
+     * @throws IOException
+     *             thrown if the store could not be written
+     */
+    public void markDeleted(final int buildNumber) throws IOException
+    {
+        synchronized (WRITE_LOCK)
+        {
+            final File buildsFile = new File(dir, BUILDS_FILE);
+            if (!buildsFile.isFile())
+            {
+                return;
+            }
+
+            try (final RandomAccessFile raf = new RandomAccessFile(buildsFile, "rw"))
+            {
+                final int[] builds = readInts(raf, (int) (raf.length() / 4));
+                for (int row = 0; row < builds.length; row++)
+                {
+                    if (builds[row] == buildNumber)
+                    {
+                        raf.seek(row * 4L);
+                        raf.writeInt(-buildNumber);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of the most recent builds up to the given build number. Each column is read sequentially, starting at
+     * the oldest row needed.
+     *
+     * @param count
+     *            the maximum number of builds to return
+     * @param maxBuildNumber
+     *            the highest build number to return
+     * @param valueIds
+     *            the IDs of the values to read
+     * @return the metrics of the builds, ordered by build number
+     * @throws IOException
+     *             thrown if the store could not be read
+     */
+    public List<BuildMetrics> readLast(final int count, final int maxBuildNumber, final Collection<String> valueIds)
+        throws IOException
+    {
+        final File buildsFile = new File(dir, BUILDS_FILE);
+        if (count <= 0 || !buildsFile.isFile())
+        {
+            return new ArrayList<>();
+        }
+
+        final int[] builds;
+        try (final RandomAccessFile raf = new RandomAccessFile(buildsFile, "r"))
+        {
+            builds = readInts(raf, (int) (raf.length() / 4));
+        }
+        final int rows = builds.length;
+
+        // pick the rows to return, a build that was recorded more than once counts with its last row
+        final Map<Integer, Integer> rowByBuild = new HashMap<>();
+        for (int row = 0; row < rows; row++)
+        {
+            if (builds[row] > 0 && builds[row] <= maxBuildNumber)
+            {
+                rowByBuild.put(builds[row], row);
+            }
+        }
+        final List<Integer> buildNumbers = new ArrayList<>(rowByBuild.keySet());
+        Collections.sort(buildNumbers);
+        final List<Integer> selected = buildNumbers.subList(Math.max(0, buildNumbers.size() - count), buildNumbers.size());
+        if (selected.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+
+        int firstRow = rows;
+        for (final Integer b : selected)
+        {
+            firstRow = Math.min(firstRow, rowByBuild.get(b));
+        }
+
+        final long[] timestamps = readLongs(new File(dir, TIMESTAMPS_FILE), firstRow, rows);
+        final Map<String, double[]> columns = new HashMap<>();
+        for (final String id : valueIds)
+        {
+            columns.put(id, readDoubles(getValueFile(id), firstRow, rows));
+        }
+
+        final List<BuildMetrics> result = new ArrayList<>(selected.size());
+        for (final Integer b : selected)
+        {
+            final int i = rowByBuild.get(b) - firstRow;
+
+            final Map<String, Double> values = new HashMap<>();
+            for (final Map.Entry<String, double[]> column : columns.entrySet())
+            {
+                if (i < column.getValue().length)
+                {
+                    values.put(column.getKey(), column.getValue()[i]);
+                }
+            }
+            result.add(new BuildMetrics(b, i < timestamps.length ? timestamps[i] : 0L, values));
+        }
+
+        Collections.sort(result, new Comparator<BuildMetrics>()
+        {
+            @Override
+            public int compare(final BuildMetrics o1, final BuildMetrics o2)
+            {
+                return Integer.compare(o1.getBuildNumber(), o2.getBuildNumber());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the numbers of all builds recorded and not deleted, which serves as a cheap index of the builds that carry data
+     * of this step. Only the build number column is read.
+     *
+     * @return the build numbers in ascending order without duplicates
+     * @throws IOException
+     *             thrown if the store could not be read
+     */
+    public int[] getBuildNumbers() throws IOException
+    {
+        final File buildsFile = new File(dir, BUILDS_FILE);
+        if (!buildsFile.isFile())
+        {
+            return new int[0];
+        }
+
+        final int[] builds;
+        try (final RandomAccessFile raf = new RandomAccessFile(buildsFile, "r"))
+        {
+            builds = readInts(raf, (int) (raf.length() / 4));
+        }
+        Arrays.sort(builds);
+
+        int count = 0;
+        for (final int b : builds)
+        {
+            if (b > 0 && (count == 0 || builds[count - 1] != b))
+            {
+                builds[count++] = b;
+            }
+        }
+        return Arrays.copyOf(builds, count);
+    }
+
+    private File getValueFile(final String valueId)
+    {
+        // value IDs are user-defined, so encode them to get a safe file name
+        final StringBuilder sb = new StringBuilder(VALUE_FILE_PREFIX);
+        for (final byte b : valueId.getBytes(StandardCharsets.UTF_8))
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return new File(dir, sb.append(VALUE_FILE_SUFFIX).toString());
+    }
+
+    private static void append(final File file, final byte[] bytes) throws IOException
+    {
+        try (final FileOutputStream out = new FileOutputStream(file, true))
+        {
+            out.write(bytes);
+        }
+    }
+
+    private static void truncate(final File file, final long length) throws IOException
+    {
+        if (file.length() > length)
+        {
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+            {
+                raf.setLength(length);
+            }
+        }
+    }
+
+    private static int[] readInts(final RandomAccessFile raf, final int count) throws IOException
+    {
+        final byte[] bytes = new byte[count * 4];
+        raf.seek(0);
+        raf.readFully(bytes);
+
+        final int[] ints = new int[count];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(ints);
+        return ints;
+    }
+
+    /**
+     * Reads the entries of rows [from, to) of the given column. The result is shorter if the column is.
+     */
+    private static byte[] readRange(final File file, final int entrySize, final int from, final int to) throws IOException
+    {
+        if (!file.isFile())
+        {
+            return new byte[0];
+        }
+
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            final long end = Math.min(raf.length() / entrySize, to);
+            if (end <= from)
+            {
+                return new byte[0];
+            }
+
+            final byte[] bytes = new byte[(int) (end - from) * entrySize];
+            raf.seek((long) from * entrySize);
+            raf.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    private static long[] readLongs(final File file, final int from, final int to) throws IOException
+    {
+        final byte[] bytes = readRange(file, 8, from, to);
+        final long[] longs = new long[bytes.length / 8];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(longs);
+        return longs;
+    }
+
+    private static double[] readDoubles(final File file, final int from, final int to) throws IOException
+    {
+        final byte[] bytes = readRange(file, 8, from, to);
+        final double[] doubles = new double[bytes.length / 8];
+        ByteBuffer.wrap(bytes).asDoubleBuffer().get(doubles);
+        return doubles;
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * A folder on a node that caches copies of folders, one entry per version.
+ * <p>
+ * An entry is filled under a temporary name and renamed when complete, so concurrent builds never see a partial entry.
+ * Entries that have not been used for a while are evicted, keeping only the most recently used versions. Builds that keep
+ * using an entry after obtaining it register as its users, and entries with users are never evicted.
+ */
+final class NodeFolderCache
+{
+    /**
+     * Fills a new cache entry.
+     */
+    interface Filler
+    {
+        void fill(FilePath entryDir) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Marks a complete cache entry. Its modification time is when the entry was last used.
+     */
+    static final String COMPLETE_MARKER = ".complete";
+
+    /**
+     * Holds one marker file per user of an entry, which contains the path of the folder using it.
+     */
+    static final String USERS_FOLDER = ".users";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * How long an entry must not have been used before it can be evicted. Builds that use an entry for longer must register
+     * as its users.
+     */
+    private static final long MIN_IDLE_TIME = TimeUnit.DAYS.toMillis(1);
+
+    private final FilePath cacheDir;
+
+    private final String description;
+
+    private final int maxVersions;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheDir
+     *            the cache folder
+     * @param description
+     *            what is cached, used in log messages
+     * @param maxVersions
+     *            the number of versions kept regardless of when they were used last
+     */
+    NodeFolderCache(final FilePath cacheDir, final String description, final int maxVersions)
+    {
+        this.cacheDir = cacheDir;
+        this.description = description;
+        this.maxVersions = maxVersions;
+    }
+
+    /**
+     * Returns the cache entry with the given key, creating it if necessary.
+     */
+    FilePath getEntry(final String key, final Filler filler, final TaskListener listener) throws IOException, InterruptedException
+    {
+        final FilePath entryDir = cacheDir.child(key);
+        final FilePath marker = entryDir.child(COMPLETE_MARKER);
+        if (marker.exists())
+        {
+            listener.getLogger().println("Using cached " + description + ": " + entryDir.getRemote());
+            marker.touch(System.currentTimeMillis());
+            return entryDir;
+        }
+
+        listener.getLogger().println("Caching " + description + ": " + entryDir.getRemote());
+
+        cacheDir.mkdirs();
+        final FilePath tempDir = cacheDir.createTempDir(key, TEMP_SUFFIX);
+        try
+        {
+            filler.fill(tempDir);
+            tempDir.child(COMPLETE_MARKER).touch(System.currentTimeMillis());
+
+            // it does not matter if another build was faster
+            if (!rename(tempDir, entryDir))
+            {
+                // remove the leftovers of an interrupted attempt and try again
+                entryDir.deleteRecursive();
+                if (!rename(tempDir, entryDir))
+                {
+                    throw new IOException("Failed to create cache entry: " + entryDir.getRemote());
+                }
+            }
+        }
+        finally
+        {
+            if (tempDir.exists())
+            {
+                tempDir.deleteRecursive();
+            }
+        }
+
+        return entryDir;
+    }
+
+    /**
+     * Registers the given folder as user of the given cache entry, so the entry is not evicted while the folder exists.
+     */
+    void addUser(final FilePath entryDir, final FilePath userDir) throws IOException, InterruptedException
+    {
+        entryDir.child(USERS_FOLDER).child(getUserMarkerName(userDir)).write(userDir.getRemote(), "UTF-8");
+    }
+
+    /**
+     * Unregisters the given folder as user of any cache entry.
+     */
+    void removeUser(final FilePath userDir) throws IOException, InterruptedException
+    {
+        if (cacheDir.isDirectory())
+        {
+            final String markerName = getUserMarkerName(userDir);
+            for (final FilePath dir : cacheDir.listDirectories())
+            {
+                dir.child(USERS_FOLDER).child(markerName).delete();
+            }
+        }
+    }
+
+    private static String getUserMarkerName(final FilePath userDir)
+    {
+        return Util.getDigestOf(userDir.getRemote());
+    }
+
+    /**
+     * Checks whether the given cache entry has users. Markers of users that are gone, e.g. because their build crashed, are
+     * removed.
+     */
+    private boolean hasUsers(final FilePath entryDir) throws IOException, InterruptedException
+    {
+        final FilePath usersDir = entryDir.child(USERS_FOLDER);
+        if (!usersDir.isDirectory())
+        {
+            return false;
+        }
+
+        boolean hasUsers = false;
+        for (final FilePath marker : usersDir.list())
+        {
+            if (new FilePath(cacheDir.getChannel(), marker.readToString().trim()).exists())
+            {
+                hasUsers = true;
+            }
+            else
+            {
+                marker.delete();
+            }
+        }
+        return hasUsers;
+    }
+
+    /**
+     * Renames the given temporary folder to the given cache entry unless it exists already.
+     *
+     * @return whether the cache entry is complete now
+     */
+    private static boolean rename(final FilePath tempDir, final FilePath entryDir) throws InterruptedException
+    {
+        final FilePath marker = entryDir.child(COMPLETE_MARKER);
+        try
+        {
+            if (!marker.exists())
+            {
+                tempDir.renameTo(entryDir);
+            }
+            return marker.exists();
+        }
+        catch (final IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Removes the entries that have not been used for a while and have no users, except the most recently used ones.
+     *
+     * @param currentKey
+     *            the key of the entry just used
+     * @param listener
+     *            the listener to log to
+     */
+    void evict(final String currentKey, final TaskListener listener)
+    {
+        try
+        {
+            // use the node's clock
+            final long now = cacheDir.child(currentKey).child(COMPLETE_MARKER).lastModified();
+
+            final List<Entry> entries = new ArrayList<>();
+            for (final FilePath dir : cacheDir.listDirectories())
+            {
+                if (dir.getName().equals(currentKey))
+                {
+                    continue;
+                }
+
+                final FilePath marker = dir.child(COMPLETE_MARKER);
+                if (marker.exists())
+                {
+                    entries.add(new Entry(dir, marker.lastModified()));
+                }
+                else if (now - dir.lastModified() > MIN_IDLE_TIME)
+                {
+                    // leftover of an interrupted attempt
+                    dir.deleteRecursive();
+                }
+            }
+
+            // most recently used first
+            Collections.sort(entries, new Comparator<Entry>()
+            {
+                @Override
+                public int compare(final Entry e1, final Entry e2)
+                {
+                    return Long.compare(e2.lastUsed, e1.lastUsed);
+                }
+            });
+
+            // the current entry counts as one of the kept versions
+            for (int i = maxVersions - 1; i < entries.size(); i++)
+            {
+                final Entry entry = entries.get(i);
+                if (now - entry.lastUsed > MIN_IDLE_TIME && !hasUsers(entry.dir))
+                {
+                    listener.getLogger().println("Evicting cached " + description + ": " + entry.dir.getRemote());
+                    entry.dir.deleteRecursive();
+                }
+            }
+        }
+        catch (final IOException | InterruptedException e)
+        {
+            // the cache will be cleaned up next time
+            listener.getLogger().println("Failed to clean up the cache of " + description + "s: " + e);
+        }
+    }
+
+    private static final class Entry
+    {
+        private final FilePath dir;
+
+        private final long lastUsed;
+
+        private Entry(final FilePath dir, final long lastUsed)
+        {
+            this.dir = dir;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Calculates the fingerprint of a folder from its file list (paths, sizes and modification times), so any change to the
+     * folder results in a new fingerprint.
+     */
+    static final class Fingerprint extends MasterToSlaveFileCallable<String>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String salt;
+
+        private final String[] folderNames;
+
+        /**
+         * Constructor.
+         *
+         * @param salt
+         *            additional data that goes into the fingerprint
+         * @param folderNames
+         *            the sub folders to consider, or an empty string for the whole folder
+         */
+        Fingerprint(final String salt, final String... folderNames)
+        {
+            this.salt = salt;
+            this.folderNames = folderNames;
+        }
+
+        @Override
+        public String invoke(final File dir, final VirtualChannel channel) throws IOException
+        {
+            final List<String> entries = new ArrayList<>();
+            for (final String folderName : folderNames)
+            {
+                collect(new File(dir, folderName), folderName, entries);
+            }
+            Collections.sort(entries);
+
+            try
+            {
+                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(salt.getBytes(StandardCharsets.UTF_8));
+                for (final String entry : entries)
+                {
+                    digest.update(entry.getBytes(StandardCharsets.UTF_8));
+                }
+                return Util.toHexString(digest.digest()).substring(0, 32);
+            }
+            catch (final NoSuchAlgorithmException e)
+            {
+                throw new IOException(e);
+            }
+        }
+
+        private static void collect(final File file, final String path, final List<String> entries)
+        {
+            final File[] children = file.listFiles();
+            if (children != null)
+            {
+                for (final File child : children)
+                {
+                    collect(child, path + "/" + child.getName(), entries);
+                }
+            }
+            else if (file.isFile())
+            {
+                entries.add(path + '\0' + file.length() + '\0' + file.lastModified() + '\n');
+            }
+        }
+    }
+}
@@ -42,6 +42,8 @@ public final class PluginDefaults
 
     public static final int INITIAL_RESPONSE_TIMEOUT = 360;
 
+    public static final int ARCHIVE_COMPRESSION_LEVEL = 1;
+
     public static String getXltConfig()
     {
         try
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A content-addressed store of report files shared by the archived reports of a job.
+ * <p>
+ * Consecutive reports have most of their files in common, like style sheets, scripts, images and often charts. After a
+ * report has been archived, each of its files is replaced by a hard link to the blob with the same content, so identical
+ * files take up disk space only once. As the report folders still contain regular files, they are served, linked and
+ * deleted with their builds just as before. A blob is named after the SHA-256 hash of its content and is garbage once it is
+ * not linked from any report anymore, which is told by its link count.
+ * <p>
+ * Report files must not be modified after they have been added, as the change would show in all reports sharing the file.
+ * Deduplication is skipped on file systems that do not support hard links and link counts.
+ */
+public final class ReportBlobStore
+{
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Marks when the garbage was collected last.
+     */
+    private static final String GC_MARKER = ".gc";
+
+    /**
+     * How often the store is searched for garbage.
+     */
+    private static final long GC_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    private static final String LINK_COUNT_ATTRIBUTE = "unix:nlink";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File dir;
+
+    /**
+     * The statistics of deduplicating a report folder.
+     */
+    public static final class Stats
+    {
+        private int files;
+
+        private int sharedFiles;
+
+        private long savedBytes;
+
+        /**
+         * Returns the number of files in the report folder.
+         */
+        public int getFiles()
+        {
+            return files;
+        }
+
+        /**
+         * Returns the number of files that were already stored for other reports.
+         */
+        public int getSharedFiles()
+        {
+            return sharedFiles;
+        }
+
+        /**
+         * Returns the size of the files that were already stored for other reports.
+         */
+        public long getSavedBytes()
+        {
+            return savedBytes;
+        }
+    }
+
+    public ReportBlobStore(final File dir)
+    {
+        this.dir = dir;
+    }
+
+    /**
+     * Checks whether the file system of the store supports deduplication.
+     */
+    public boolean isSupported() throws IOException
+    {
+        Files.createDirectories(dir.toPath());
+        return getLinkCount(dir.toPath()) > 0;
+    }
+
+    /**
+     * Replaces the files of the given report folder with links to the blobs of the same content, adding new blobs as needed.
+     *
+     * @param reportFolder
+     *            the report folder
+     * @return the statistics
+     * @throws IOException
+     *             thrown if the report folder could not be read
+     */
+    public Stats deduplicate(final File reportFolder) throws IOException
+    {
+        final Stats result = new Stats();
+        if (!reportFolder.isDirectory() || !isSupported())
+        {
+            return result;
+        }
+
+        Files.walkFileTree(reportFolder.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException
+            {
+                // empty files do not take up any space
+                if (attrs.isRegularFile() && attrs.size() > 0)
+                {
+                    result.files++;
+                    if (link(file, attrs.size()))
+                    {
+                        result.sharedFiles++;
+                        result.savedBytes += attrs.size();
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Links the given file to its blob.
+     *
+     * @return whether the blob existed before
+     */
+    private boolean link(final Path file, final long size) throws IOException
+    {
+        final String hash = hash(file);
+        final Path blob = dir.toPath().resolve(hash.substring(0, 2)).resolve(hash);
+
+        if (!Files.exists(blob))
+        {
+            Files.createDirectories(blob.getParent());
+            try
+            {
+                Files.createLink(blob, file);
+                return false;
+            }
+            catch (final FileAlreadyExistsException e)
+            {
+                // added concurrently for another report
+            }
+        }
+
+        if (Files.isSameFile(blob, file) || Files.size(blob) != size)
+        {
+            return false;
+        }
+
+        // replace the file atomically, so the report is complete at any time
+        final Path tempFile = file.resolveSibling("." + file.getFileName() + ".blob" + TEMP_SUFFIX);
+        try
+        {
+            Files.deleteIfExists(tempFile);
+            Files.createLink(tempFile, blob);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        catch (final IOException e)
+        {
+            // the blob was collected in the meantime, keep the file as it is
+            Files.deleteIfExists(tempFile);
+            return false;
+        }
+    }
+
+    /**
+     * Removes the blobs that are not used by any report anymore, if this was not done recently.
+     *
+     * @return the number of blobs removed
+     * @throws IOException
+     *             thrown if the store could not be read
+     */
+    public int collectGarbage() throws IOException
+    {
+        return collectGarbage(GC_INTERVAL);
+    }
+
+    int collectGarbage(final long interval) throws IOException
+    {
+        if (!isSupported())
+        {
+            return 0;
+        }
+
+        final Path marker = dir.toPath().resolve(GC_MARKER);
+        final long now = System.currentTimeMillis();
+        if (Files.exists(marker) && now - Files.getLastModifiedTime(marker).toMillis() < interval)
+        {
+            return 0;
+        }
+        if (!Files.exists(marker))
+        {
+            Files.createFile(marker);
+        }
+        Files.setLastModifiedTime(marker, FileTime.fromMillis(now));
+
+        final int[] removed = new int[1];
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException
+            {
+                if (!file.equals(marker) && getLinkCount(file) == 1)
+                {
+                    Files.deleteIfExists(file);
+                    removed[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return removed[0];
+    }
+
+    /**
+     * Returns the number of hard links to the given file, or 0 if the file system does not tell.
+     */
+    private static int getLinkCount(final Path file) throws IOException
+    {
+        try
+        {
+            return ((Number) Files.getAttribute(file, LINK_COUNT_ATTRIBUTE)).intValue();
+        }
+        catch (final UnsupportedOperationException | IllegalArgumentException e)
+        {
+            // e.g. Windows
+            return 0;
+        }
+    }
+
+    private static String hash(final Path file) throws IOException
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException e)
+        {
+            throw new IOException(e);
+        }
+
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (final InputStream in = Files.newInputStream(file))
+        {
+            int n;
+            while ((n = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+}
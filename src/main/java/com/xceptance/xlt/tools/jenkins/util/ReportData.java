@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration;
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration.Value;
+import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
+import com.xceptance.xlt.tools.jenkins.util.ReportMetrics.Metric;
+import com.xceptance.xlt.tools.jenkins.util.StreamingReportExtractor.ExtractedNode;
+import com.xceptance.xlt.tools.jenkins.util.StreamingReportExtractor.Extraction;
+
+import hudson.FilePath;
+
+/**
+ * Read access to the data of a test report. Depending on the configured values, the data is either extracted in a single
+ * streaming pass or read from a fully parsed DOM tree.
+ */
+public abstract class ReportData
+{
+    /**
+     * Returns the number value of the first node that matches the given XPath expression.
+     *
+     * @param xpath
+     *            the XPath expression
+     * @return the number value, or {@link Double#NaN} if there is no such node or its value is not a number
+     */
+    public abstract Double getNumber(final String xpath);
+
+    /**
+     * Returns the trimmed text content of the first node that matches the given XPath expression.
+     *
+     * @param xpath
+     *            the XPath expression
+     * @return the text content, or <code>null</code> if there is no such node
+     */
+    public abstract String getText(final String xpath);
+
+    /**
+     * Checks whether any node that matches the given XPath expression satisfies the given condition.
+     *
+     * @param xpath
+     *            the XPath expression
+     * @param condition
+     *            the condition, i.e. an XPath predicate such as <code>[number() &lt; 1000]</code>
+     * @return <code>true</code> if the condition is satisfied, <code>false</code> otherwise
+     */
+    public abstract boolean matches(final String xpath, final String condition);
+
+    /**
+     * Evaluates a value, i.e. the number and, if a condition is given, the text of the first node that matches the given XPath
+     * expression and whether any matching node satisfies the condition.
+     *
+     * @param xpath
+     *            the XPath expression
+     * @param condition
+     *            the condition, may be blank
+     * @return the evaluation result
+     */
+    public Metric getMetric(final String xpath, final String condition)
+    {
+        final Double number = getNumber(xpath);
+
+        String text = null;
+        Boolean conditionMet = null;
+        if (StringUtils.isNotBlank(condition))
+        {
+            text = getText(xpath);
+            conditionMet = text != null && matches(xpath, condition);
+        }
+
+        return new Metric(number != null ? number.doubleValue() : Double.NaN, text, conditionMet);
+    }
+
+    /**
+     * Returns the records found for the given record path.
+     *
+     * @param path
+     *            the record path
+     * @return the records in document order
+     */
+    public abstract List<String[]> getRecords(final RecordPath path);
+
+    /**
+     * Returns a report data view on the given document.
+     *
+     * @param document
+     *            the test report document
+     * @return the report data, or <code>null</code> if the given document is <code>null</code>
+     */
+    public static ReportData of(final Document document)
+    {
+        return document != null ? new DomReportData(document) : null;
+    }
+
+    /**
+     * Loads the given test report. If the XPath expressions and conditions of all configured values as well as the given
+     * record paths can be streamed, the report is read in a single streaming pass. Otherwise, the report is parsed into a DOM
+     * tree.
+     *
+     * @param file
+     *            the test report file
+     * @param config
+     *            the plot/value configuration
+     * @param recordPaths
+     *            the record paths to extract as well
+     * @return the report data, or <code>null</code> if the report could not be read
+     */
+    public static ReportData load(final FilePath file, final PlotValuesConfiguration config, final RecordPath... recordPaths)
+    {
+        final StreamingReportExtractor extractor = new StreamingReportExtractor();
+        boolean streamable = true;
+        if (config != null)
+        {
+            for (final Value value : config.getValues())
+            {
+                if (!extractor.addValue(value.getXpath()) ||
+                    (StringUtils.isNotBlank(value.getCondition()) && !isSelfContained(value.getCondition())))
+                {
+                    LOGGER.debug("Value cannot be streamed, falling back to DOM. (ID: \"" + value.getId() + "\")");
+                    streamable = false;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; streamable && i < recordPaths.length; i++)
+        {
+            streamable = extractor.addRecords(recordPaths[i].getXpath(), recordPaths[i].getFields());
+        }
+
+        if (streamable)
+        {
+            InputStream in = null;
+            try
+            {
+                // the report lives on the master, so reading it as a local file is fine (see XmlUtils#parse(FilePath))
+                in = new BufferedInputStream(new FileInputStream(file.getRemote()));
+                return new StreamedReportData(extractor.extract(in), file);
+            }
+            catch (IOException | XMLStreamException e)
+            {
+                LOGGER.warn("Failed to stream test report, falling back to DOM: " + file.getRemote(), e);
+            }
+            finally
+            {
+                IOUtils.closeQuietly(in);
+            }
+        }
+
+        return of(XmlUtils.parse(file));
+    }
+
+    /**
+     * Checks whether the given condition only refers to the node it is applied to, i.e. whether it can be evaluated on a copy
+     * of that node taken out of its document.
+     */
+    static boolean isSelfContained(final String condition)
+    {
+        final String c = condition.trim();
+        if (!c.startsWith("[") || !c.endsWith("]"))
+        {
+            return false;
+        }
+        for (final String s : new String[]
+            {
+                "/", "..", "::", "$", "name(", "local-name(", "namespace-uri(", "position(", "last(", "id(", "lang("
+            })
+        {
+            if (c.contains(s))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A path to repeating elements of which the text of some child elements is to be read.
+     */
+    public static final class RecordPath
+    {
+        private final String xpath;
+
+        private final String[] fields;
+
+        public RecordPath(final String xpath, final String... fields)
+        {
+            this.xpath = xpath;
+            this.fields = fields;
+        }
+
+        public String getXpath()
+        {
+            return xpath;
+        }
+
+        public String[] getFields()
+        {
+            return fields.clone();
+        }
+    }
+
+    private static final class DomReportData extends ReportData
+    {
+        private final Document document;
+
+        private DomReportData(final Document document)
+        {
+            this.document = document;
+        }
+
+        @Override
+        public Double getNumber(final String xpath)
+        {
+            final Double number = XmlUtils.evaluateXPath(document, xpath, Double.class);
+            return number != null ? number : Double.NaN;
+        }
+
+        @Override
+        public String getText(final String xpath)
+        {
+            final Node node = XmlUtils.evaluateXPath(document, xpath);
+            return node != null ? node.getTextContent().trim() : null;
+        }
+
+        @Override
+        public boolean matches(final String xpath, final String condition)
+        {
+            return XmlUtils.evaluateXPath(document, xpath + condition) != null;
+        }
+
+        /**
+         * Evaluates the XPath expression only once and derives the number, the text and the condition from the matching
+         * nodes.
+         */
+        @Override
+        public Metric getMetric(final String xpath, final String condition)
+        {
+            final NodeList nodes;
+            try
+            {
+                nodes = (NodeList) XmlUtils.compile(xpath).evaluate(document, XPathConstants.NODESET);
+            }
+            catch (final XPathExpressionException e)
+            {
+                // not a node set, e.g. a function call
+                return super.getMetric(xpath, condition);
+            }
+
+            final boolean hasCondition = StringUtils.isNotBlank(condition);
+            if (nodes.getLength() == 0)
+            {
+                return new Metric(Double.NaN, null, hasCondition ? Boolean.FALSE : null);
+            }
+
+            final String content = nodes.item(0).getTextContent();
+            final double number = StreamingReportExtractor.toNumber(content);
+            if (!hasCondition)
+            {
+                return new Metric(number, null, null);
+            }
+
+            // the condition might refer to other nodes or to the position of the node
+            if (!isSelfContained(condition))
+            {
+                return new Metric(number, content.trim(), matches(xpath, condition));
+            }
+
+            boolean conditionMet = false;
+            for (int i = 0; i < nodes.getLength() && !conditionMet; i++)
+            {
+                conditionMet = XmlUtils.evaluateXPath(nodes.item(i), "self::node()" + condition.trim(), Node.class) != null;
+            }
+            return new Metric(number, content.trim(), conditionMet);
+        }
+
+        @Override
+        public List<String[]> getRecords(final RecordPath path)
+        {
+            final List<String[]> records = new ArrayList<>();
+            final String[] fields = path.getFields();
+
+            @SuppressWarnings("unchecked")
+            final List<Node> matches = XmlUtils.evaluateXPath(document, path.getXpath(), List.class);
+            if (matches != null)
+            {
+                for (final Node n : matches)
+                {
+                    final String[] record = new String[fields.length];
+                    for (int i = 0; i < fields.length; i++)
+                    {
+                        final Node field = XmlUtils.evaluateXPath(n, fields[i], Node.class);
+                        record[i] = field != null ? field.getTextContent() : null;
+                    }
+                    records.add(record);
+                }
+            }
+            return records;
+        }
+    }
+
+    private static final class StreamedReportData extends ReportData
+    {
+        private final Extraction extraction;
+
+        private final FilePath file;
+
+        private ReportData fallback;
+
+        private StreamedReportData(final Extraction extraction, final FilePath file)
+        {
+            this.extraction = extraction;
+            this.file = file;
+        }
+
+        /**
+         * Parses the report into a DOM tree for anything the streaming pass could not answer.
+         */
+        private ReportData fallback()
+        {
+            if (fallback == null)
+            {
+                LOGGER.debug("Parsing test report as DOM: " + file.getRemote());
+                final Document document = XmlUtils.parse(file);
+                fallback = document != null ? new DomReportData(document) : new EmptyReportData();
+            }
+            return fallback;
+        }
+
+        @Override
+        public Double getNumber(final String xpath)
+        {
+            if (!extraction.hasValue(xpath))
+            {
+                return fallback().getNumber(xpath);
+            }
+
+            final ExtractedNode node = extraction.getValue(xpath);
+            return node != null ? StreamingReportExtractor.toNumber(node.getText()) : Double.NaN;
+        }
+
+        @Override
+        public String getText(final String xpath)
+        {
+            if (!extraction.hasValue(xpath))
+            {
+                return fallback().getText(xpath);
+            }
+
+            final ExtractedNode node = extraction.getValue(xpath);
+            return node != null ? node.getText().trim() : null;
+        }
+
+        @Override
+        public boolean matches(final String xpath, final String condition)
+        {
+            if (!extraction.hasValue(xpath))
+            {
+                return fallback().matches(xpath, condition);
+            }
+
+            final ExtractedNode node = extraction.getValue(xpath);
+            if (node == null)
+            {
+                return false;
+            }
+            // the condition might refer to child elements or be satisfied by a node other than the first one
+            if (!node.isLeaf() || extraction.isAmbiguous(xpath) || !isSelfContained(condition))
+            {
+                return fallback().matches(xpath, condition);
+            }
+
+            // evaluate the condition on a detached copy of the node
+            try
+            {
+                final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+                final Element element = doc.createElement("value");
+                for (final Map.Entry<String, String> attribute : node.getAttributes().entrySet())
+                {
+                    element.setAttribute(attribute.getKey(), attribute.getValue());
+                }
+                element.setTextContent(node.getText());
+                doc.appendChild(element);
+
+                return XmlUtils.evaluateXPath(doc, "/value" + condition) != null;
+            }
+            catch (final ParserConfigurationException e)
+            {
+                return fallback().matches(xpath, condition);
+            }
+        }
+
+        @Override
+        public Metric getMetric(final String xpath, final String condition)
+        {
+            if (!extraction.hasValue(xpath))
+            {
+                return fallback().getMetric(xpath, condition);
+            }
+            return super.getMetric(xpath, condition);
+        }
+
+        @Override
+        public List<String[]> getRecords(final RecordPath path)
+        {
+            if (!extraction.hasRecords(path.getXpath()))
+            {
+                return fallback().getRecords(path);
+            }
+            return extraction.getRecords(path.getXpath());
+        }
+    }
+
+    private static final class EmptyReportData extends ReportData
+    {
+        @Override
+        public Double getNumber(final String xpath)
+        {
+            return Double.NaN;
+        }
+
+        @Override
+        public String getText(final String xpath)
+        {
+            return null;
+        }
+
+        @Override
+        public boolean matches(final String xpath, final String condition)
+        {
+            return false;
+        }
+
+        @Override
+        public List<String[]> getRecords(final RecordPath path)
+        {
+            return new ArrayList<>();
+        }
+    }
+}
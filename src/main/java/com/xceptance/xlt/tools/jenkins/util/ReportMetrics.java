@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration;
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration.Value;
+import com.xceptance.xlt.tools.jenkins.util.ReportData.RecordPath;
+
+/**
+ * Immutable snapshot of the metrics of a single build. Every configured value is evaluated exactly once against the test
+ * report, so that charting and criterion checking can share the results.
+ */
+public final class ReportMetrics
+{
+    private final Map<String, Metric> metrics;
+
+    private final Map<String, List<String[]>> records;
+
+    private ReportMetrics(final Map<String, Metric> metrics, final Map<String, List<String[]>> records)
+    {
+        this.metrics = Collections.unmodifiableMap(metrics);
+        this.records = Collections.unmodifiableMap(records);
+    }
+
+    /**
+     * Evaluates all values of the given configuration and reads the given record paths.
+     *
+     * @param data
+     *            the test report data
+     * @param config
+     *            the plot/value configuration
+     * @param recordPaths
+     *            the record paths to read
+     * @return the metrics snapshot, or <code>null</code> if the given report data is <code>null</code>
+     */
+    public static ReportMetrics evaluate(final ReportData data, final PlotValuesConfiguration config, final RecordPath... recordPaths)
+    {
+        if (data == null)
+        {
+            return null;
+        }
+
+        final Map<String, Metric> metrics = new HashMap<>();
+        if (config != null)
+        {
+            for (final Value value : config.getValues())
+            {
+                final String xPath = value.getXpath();
+                if (StringUtils.isBlank(xPath) || metrics.containsKey(value.getId()))
+                {
+                    continue;
+                }
+
+                metrics.put(value.getId(), data.getMetric(xPath, value.getCondition()));
+            }
+        }
+
+        final Map<String, List<String[]>> records = new HashMap<>();
+        for (final RecordPath path : recordPaths)
+        {
+            records.put(path.getXpath(), Collections.unmodifiableList(new ArrayList<>(data.getRecords(path))));
+        }
+
+        return new ReportMetrics(metrics, records);
+    }
+
+    /**
+     * Returns the metric of the value with the given ID.
+     *
+     * @param valueId
+     *            the value ID
+     * @return the metric, or <code>null</code> if the value does not exist or has no XPath
+     */
+    public Metric getMetric(final String valueId)
+    {
+        return metrics.get(valueId);
+    }
+
+    /**
+     * Returns the number values of all evaluated values keyed by value ID.
+     */
+    public Map<String, Double> getNumbers()
+    {
+        final Map<String, Double> numbers = new HashMap<>();
+        for (final Map.Entry<String, Metric> e : metrics.entrySet())
+        {
+            numbers.put(e.getKey(), e.getValue().getNumber());
+        }
+        return numbers;
+    }
+
+    /**
+     * Returns the records read for the given record path.
+     *
+     * @param path
+     *            the record path
+     * @return the records in document order, or an empty list if the record path was not read
+     */
+    public List<String[]> getRecords(final RecordPath path)
+    {
+        final List<String[]> list = records.get(path.getXpath());
+        return list != null ? list : Collections.<String[]> emptyList();
+    }
+
+    /**
+     * The evaluation result of a single value.
+     */
+    public static final class Metric
+    {
+        private final double number;
+
+        private final String text;
+
+        private final Boolean conditionMet;
+
+        Metric(final double number, final String text, final Boolean conditionMet)
+        {
+            this.number = number;
+            this.text = text;
+            this.conditionMet = conditionMet;
+        }
+
+        /**
+         * Returns the number value of the first matching node, or {@link Double#NaN} if there is none.
+         */
+        public double getNumber()
+        {
+            return number;
+        }
+
+        /**
+         * Returns the trimmed text of the first matching node, or <code>null</code> if there is none or the value has no
+         * condition.
+         */
+        public String getText()
+        {
+            return text;
+        }
+
+        /**
+         * Returns whether the condition of the value is met, or <code>null</code> if the value has no condition.
+         */
+        public Boolean isConditionMet()
+        {
+            return conditionMet;
+        }
+    }
+}
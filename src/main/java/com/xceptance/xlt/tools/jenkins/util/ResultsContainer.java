@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The archived results of a build stored as a single ZIP file instead of loose files.
+ * <p>
+ * The central directory of the ZIP file serves as index, so single entries can be read without unpacking the whole
+ * container. Entry names are the paths of the files relative to the results folder, separated by slashes.
+ */
+public final class ResultsContainer
+{
+    /**
+     * The extension of the container file, which is stored next to where the results folder would be.
+     */
+    public static final String FILE_EXTENSION = ".zip";
+
+    private ResultsContainer()
+    {
+    }
+
+    /**
+     * Returns the container file that replaces the given results folder.
+     */
+    public static File getContainerFile(final File resultsFolder)
+    {
+        return new File(resultsFolder.getParentFile(), resultsFolder.getName() + FILE_EXTENSION);
+    }
+
+    /**
+     * Checks whether the given file is a results container rather than a results folder.
+     */
+    public static boolean isContainer(final File file)
+    {
+        return file.isFile() && file.getName().endsWith(FILE_EXTENSION);
+    }
+
+    /**
+     * Writes the contents of the given folder as container to the given stream, which is closed afterwards.
+     *
+     * @param folder
+     *            the results folder
+     * @param out
+     *            the stream to write to
+     * @param level
+     *            the compression level (0-9)
+     * @return the number of files written
+     */
+    public static int write(final File folder, final OutputStream out, final int level) throws IOException
+    {
+        try (final ZipOutputStream zip = new ZipOutputStream(out))
+        {
+            zip.setLevel(level);
+            return addFiles(folder, "", zip);
+        }
+    }
+
+    private static int addFiles(final File dir, final String path, final ZipOutputStream zip) throws IOException
+    {
+        int count = 0;
+
+        final File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (final File file : files)
+            {
+                final String name = path + file.getName();
+                if (file.isDirectory())
+                {
+                    count += addFiles(file, name + "/", zip);
+                }
+                else
+                {
+                    final ZipEntry entry = new ZipEntry(name);
+                    entry.setTime(file.lastModified());
+                    zip.putNextEntry(entry);
+                    try (final InputStream in = new FileInputStream(file))
+                    {
+                        IOUtils.copy(in, zip);
+                    }
+                    zip.closeEntry();
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Copies the given entry of the given container to the given file.
+     *
+     * @return <code>false</code> if there is no such entry
+     */
+    public static boolean copyEntry(final ZipFile container, final String name, final File target) throws IOException
+    {
+        final ZipEntry entry = container.getEntry(name);
+        if (entry == null || entry.isDirectory())
+        {
+            return false;
+        }
+
+        try (final InputStream in = container.getInputStream(entry))
+        {
+            FileUtils.copyInputStreamToFile(in, target);
+        }
+        if (entry.getTime() != -1)
+        {
+            target.setLastModified(entry.getTime());
+        }
+        return true;
+    }
+}
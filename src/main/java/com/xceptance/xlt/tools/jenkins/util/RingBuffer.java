@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A list of bounded size. Once the list is full, adding an element drops the oldest one in constant time. The elements are
+ * kept in insertion order, the oldest one first.
+ * <p>
+ * Storage is allocated as elements are added, so a large capacity costs nothing until it is used. Only appending, replacing
+ * and clearing are supported.
+ */
+public class RingBuffer<E> extends AbstractList<E>
+{
+    private final int capacity;
+
+    private Object[] elements;
+
+    /**
+     * The index of the oldest element.
+     */
+    private int head;
+
+    private int size;
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param capacity
+     *            the maximum number of elements, a buffer with a capacity of 0 or less stays empty
+     */
+    public RingBuffer(final int capacity)
+    {
+        this.capacity = Math.max(0, capacity);
+        this.elements = new Object[Math.min(this.capacity, 16)];
+    }
+
+    /**
+     * Creates a buffer holding the most recent of the given elements.
+     *
+     * @param capacity
+     *            the maximum number of elements
+     * @param c
+     *            the elements to add, in order
+     */
+    public RingBuffer(final int capacity, final Collection<? extends E> c)
+    {
+        this(capacity);
+        addAll(c);
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(final int index)
+    {
+        checkIndex(index);
+        return (E) elements[(head + index) % elements.length];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(final int index, final E element)
+    {
+        checkIndex(index);
+        final int i = (head + index) % elements.length;
+        final E old = (E) elements[i];
+        elements[i] = element;
+        return old;
+    }
+
+    /**
+     * Appends the given element. If the buffer is full, the oldest element is dropped.
+     *
+     * @return <code>true</code>, unless the buffer has no capacity at all
+     */
+    @Override
+    public boolean add(final E element)
+    {
+        if (capacity == 0)
+        {
+            return false;
+        }
+
+        modCount++;
+        if (size == capacity)
+        {
+            elements[head] = element;
+            head = (head + 1) % elements.length;
+            return true;
+        }
+
+        if (size == elements.length)
+        {
+            grow();
+        }
+        elements[(head + size) % elements.length] = element;
+        size++;
+        return true;
+    }
+
+    @Override
+    public void clear()
+    {
+        modCount++;
+        Arrays.fill(elements, null);
+        head = 0;
+        size = 0;
+    }
+
+    private void grow()
+    {
+        final Object[] newElements = new Object[(int) Math.min(capacity, Math.max(16L, elements.length * 2L))];
+        for (int i = 0; i < size; i++)
+        {
+            newElements[i] = elements[(head + i) % elements.length];
+        }
+        elements = newElements;
+        head = 0;
+    }
+
+    private void checkIndex(final int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
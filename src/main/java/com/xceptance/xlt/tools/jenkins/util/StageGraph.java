@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A set of stages with dependencies between them. Each stage is started as soon as all the stages it depends on are done,
+ * using at most the given number of threads, so independent stages overlap.
+ * <p>
+ * Once a stage fails, no further stages are started. The stages already running are waited for and the first failure is
+ * rethrown. The duration of each stage is printed when it is done, followed by an overview of all stages at the end.
+ * <p>
+ * The stages of all graphs run on a shared pool of threads. Its core threads are kept, so thread-bound caches such as the
+ * compiled XPath expressions of {@link XmlUtils} survive across builds.
+ */
+public final class StageGraph
+{
+    /**
+     * A unit of work.
+     */
+    public interface Stage
+    {
+        void run() throws Exception;
+    }
+
+    /**
+     * The number of stage threads that are kept when idle.
+     */
+    private static final int CORE_THREADS = 4;
+
+    /**
+     * How long to wait for the running stages to stop after the graph was interrupted.
+     */
+    private static final long STOP_TIMEOUT = 60 * 1000L;
+
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(CORE_THREADS, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                                                                           new SynchronousQueue<Runnable>(), new StageThreadFactory());
+
+    private enum State
+    {
+        PENDING, RUNNING, DONE, FAILED, SKIPPED
+    }
+
+    private static final class Node implements Callable<Node>
+    {
+        private final String name;
+
+        private final Stage stage;
+
+        private final List<Node> dependencies;
+
+        private State state = State.PENDING;
+
+        private long duration;
+
+        private Exception error;
+
+        private Future<Node> future;
+
+        /**
+         * Set by whoever gets to the stage first: the thread about to run it, or the graph giving up on it.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private Node(final String name, final Stage stage, final List<Node> dependencies)
+        {
+            this.name = name;
+            this.stage = stage;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public Node call()
+        {
+            if (!claimed.compareAndSet(false, true))
+            {
+                // the graph was interrupted before the stage started
+                return this;
+            }
+
+            final long start = System.currentTimeMillis();
+            try
+            {
+                stage.run();
+            }
+            catch (final Exception e)
+            {
+                error = e;
+            }
+            finally
+            {
+                duration = System.currentTimeMillis() - start;
+                finished.countDown();
+            }
+            return this;
+        }
+    }
+
+    private final String title;
+
+    private final int parallelism;
+
+    private final PrintStream log;
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param title
+     *            what the stages are about, used in the overview of the timings
+     * @param parallelism
+     *            the maximum number of stages running at the same time
+     * @param log
+     *            where to print the timings to
+     */
+    public StageGraph(final String title, final int parallelism, final PrintStream log)
+    {
+        this.title = title;
+        this.parallelism = Math.max(1, parallelism);
+        this.log = log;
+    }
+
+    /**
+     * Adds a stage. The stages it depends on must have been added before.
+     *
+     * @param name
+     *            the unique name of the stage
+     * @param stage
+     *            the work to do
+     * @param dependencies
+     *            the names of the stages that must be done before this stage can start
+     */
+    public void add(final String name, final Stage stage, final String... dependencies)
+    {
+        if (nodes.containsKey(name))
+        {
+            throw new IllegalArgumentException("Duplicate stage: " + name);
+        }
+
+        final List<Node> dependencyNodes = new ArrayList<>();
+        for (final String dependency : dependencies)
+        {
+            final Node node = nodes.get(dependency);
+            if (node == null)
+            {
+                throw new IllegalArgumentException("Unknown stage '" + dependency + "' required by stage '" + name + "'");
+            }
+            dependencyNodes.add(node);
+        }
+
+        nodes.put(name, new Node(name, stage, dependencyNodes));
+    }
+
+    /**
+     * Returns whether the given stage has been completed successfully.
+     */
+    public boolean isDone(final String name)
+    {
+        final Node node = nodes.get(name);
+        return node != null && node.state == State.DONE;
+    }
+
+    /**
+     * Runs all stages.
+     *
+     * @throws Exception
+     *             the failure of the first stage that failed
+     */
+    public void execute() throws Exception
+    {
+        final long start = System.currentTimeMillis();
+
+        final CompletionService<Node> completionService = new ExecutorCompletionService<>(EXECUTOR);
+        final List<Node> running = new ArrayList<>();
+        Exception failure = null;
+        try
+        {
+            while (true)
+            {
+                for (final Node node : nodes.values())
+                {
+                    if (node.state != State.PENDING)
+                    {
+                        continue;
+                    }
+
+                    if (failure != null)
+                    {
+                        node.state = State.SKIPPED;
+                    }
+                    else if (running.size() < parallelism && areDone(node.dependencies))
+                    {
+                        node.state = State.RUNNING;
+                        node.future = completionService.submit(node);
+                        running.add(node);
+                    }
+                }
+
+                if (running.isEmpty())
+                {
+                    break;
+                }
+
+                final Node node = completionService.take().get();
+                running.remove(node);
+
+                if (node.error == null)
+                {
+                    node.state = State.DONE;
+                    log.println("Stage '" + node.name + "' finished in " + node.duration + " ms");
+                }
+                else
+                {
+                    node.state = State.FAILED;
+                    log.println("Stage '" + node.name + "' failed after " + node.duration + " ms");
+                    if (failure == null)
+                    {
+                        failure = node.error;
+                    }
+                }
+            }
+        }
+        catch (final ExecutionException e)
+        {
+            // stages catch their exceptions themselves, so this is an error
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            // only if we were interrupted ourselves
+            stop(running);
+        }
+
+        printTimings(System.currentTimeMillis() - start);
+
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Interrupts the given stages and waits for them to stop, so the caller does not clean up after stages still running.
+     */
+    private void stop(final List<Node> running)
+    {
+        for (final Node node : running)
+        {
+            node.future.cancel(true);
+        }
+
+        final long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+        for (final Node node : running)
+        {
+            if (node.claimed.compareAndSet(false, true))
+            {
+                // never started and will not start anymore
+                continue;
+            }
+
+            try
+            {
+                final long timeout = deadline - System.currentTimeMillis();
+                if (timeout <= 0 || !node.finished.await(timeout, TimeUnit.MILLISECONDS))
+                {
+                    log.println("Stage '" + node.name + "' did not stop within " + STOP_TIMEOUT + " ms");
+                }
+            }
+            catch (final InterruptedException e)
+            {
+                // stop waiting, but keep the interruption for the caller
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static boolean areDone(final List<Node> nodes)
+    {
+        for (final Node node : nodes)
+        {
+            if (node.state != State.DONE)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void printTimings(final long total)
+    {
+        int width = 0;
+        for (final String name : nodes.keySet())
+        {
+            width = Math.max(width, name.length());
+        }
+
+        log.println();
+        log.println(title + " timings:");
+        for (final Node node : nodes.values())
+        {
+            final String duration = node.state == State.DONE || node.state == State.FAILED ? node.duration + " ms" : "-";
+            log.println("  " + StringUtils.rightPad(node.name, width) + "  " + StringUtils.leftPad(duration, 10) + "  " +
+                        node.state.name().toLowerCase());
+        }
+        log.println("  " + StringUtils.rightPad("total", width) + "  " + StringUtils.leftPad(total + " ms", 10));
+        log.println();
+    }
+
+    /**
+     * Creates daemon threads with a descriptive name.
+     */
+    private static final class StageThreadFactory implements ThreadFactory
+    {
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r)
+        {
+            final Thread thread = new Thread(r, "XLT stage " + COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
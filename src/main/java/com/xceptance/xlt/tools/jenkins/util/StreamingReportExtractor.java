@@ -0,0 +1,894 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Extracts the values of a fixed set of location paths from an XML document in a single StAX pass, i.e. without building a
+ * DOM tree first.
+ * <p>
+ * Only a small subset of XPath is supported: absolute location paths made of child steps with plain element names. Each step
+ * may be filtered by predicates that compare an attribute or a child element with a string literal, for example
+ * <code>/testreport/requests/request[name='Homepage']/mean</code>. Use {@link #isSupported(String)} to find out whether an
+ * expression can be streamed at all.
+ */
+public final class StreamingReportExtractor
+{
+    private final List<PathSpec> paths = new ArrayList<>();
+
+    /**
+     * Checks whether the given XPath expression can be evaluated by this extractor.
+     *
+     * @param xpath
+     *            the XPath expression
+     * @return <code>true</code> if the expression is supported, <code>false</code> otherwise
+     */
+    public static boolean isSupported(final String xpath)
+    {
+        return parse(xpath) != null;
+    }
+
+    /**
+     * Registers the given XPath expression whose first matching node should be extracted.
+     *
+     * @param xpath
+     *            the XPath expression
+     * @return <code>true</code> if the expression is supported and was registered, <code>false</code> otherwise
+     */
+    public boolean addValue(final String xpath)
+    {
+        final Step[] steps = parse(xpath);
+        if (steps == null)
+        {
+            return false;
+        }
+        paths.add(new PathSpec(xpath, steps, null));
+        return true;
+    }
+
+    /**
+     * Registers the given XPath expression whose matching nodes should be extracted as records. For each matching node, the
+     * string-values of the first child elements with the given names are collected.
+     *
+     * @param xpath
+     *            the XPath expression
+     * @param fields
+     *            the names of the child elements to collect
+     * @return <code>true</code> if the expression is supported and was registered, <code>false</code> otherwise
+     */
+    public boolean addRecords(final String xpath, final String... fields)
+    {
+        final Step[] steps = parse(xpath);
+        if (steps == null)
+        {
+            return false;
+        }
+        paths.add(new PathSpec(xpath, steps, fields));
+        return true;
+    }
+
+    /**
+     * Reads the given XML stream and extracts the values of all registered paths.
+     *
+     * @param in
+     *            the XML input stream (will not be closed)
+     * @return the extraction result
+     * @throws XMLStreamException
+     *             thrown if the input could not be read or is not well-formed
+     */
+    public Extraction extract(final InputStream in) throws XMLStreamException
+    {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+
+        final XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try
+        {
+            return new Pass(paths).run(reader);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the number value of the given string as defined by the XPath function <code>number()</code>.
+     *
+     * @param s
+     *            the string
+     * @return the number value, or {@link Double#NaN} if the string does not denote a number
+     */
+    public static double toNumber(final String s)
+    {
+        if (s != null)
+        {
+            final String t = s.trim();
+            final int len = t.length();
+
+            int i = t.startsWith("-") ? 1 : 0;
+            boolean digits = false, dot = false;
+            for (; i < len; i++)
+            {
+                final char c = t.charAt(i);
+                if (c >= '0' && c <= '9')
+                {
+                    digits = true;
+                }
+                else if (c == '.' && !dot)
+                {
+                    dot = true;
+                }
+                else
+                {
+                    return Double.NaN;
+                }
+            }
+
+            if (digits)
+            {
+                return Double.parseDouble(t);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /*
+     * Path parsing.
+     */
+
+    private static Step[] parse(final String xpath)
+    {
+        if (xpath == null)
+        {
+            return null;
+        }
+
+        final String s = xpath.trim();
+        final List<Step> steps = new ArrayList<>();
+        int pos = 0;
+        while (pos < s.length())
+        {
+            if (s.charAt(pos) != '/')
+            {
+                return null;
+            }
+            pos++;
+
+            final int nameEnd = scanName(s, pos);
+            if (nameEnd == pos)
+            {
+                return null;
+            }
+            final Step step = new Step(s.substring(pos, nameEnd));
+            pos = nameEnd;
+
+            while (pos < s.length() && s.charAt(pos) == '[')
+            {
+                pos = parsePredicate(s, pos + 1, step);
+                if (pos < 0)
+                {
+                    return null;
+                }
+            }
+            steps.add(step);
+        }
+
+        return steps.isEmpty() ? null : steps.toArray(new Step[steps.size()]);
+    }
+
+    private static int parsePredicate(final String s, int pos, final Step step)
+    {
+        pos = skipSpace(s, pos);
+
+        final boolean isAttribute = pos < s.length() && s.charAt(pos) == '@';
+        if (isAttribute)
+        {
+            pos++;
+        }
+
+        final int nameEnd = scanName(s, pos);
+        if (nameEnd == pos)
+        {
+            return -1;
+        }
+        final String name = s.substring(pos, nameEnd);
+
+        pos = skipSpace(s, nameEnd);
+        if (pos >= s.length() || s.charAt(pos) != '=')
+        {
+            return -1;
+        }
+        pos = skipSpace(s, pos + 1);
+        if (pos >= s.length())
+        {
+            return -1;
+        }
+
+        final char quote = s.charAt(pos);
+        if (quote != '\'' && quote != '"')
+        {
+            return -1;
+        }
+        final int literalEnd = s.indexOf(quote, pos + 1);
+        if (literalEnd < 0)
+        {
+            return -1;
+        }
+        final String literal = s.substring(pos + 1, literalEnd);
+
+        pos = skipSpace(s, literalEnd + 1);
+        if (pos >= s.length() || s.charAt(pos) != ']')
+        {
+            return -1;
+        }
+
+        if (isAttribute)
+        {
+            step.attributePredicates.put(name, literal);
+        }
+        else
+        {
+            step.childNames.add(name);
+            step.childValues.add(literal);
+        }
+        return pos + 1;
+    }
+
+    private static int scanName(final String s, final int start)
+    {
+        int pos = start;
+        while (pos < s.length())
+        {
+            final char c = s.charAt(pos);
+            final boolean ok = Character.isLetter(c) || c == '_' ||
+                               (pos > start && (Character.isDigit(c) || c == '-' || c == '.'));
+            if (!ok)
+            {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipSpace(final String s, int pos)
+    {
+        while (pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+        {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static final class Step
+    {
+        private final String name;
+
+        private final Map<String, String> attributePredicates = new HashMap<>();
+
+        private final List<String> childNames = new ArrayList<>();
+
+        private final List<String> childValues = new ArrayList<>();
+
+        private Step(final String name)
+        {
+            this.name = name;
+        }
+
+        private boolean hasChildPredicates()
+        {
+            return !childNames.isEmpty();
+        }
+    }
+
+    private static final class PathSpec
+    {
+        private final String xpath;
+
+        private final Step[] steps;
+
+        private final String[] fields;
+
+        private PathSpec(final String xpath, final Step[] steps, final String[] fields)
+        {
+            this.xpath = xpath;
+            this.steps = steps;
+            this.fields = fields;
+        }
+
+        private boolean isRecord()
+        {
+            return fields != null;
+        }
+
+        /**
+         * Returns the index of the last step before the given one that filters by child elements, or -1 if there is none.
+         */
+        private int previousPredicateStep(final int stepIndex)
+        {
+            for (int i = stepIndex - 1; i >= 0; i--)
+            {
+                if (steps[i].hasChildPredicates())
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /*
+     * Streaming.
+     */
+
+    /**
+     * A node that matched a registered path but still has to pass the child predicates of some ancestor.
+     */
+    private static final class Candidate
+    {
+        private final int path;
+
+        private final ExtractedNode node;
+
+        private final String[] record;
+
+        private Candidate(final int path, final ExtractedNode node, final String[] record)
+        {
+            this.path = path;
+            this.node = node;
+            this.record = record;
+        }
+    }
+
+    private static final class Frame
+    {
+        private final String name;
+
+        /** Indexes of the paths whose steps match this element so far. */
+        private final int[] alive;
+
+        private final Map<String, String> attributes;
+
+        private StringBuilder text;
+
+        private boolean hasChildElements;
+
+        /** Per alive path: which child predicates of this step were satisfied. */
+        private boolean[][] satisfied;
+
+        /** Per alive path: collected field values if this element is a record. */
+        private String[][] recordFields;
+
+        private List<Candidate> pending;
+
+        /** The alive paths indexed by the name of their next step, built on demand. */
+        private Map<String, int[]> nextSteps;
+
+        /** The names of the child elements whose text is needed by a predicate or a record field, built on demand. */
+        private Set<String> referencedChildren;
+
+        private Frame(final String name, final int[] alive, final Map<String, String> attributes)
+        {
+            this.name = name;
+            this.alive = alive;
+            this.attributes = attributes;
+        }
+
+        private Map<String, int[]> nextSteps(final PathSpec[] specs, final int childDepth)
+        {
+            if (nextSteps == null)
+            {
+                final Map<String, List<Integer>> map = new HashMap<>();
+                for (final int p : alive)
+                {
+                    final Step[] steps = specs[p].steps;
+                    if (childDepth <= steps.length)
+                    {
+                        List<Integer> list = map.get(steps[childDepth - 1].name);
+                        if (list == null)
+                        {
+                            list = new ArrayList<>();
+                            map.put(steps[childDepth - 1].name, list);
+                        }
+                        list.add(p);
+                    }
+                }
+
+                nextSteps = new HashMap<>();
+                for (final Map.Entry<String, List<Integer>> e : map.entrySet())
+                {
+                    final int[] paths = new int[e.getValue().size()];
+                    for (int i = 0; i < paths.length; i++)
+                    {
+                        paths[i] = e.getValue().get(i);
+                    }
+                    nextSteps.put(e.getKey(), paths);
+                }
+            }
+            return nextSteps;
+        }
+
+        private Set<String> referencedChildren(final PathSpec[] specs, final int depth)
+        {
+            if (referencedChildren == null)
+            {
+                referencedChildren = new HashSet<>();
+                for (int i = 0; i < alive.length; i++)
+                {
+                    final PathSpec spec = specs[alive[i]];
+                    if (satisfied != null && satisfied[i] != null)
+                    {
+                        referencedChildren.addAll(spec.steps[depth - 1].childNames);
+                    }
+                    if (recordFields != null && recordFields[i] != null)
+                    {
+                        referencedChildren.addAll(Arrays.asList(spec.fields));
+                    }
+                }
+            }
+            return referencedChildren;
+        }
+    }
+
+    private static final class Pass
+    {
+        private static final int[] NONE = new int[0];
+
+        private final PathSpec[] specs;
+
+        private final ExtractedNode[] firstNodes;
+
+        private final boolean[] ambiguous;
+
+        private final List<List<String[]>> records;
+
+        private final List<Frame> stack = new ArrayList<>();
+
+        private final int[] scratch;
+
+        private Pass(final List<PathSpec> paths)
+        {
+            specs = paths.toArray(new PathSpec[paths.size()]);
+            scratch = new int[specs.length];
+            firstNodes = new ExtractedNode[specs.length];
+            ambiguous = new boolean[specs.length];
+            records = new ArrayList<>(specs.length);
+            for (int i = 0; i < specs.length; i++)
+            {
+                records.add(specs[i].isRecord() ? new ArrayList<String[]>() : null);
+            }
+        }
+
+        private Extraction run(final XMLStreamReader reader) throws XMLStreamException
+        {
+            while (reader.hasNext())
+            {
+                switch (reader.next())
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+                        startElement(reader);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        endElement();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        characters(reader);
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            final Map<String, ExtractedNode> values = new HashMap<>();
+            final Map<String, List<String[]>> recordMap = new HashMap<>();
+            final Map<String, Boolean> ambiguousMap = new HashMap<>();
+            for (int i = 0; i < specs.length; i++)
+            {
+                if (specs[i].isRecord())
+                {
+                    recordMap.put(specs[i].xpath, Collections.unmodifiableList(records.get(i)));
+                }
+                else
+                {
+                    values.put(specs[i].xpath, firstNodes[i]);
+                    ambiguousMap.put(specs[i].xpath, ambiguous[i]);
+                }
+            }
+            return new Extraction(values, ambiguousMap, recordMap);
+        }
+
+        private void startElement(final XMLStreamReader reader)
+        {
+            final String name = reader.getLocalName();
+            final int depth = stack.size() + 1;
+            final Frame parent = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+
+            if (parent != null)
+            {
+                parent.hasChildElements = true;
+            }
+
+            // determine the paths that still match at this depth
+            int[] alive = NONE;
+            Map<String, String> attributes = null;
+            final int[] candidates = parent == null ? rootCandidates(name) : parent.nextSteps(specs, depth).get(name);
+            if (candidates != null)
+            {
+                attributes = readAttributes(reader);
+
+                int count = 0;
+                for (final int p : candidates)
+                {
+                    if (attributesMatch(specs[p].steps[depth - 1], attributes))
+                    {
+                        scratch[count++] = p;
+                    }
+                }
+                alive = new int[count];
+                System.arraycopy(scratch, 0, alive, 0, count);
+            }
+
+            final Frame frame = new Frame(name, alive, attributes);
+            for (int i = 0; i < alive.length; i++)
+            {
+                final PathSpec spec = specs[alive[i]];
+                if (depth == spec.steps.length)
+                {
+                    if (spec.isRecord())
+                    {
+                        if (frame.recordFields == null)
+                        {
+                            frame.recordFields = new String[alive.length][];
+                        }
+                        frame.recordFields[i] = new String[spec.fields.length];
+                    }
+                    else if (!ambiguous[alive[i]])
+                    {
+                        frame.text = new StringBuilder();
+                    }
+                }
+                if (spec.steps[depth - 1].hasChildPredicates())
+                {
+                    if (frame.satisfied == null)
+                    {
+                        frame.satisfied = new boolean[alive.length][];
+                    }
+                    frame.satisfied[i] = new boolean[spec.steps[depth - 1].childNames.size()];
+                }
+            }
+
+            // capture the text of this element if the parent needs it for a predicate or a record field
+            if (frame.text == null && parent != null && parent.referencedChildren(specs, depth - 1).contains(name))
+            {
+                frame.text = new StringBuilder();
+            }
+
+            stack.add(frame);
+        }
+
+        private int[] rootCandidates(final String name)
+        {
+            int count = 0;
+            for (int p = 0; p < specs.length; p++)
+            {
+                if (specs[p].steps[0].name.equals(name))
+                {
+                    scratch[count++] = p;
+                }
+            }
+            final int[] candidates = new int[count];
+            System.arraycopy(scratch, 0, candidates, 0, count);
+            return candidates;
+        }
+
+        private void characters(final XMLStreamReader reader)
+        {
+            for (int i = stack.size() - 1; i >= 0; i--)
+            {
+                final StringBuilder text = stack.get(i).text;
+                if (text != null)
+                {
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            }
+        }
+
+        private void endElement()
+        {
+            final int depth = stack.size();
+            final Frame frame = stack.remove(depth - 1);
+            final Frame parent = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+
+            // let the parent evaluate its predicates and record fields
+            if (parent != null && frame.text != null)
+            {
+                final String value = frame.text.toString();
+                for (int i = 0; i < parent.alive.length; i++)
+                {
+                    final PathSpec spec = specs[parent.alive[i]];
+                    if (parent.satisfied != null && parent.satisfied[i] != null)
+                    {
+                        final Step step = spec.steps[depth - 2];
+                        for (int j = 0; j < step.childNames.size(); j++)
+                        {
+                            if (step.childNames.get(j).equals(frame.name) && step.childValues.get(j).equals(value))
+                            {
+                                parent.satisfied[i][j] = true;
+                            }
+                        }
+                    }
+                    if (parent.recordFields != null && parent.recordFields[i] != null)
+                    {
+                        final int field = indexOf(spec.fields, frame.name);
+                        if (field >= 0 && parent.recordFields[i][field] == null)
+                        {
+                            parent.recordFields[i][field] = value;
+                        }
+                    }
+                }
+            }
+
+            final boolean[] passed = new boolean[frame.alive.length];
+            for (int i = 0; i < frame.alive.length; i++)
+            {
+                final int p = frame.alive[i];
+                final PathSpec spec = specs[p];
+                passed[i] = frame.satisfied == null || frame.satisfied[i] == null || allTrue(frame.satisfied[i]);
+
+                // this element is a match itself
+                if (passed[i] && depth == spec.steps.length)
+                {
+                    final Candidate c;
+                    if (spec.isRecord())
+                    {
+                        c = new Candidate(p, null, frame.recordFields[i]);
+                    }
+                    else
+                    {
+                        final String text = frame.text == null ? "" : frame.text.toString();
+                        c = new Candidate(p, new ExtractedNode(text, frame.attributes, !frame.hasChildElements), null);
+                    }
+                    route(c, depth - 1);
+                }
+            }
+
+            // matches of descendant elements that waited for the predicates of this element (alive is sorted)
+            if (frame.pending != null)
+            {
+                for (final Candidate c : frame.pending)
+                {
+                    final int i = Arrays.binarySearch(frame.alive, c.path);
+                    if (i >= 0 && passed[i])
+                    {
+                        route(c, depth - 1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Hands the given candidate over to the nearest ancestor whose child predicates are still unresolved, or commits it
+         * if there is none.
+         */
+        private void route(final Candidate c, final int stepIndex)
+        {
+            final int predicateStep = specs[c.path].previousPredicateStep(stepIndex);
+            if (predicateStep < 0)
+            {
+                commit(c);
+            }
+            else
+            {
+                final Frame f = stack.get(predicateStep);
+                if (f.pending == null)
+                {
+                    f.pending = new ArrayList<>();
+                }
+                f.pending.add(c);
+            }
+        }
+
+        private void commit(final Candidate c)
+        {
+            if (specs[c.path].isRecord())
+            {
+                records.get(c.path).add(c.record);
+            }
+            else if (firstNodes[c.path] == null)
+            {
+                firstNodes[c.path] = c.node;
+            }
+            else
+            {
+                ambiguous[c.path] = true;
+            }
+        }
+
+        private static Map<String, String> readAttributes(final XMLStreamReader reader)
+        {
+            final int count = reader.getAttributeCount();
+            if (count == 0)
+            {
+                return Collections.emptyMap();
+            }
+
+            final Map<String, String> attributes = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++)
+            {
+                attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+            return attributes;
+        }
+
+        private static boolean attributesMatch(final Step step, final Map<String, String> attributes)
+        {
+            for (final Map.Entry<String, String> e : step.attributePredicates.entrySet())
+            {
+                if (!e.getValue().equals(attributes.get(e.getKey())))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean allTrue(final boolean[] flags)
+        {
+            for (final boolean b : flags)
+            {
+                if (!b)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int indexOf(final String[] array, final String s)
+        {
+            for (int i = 0; i < array.length; i++)
+            {
+                if (array[i].equals(s))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The first node that matched a registered path.
+     */
+    public static final class ExtractedNode
+    {
+        private final String text;
+
+        private final Map<String, String> attributes;
+
+        private final boolean leaf;
+
+        private ExtractedNode(final String text, final Map<String, String> attributes, final boolean leaf)
+        {
+            this.text = text;
+            this.attributes = attributes != null ? attributes : Collections.<String, String>emptyMap();
+            this.leaf = leaf;
+        }
+
+        /**
+         * Returns the string-value of the node, i.e. the concatenation of all its descendant text nodes.
+         */
+        public String getText()
+        {
+            return text;
+        }
+
+        public Map<String, String> getAttributes()
+        {
+            return Collections.unmodifiableMap(attributes);
+        }
+
+        /**
+         * Returns whether the node has no child elements.
+         */
+        public boolean isLeaf()
+        {
+            return leaf;
+        }
+    }
+
+    /**
+     * The result of a streaming pass.
+     */
+    public static final class Extraction
+    {
+        private final Map<String, ExtractedNode> values;
+
+        private final Map<String, Boolean> ambiguous;
+
+        private final Map<String, List<String[]>> records;
+
+        private Extraction(final Map<String, ExtractedNode> values, final Map<String, Boolean> ambiguous,
+                           final Map<String, List<String[]>> records)
+        {
+            this.values = values;
+            this.ambiguous = ambiguous;
+            this.records = records;
+        }
+
+        /**
+         * Returns whether a value was registered for the given XPath expression.
+         */
+        public boolean hasValue(final String xpath)
+        {
+            return values.containsKey(xpath);
+        }
+
+        /**
+         * Returns the first node that matched the given XPath expression, or <code>null</code> if no node matched.
+         */
+        public ExtractedNode getValue(final String xpath)
+        {
+            return values.get(xpath);
+        }
+
+        /**
+         * Returns whether more than one node matched the given XPath expression.
+         */
+        public boolean isAmbiguous(final String xpath)
+        {
+            return Boolean.TRUE.equals(ambiguous.get(xpath));
+        }
+
+        /**
+         * Returns whether records were registered for the given XPath expression.
+         */
+        public boolean hasRecords(final String xpath)
+        {
+            return records.containsKey(xpath);
+        }
+
+        /**
+         * Returns the records collected for the given XPath expression in document order. Fields whose child element was
+         * missing are <code>null</code>.
+         */
+        public List<String[]> getRecords(final String xpath)
+        {
+            final List<String[]> list = records.get(xpath);
+            return list != null ? list : Collections.<String[]>emptyList();
+        }
+    }
+}
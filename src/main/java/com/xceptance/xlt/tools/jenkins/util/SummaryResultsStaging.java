@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
+
+/**
+ * The input folder of the summary report, which holds the timer files of the last builds of a load test step.
+ * <p>
+ * The folder is kept between builds. Updating it only adds the files of builds that entered the window and removes those of
+ * builds that left it. Files are hard-linked to the archived results where possible, so staging a build costs hardly any
+ * I/O. Regular timer files get the build number appended to their name. Other CSV files (e.g. WebDriver timers) keep their
+ * name, so for each of them the file of the oldest build in the window wins, just like when the folder was rebuilt from
+ * scratch.
+ * <p>
+ * The results of a build may also be stored as {@link ResultsContainer}, in which case the needed entries are copied from
+ * the container.
+ * <p>
+ * What has been staged is recorded in a manifest next to the folder. The manifest is removed while the folder is being
+ * updated, so an interrupted update causes the folder to be rebuilt next time.
+ */
+public final class SummaryResultsStaging
+{
+    private static final String CONFIG_FOLDER_NAME = "config";
+
+    private static final String TIMER_FILE_PREFIX = "timers.csv";
+
+    private static final String BUILDS_KEY = "builds";
+
+    private static final String OWNER_KEY_PREFIX = "owner.";
+
+    private final File dir;
+
+    private final File manifestFile;
+
+    public SummaryResultsStaging(final File dir)
+    {
+        this.dir = dir;
+        this.manifestFile = new File(dir.getParentFile(), dir.getName() + ".staging");
+    }
+
+    /**
+     * Brings the folder in line with the given builds.
+     *
+     * @param resultsFolders
+     *            the archived results folder or container of each build of the window, keyed by build number
+     * @return the number of builds whose files were added
+     * @throws IOException
+     *             thrown if the folder could not be updated
+     */
+    public int update(final Map<Integer, File> resultsFolders) throws IOException
+    {
+        final Set<Integer> staged = new TreeSet<>();
+        final Map<String, Integer> owners = new HashMap<>();
+        if (!readManifest(staged, owners))
+        {
+            FileUtils.deleteDirectory(dir);
+        }
+        if (!manifestFile.delete() && manifestFile.exists())
+        {
+            throw new IOException("Failed to delete manifest: " + manifestFile);
+        }
+        FileUtils.forceMkdir(dir);
+
+        // the config always comes from the most recent build
+        final File stagedConfigFolder = new File(dir, CONFIG_FOLDER_NAME);
+        FileUtils.deleteDirectory(stagedConfigFolder);
+        if (!resultsFolders.isEmpty())
+        {
+            copyConfig(resultsFolders.get(Collections.max(resultsFolders.keySet())), stagedConfigFolder);
+        }
+
+        // drop the builds that left the window
+        final Set<Integer> removed = new HashSet<>(staged);
+        removed.removeAll(resultsFolders.keySet());
+        if (!removed.isEmpty())
+        {
+            removeTimerFiles(dir, removed);
+            staged.removeAll(removed);
+        }
+
+        // add the builds that entered the window
+        final List<Integer> added = new ArrayList<>();
+        for (final Map.Entry<Integer, File> e : resultsFolders.entrySet())
+        {
+            if (!staged.contains(e.getKey()))
+            {
+                if (ResultsContainer.isContainer(e.getValue()))
+                {
+                    addEntries(e.getValue(), e.getKey(), owners);
+                }
+                else
+                {
+                    addFiles(e.getValue(), dir, "", e.getKey(), owners);
+                }
+                added.add(e.getKey());
+            }
+        }
+        staged.addAll(added);
+
+        // other files whose owner left the window are taken from the oldest remaining build that has them
+        for (final String path : new ArrayList<>(owners.keySet()))
+        {
+            if (!staged.contains(owners.get(path)))
+            {
+                owners.remove(path);
+                final File target = new File(dir, path);
+                FileUtils.deleteQuietly(target);
+
+                for (final Integer b : staged)
+                {
+                    if (copyFile(resultsFolders.get(b), path, target))
+                    {
+                        owners.put(path, b);
+                        break;
+                    }
+                }
+            }
+        }
+
+        writeManifest(staged, owners);
+        return added.size();
+    }
+
+    private void addFiles(final File srcDir, final File targetDir, final String path, final int buildNumber,
+                          final Map<String, Integer> owners)
+        throws IOException
+    {
+        final File[] files = srcDir.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        for (final File file : files)
+        {
+            final String filePath = path + file.getName();
+            if (file.isDirectory())
+            {
+                if (!(path.isEmpty() && file.getName().equals(CONFIG_FOLDER_NAME)))
+                {
+                    addFiles(file, new File(targetDir, file.getName()), filePath + "/", buildNumber, owners);
+                }
+            }
+            else if (file.getName().startsWith(TIMER_FILE_PREFIX))
+            {
+                // regular timer files
+                Helper.linkOrCopyFile(file, new File(targetDir, file.getName() + "." + buildNumber));
+            }
+            else if (file.getName().endsWith(".csv"))
+            {
+                // WebDriver timer files
+                final Integer owner = owners.get(filePath);
+                if (owner == null || buildNumber < owner)
+                {
+                    Helper.linkOrCopyFile(file, new File(targetDir, file.getName()));
+                    owners.put(filePath, buildNumber);
+                }
+            }
+        }
+    }
+
+    private void addEntries(final File container, final int buildNumber, final Map<String, Integer> owners) throws IOException
+    {
+        try (final ZipFile zip = new ZipFile(container))
+        {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                final ZipEntry entry = entries.nextElement();
+                final String name = entry.getName();
+                if (entry.isDirectory() || name.startsWith(CONFIG_FOLDER_NAME + "/") || !isSafeEntryName(name))
+                {
+                    continue;
+                }
+
+                final String fileName = StringUtils.substringAfterLast("/" + name, "/");
+                if (fileName.startsWith(TIMER_FILE_PREFIX))
+                {
+                    // regular timer files
+                    ResultsContainer.copyEntry(zip, name, new File(dir, name + "." + buildNumber));
+                }
+                else if (fileName.endsWith(".csv"))
+                {
+                    // WebDriver timer files
+                    final Integer owner = owners.get(name);
+                    if (owner == null || buildNumber < owner)
+                    {
+                        ResultsContainer.copyEntry(zip, name, new File(dir, name));
+                        owners.put(name, buildNumber);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the file with the given path from the given results folder or container.
+     *
+     * @return whether there was such a file
+     */
+    private static boolean copyFile(final File results, final String path, final File target) throws IOException
+    {
+        if (ResultsContainer.isContainer(results))
+        {
+            try (final ZipFile zip = new ZipFile(results))
+            {
+                return ResultsContainer.copyEntry(zip, path, target);
+            }
+        }
+
+        final File source = new File(results, path);
+        if (source.isFile())
+        {
+            Helper.linkOrCopyFile(source, target);
+            return true;
+        }
+        return false;
+    }
+
+    private static void copyConfig(final File results, final File targetConfigFolder) throws IOException
+    {
+        if (ResultsContainer.isContainer(results))
+        {
+            try (final ZipFile zip = new ZipFile(results))
+            {
+                final Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements())
+                {
+                    final String name = entries.nextElement().getName();
+                    if (name.startsWith(CONFIG_FOLDER_NAME + "/") && isSafeEntryName(name))
+                    {
+                        ResultsContainer.copyEntry(zip, name,
+                                                   new File(targetConfigFolder, name.substring(CONFIG_FOLDER_NAME.length() + 1)));
+                    }
+                }
+            }
+        }
+        else
+        {
+            final File configFolder = new File(results, CONFIG_FOLDER_NAME);
+            if (configFolder.isDirectory())
+            {
+                FileUtils.copyDirectory(configFolder, targetConfigFolder);
+            }
+        }
+    }
+
+    private static boolean isSafeEntryName(final String name)
+    {
+        return !name.startsWith("/") && !name.contains("..") && !name.contains("\\");
+    }
+
+    private static void removeTimerFiles(final File dir, final Set<Integer> buildNumbers) throws IOException
+    {
+        final File[] files = dir.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        for (final File file : files)
+        {
+            if (file.isDirectory())
+            {
+                removeTimerFiles(file, buildNumbers);
+            }
+            else if (file.getName().startsWith(TIMER_FILE_PREFIX))
+            {
+                final String suffix = StringUtils.substringAfterLast(file.getName(), ".");
+                if (StringUtils.isNumeric(suffix) && buildNumbers.contains(Integer.valueOf(suffix)))
+                {
+                    FileUtils.forceDelete(file);
+                }
+            }
+        }
+    }
+
+    private boolean readManifest(final Set<Integer> staged, final Map<String, Integer> owners)
+    {
+        if (!manifestFile.isFile() || !dir.isDirectory())
+        {
+            return false;
+        }
+
+        final Properties props = new Properties();
+        try (final InputStream in = new FileInputStream(manifestFile))
+        {
+            props.load(in);
+
+            for (final String b : StringUtils.split(props.getProperty(BUILDS_KEY, ""), ','))
+            {
+                staged.add(Integer.valueOf(b));
+            }
+            for (final String key : props.stringPropertyNames())
+            {
+                if (key.startsWith(OWNER_KEY_PREFIX))
+                {
+                    owners.put(key.substring(OWNER_KEY_PREFIX.length()), Integer.valueOf(props.getProperty(key)));
+                }
+            }
+            return true;
+        }
+        catch (final IOException | NumberFormatException e)
+        {
+            LOGGER.warn("Failed to read staging manifest, summary results will be staged again: " + manifestFile, e);
+            staged.clear();
+            owners.clear();
+            return false;
+        }
+    }
+
+    private void writeManifest(final Set<Integer> staged, final Map<String, Integer> owners) throws IOException
+    {
+        final Properties props = new Properties();
+        props.setProperty(BUILDS_KEY, StringUtils.join(staged, ','));
+        for (final Map.Entry<String, Integer> e : owners.entrySet())
+        {
+            props.setProperty(OWNER_KEY_PREFIX + e.getKey(), e.getValue().toString());
+        }
+
+        try (final OutputStream out = new FileOutputStream(manifestFile))
+        {
+            props.store(out, null);
+        }
+    }
+}
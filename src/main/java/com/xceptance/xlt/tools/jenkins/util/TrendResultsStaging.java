@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+
+import org.apache.commons.io.FileUtils;
+
+import com.xceptance.xlt.tools.jenkins.logging.LOGGER;
+
+/**
+ * The input folder of the trend report, which holds one sub folder per build with the XML files of the build's report.
+ * <p>
+ * The folder is kept between builds and serves as the trend data set of the job. Updating it only adds the builds that
+ * entered the window and removes those that left it. Of the test report, only the data the trend report needs is extracted
+ * once per build, the sections with error and event details are left out. Other XML files are linked to the archived report
+ * (hard links where possible, symbolic links otherwise) and copied only as last resort. A build folder is filled under a
+ * temporary name and renamed when complete, so any build folder found is complete.
+ */
+public final class TrendResultsStaging
+{
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final String TEST_REPORT_FILE = "testreport.xml";
+
+    /**
+     * The sections of the test report that are not used by the trend report.
+     */
+    private static final Set<String> UNUSED_SECTIONS = new HashSet<>(Arrays.asList("errors", "events"));
+
+    private final File dir;
+
+    public TrendResultsStaging(final File dir)
+    {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the folder of the given build.
+     */
+    public File getBuildFolder(final int buildNumber)
+    {
+        return new File(dir, Integer.toString(buildNumber));
+    }
+
+    /**
+     * Brings the folder in line with the given builds.
+     *
+     * @param reportFolders
+     *            the archived report folder of each build of the window, keyed by build number
+     * @return the number of builds that were added
+     * @throws IOException
+     *             thrown if the folder could not be updated
+     */
+    public int update(final Map<Integer, File> reportFolders) throws IOException
+    {
+        FileUtils.forceMkdir(dir);
+
+        // drop the builds that left the window as well as leftovers of interrupted updates
+        final File[] children = dir.listFiles();
+        if (children != null)
+        {
+            for (final File child : children)
+            {
+                final Integer buildNumber = toBuildNumber(child.getName());
+                if (buildNumber == null || !reportFolders.containsKey(buildNumber))
+                {
+                    FileUtils.forceDelete(child);
+                }
+            }
+        }
+
+        // add the builds that entered the window
+        int added = 0;
+        for (final Map.Entry<Integer, File> e : reportFolders.entrySet())
+        {
+            final File buildFolder = getBuildFolder(e.getKey());
+            if (!buildFolder.isDirectory() && stage(e.getValue(), buildFolder))
+            {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private static boolean stage(final File reportFolder, final File buildFolder) throws IOException
+    {
+        final File tempFolder = new File(buildFolder.getParentFile(), buildFolder.getName() + TEMP_SUFFIX);
+
+        boolean staged = false;
+        final File[] files = reportFolder.listFiles();
+        if (files != null)
+        {
+            for (final File file : files)
+            {
+                if (file.isFile() && file.getName().equals(TEST_REPORT_FILE))
+                {
+                    extractTrendData(file, new File(tempFolder, file.getName()));
+                    staged = true;
+                }
+                else if (file.isFile() && file.getName().endsWith(".xml"))
+                {
+                    Helper.linkOrCopyFile(file, new File(tempFolder, file.getName()), true);
+                    staged = true;
+                }
+            }
+        }
+
+        // builds without XML files are not staged
+        if (staged)
+        {
+            FileUtils.moveDirectory(tempFolder, buildFolder);
+        }
+        return staged;
+    }
+
+    /**
+     * Copies the given test report without the sections not needed by the trend report.
+     */
+    private static void extractTrendData(final File source, final File target) throws IOException
+    {
+        FileUtils.forceMkdir(target.getParentFile());
+
+        final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+        try (final InputStream in = new BufferedInputStream(new FileInputStream(source));
+             final OutputStream out = new BufferedOutputStream(new FileOutputStream(target)))
+        {
+            final XMLEventReader reader = inputFactory.createXMLEventReader(in);
+            final XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(out, "UTF-8");
+            try
+            {
+                int depth = 0;
+                int skipDepth = 0;
+                while (reader.hasNext())
+                {
+                    final XMLEvent event = reader.nextEvent();
+                    if (event.isStartElement())
+                    {
+                        depth++;
+                        if (skipDepth == 0 && depth == 2 &&
+                            UNUSED_SECTIONS.contains(event.asStartElement().getName().getLocalPart()))
+                        {
+                            skipDepth = depth;
+                        }
+                    }
+
+                    if (skipDepth == 0)
+                    {
+                        writer.add(event);
+                    }
+
+                    if (event.isEndElement())
+                    {
+                        if (depth == skipDepth)
+                        {
+                            skipDepth = 0;
+                        }
+                        depth--;
+                    }
+                }
+                writer.flush();
+            }
+            finally
+            {
+                writer.close();
+                reader.close();
+            }
+        }
+        catch (final XMLStreamException e)
+        {
+            // the generator will complain about the report anyway, so pass it on unchanged
+            LOGGER.warn("Failed to extract trend data, using the full report: " + source, e);
+            Helper.linkOrCopyFile(source, target, true);
+        }
+    }
+
+    private static Integer toBuildNumber(final String name)
+    {
+        try
+        {
+            return Integer.valueOf(name);
+        }
+        catch (final NumberFormatException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.IOException;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+
+/**
+ * The XLT installations cached on a node, one per version of the XLT template.
+ * <p>
+ * A version is identified by a fingerprint of the template's file list (paths, sizes and modification times), so any
+ * change to the template results in a new cache entry. Each build gets an installation of its own, but only the small
+ * <code>bin</code> and <code>config</code> folders are copied, as the plug-in modifies the configuration. The
+ * <code>lib</code> folder, which makes up most of an XLT distribution, is linked to the cache (copied only where links
+ * are not supported).
+ * <p>
+ * Entries that have not been used for a while are evicted, keeping only the most recently used versions. An installation
+ * links its entry until it is {@linkplain #uninstall(FilePath, TaskListener) uninstalled}, so entries are not evicted
+ * under long-running load tests.
+ */
+public final class XltInstallationCache
+{
+    private static final String CACHE_FOLDER_NAME = "xlt-cache";
+
+    private static final String INCLUDES = "bin/**, config/**, lib/**";
+
+    private static final String EXCLUDES = "config/scriptdoc/, config/externaldataconfig.xml.sample, config/scriptdocgenerator.properties";
+
+    private static final String[] FINGERPRINTED_FOLDERS =
+        {
+            "bin", "config", "lib"
+        };
+
+    /**
+     * The number of versions kept regardless of when they were used last.
+     */
+    private static final int MAX_VERSIONS = 3;
+
+    private final NodeFolderCache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param nodeRoot
+     *            the root folder of the node
+     */
+    public XltInstallationCache(final FilePath nodeRoot)
+    {
+        cache = new NodeFolderCache(nodeRoot.child(CACHE_FOLDER_NAME), "XLT installation", MAX_VERSIONS);
+    }
+
+    /**
+     * Sets up an XLT installation based on the given template.
+     *
+     * @param templateDir
+     *            the XLT template folder
+     * @param destDir
+     *            the folder of the installation
+     * @param listener
+     *            the listener to log to
+     * @throws IOException
+     *             thrown if the installation could not be set up
+     * @throws InterruptedException
+     *             thrown if interrupted
+     */
+    public void install(final FilePath templateDir, final FilePath destDir, final TaskListener listener)
+        throws IOException, InterruptedException
+    {
+        final String fingerprint = templateDir.act(new NodeFolderCache.Fingerprint("", FINGERPRINTED_FOLDERS));
+        final FilePath entryDir = cache.getEntry(fingerprint, new NodeFolderCache.Filler()
+        {
+            @Override
+            public void fill(final FilePath dir) throws IOException, InterruptedException
+            {
+                final int copyCount = templateDir.copyRecursiveTo(INCLUDES, EXCLUDES, dir);
+                if (copyCount == 0)
+                {
+                    throw new IOException("Nothing was copied from XLT template \"" + templateDir.getRemote() + "\"");
+                }
+            }
+        }, listener);
+
+        // private copies of what is small or gets modified
+        destDir.mkdirs();
+        entryDir.copyRecursiveTo("bin/**, config/**", destDir);
+
+        // the libraries are shared
+        cache.addUser(entryDir, destDir);
+        final FilePath cachedLibDir = entryDir.child("lib");
+        final FilePath libDir = destDir.child("lib");
+        if (cachedLibDir.isDirectory())
+        {
+            libDir.symlinkTo(cachedLibDir.getRemote(), listener);
+            if (!libDir.isDirectory())
+            {
+                listener.getLogger().println("Could not link " + cachedLibDir.getRemote() + ", copying it instead");
+                cachedLibDir.copyRecursiveTo(libDir);
+            }
+        }
+
+        cache.evict(fingerprint, listener);
+    }
+
+    /**
+     * Removes an XLT installation set up before, which releases the cache entry it used.
+     *
+     * @param destDir
+     *            the folder of the installation
+     * @param listener
+     *            the listener to log to
+     * @throws IOException
+     *             thrown if the installation could not be removed
+     * @throws InterruptedException
+     *             thrown if interrupted
+     */
+    public void uninstall(final FilePath destDir, final TaskListener listener) throws IOException, InterruptedException
+    {
+        try
+        {
+            cache.removeUser(destDir);
+        }
+        catch (final IOException e)
+        {
+            // the entry is released on eviction once the installation is gone
+            listener.getLogger().println("Failed to release cached XLT installation: " + e);
+        }
+        destDir.deleteRecursive();
+    }
+}
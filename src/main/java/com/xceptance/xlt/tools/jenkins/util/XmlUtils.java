@@ -17,7 +17,10 @@ package com.xceptance.xlt.tools.jenkins.util;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
@@ -25,6 +28,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
@@ -39,6 +43,47 @@ import hudson.FilePath;
 
 public final class XmlUtils
 {
+    /**
+     * The maximum number of compiled XPath expressions to keep per thread.
+     */
+    private static final int XPATH_CACHE_SIZE = 1024;
+
+    /**
+     * The compiled XPath expressions, keyed by expression string. Neither {@link XPath} nor {@link XPathExpression} is
+     * thread-safe, so each thread gets its own cache. As the cache is static, it survives across builds run by the same
+     * thread, which includes the pooled threads of {@link StageGraph}.
+     */
+    private static final ThreadLocal<Map<String, XPathExpression>> XPATH_CACHE = new ThreadLocal<Map<String, XPathExpression>>()
+    {
+        @Override
+        protected Map<String, XPathExpression> initialValue()
+        {
+            return new LinkedHashMap<String, XPathExpression>(64, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, XPathExpression> eldest)
+                {
+                    return size() > XPATH_CACHE_SIZE;
+                }
+            };
+        }
+    };
+
+    private static final ThreadLocal<XPath> XPATH = new ThreadLocal<XPath>()
+    {
+        @Override
+        protected XPath initialValue()
+        {
+            return xpath();
+        }
+    };
+
+    private static final AtomicLong XPATH_CACHE_HITS = new AtomicLong();
+
+    private static final AtomicLong XPATH_CACHE_MISSES = new AtomicLong();
+
     private XmlUtils()
     {
         // Empty
@@ -108,11 +153,54 @@ public final class XmlUtils
         return XPathFactory.newInstance().newXPath();
     }
 
+    /**
+     * Returns the compiled form of the given XPath expression. Expressions are compiled once per thread and cached.
+     *
+     * @param xpath
+     *            the XPath expression
+     * @return the compiled expression
+     * @throws XPathExpressionException
+     *             thrown if the expression cannot be compiled
+     */
+    public static XPathExpression compile(final String xpath) throws XPathExpressionException
+    {
+        final Map<String, XPathExpression> cache = XPATH_CACHE.get();
+
+        XPathExpression expression = cache.get(xpath);
+        if (expression != null)
+        {
+            XPATH_CACHE_HITS.incrementAndGet();
+        }
+        else
+        {
+            XPATH_CACHE_MISSES.incrementAndGet();
+            expression = XPATH.get().compile(xpath);
+            cache.put(xpath, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Returns the number of XPath evaluations that could use an already compiled expression.
+     */
+    public static long getXPathCacheHits()
+    {
+        return XPATH_CACHE_HITS.get();
+    }
+
+    /**
+     * Returns the number of XPath evaluations that had to compile their expression first.
+     */
+    public static long getXPathCacheMisses()
+    {
+        return XPATH_CACHE_MISSES.get();
+    }
+
     public static Object evaluateXPath(final Node node, final String xpath, final QName returnType)
     {
         try
         {
-            final Object result = xpath().evaluate(xpath, node, returnType);
+            final Object result = compile(xpath).evaluate(node, returnType);
             if (returnType.equals(XPathConstants.NODESET))
             {
                 final ArrayList<Node> list = new ArrayList<>();
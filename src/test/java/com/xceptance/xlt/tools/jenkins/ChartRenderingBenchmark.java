@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import com.xceptance.xlt.tools.jenkins.Chart.ChartLine;
+import com.xceptance.xlt.tools.jenkins.Chart.ChartLineValue;
+
+/**
+ * Compares the rendering of chart data with the previous string concatenation approach.
+ * <p>
+ * This is not a unit test. Run it manually, e.g. <code>java ... ChartRenderingBenchmark 1000 20</code> to render a chart
+ * with 20 lines of 1,000 builds each. The first argument is the number of builds, the second one the number of lines.
+ */
+public class ChartRenderingBenchmark
+{
+    private static final String FORMATTER = "tooltipFormatter";
+
+    private static final int WARMUP = 5;
+
+    private static final int ITERATIONS = 10;
+
+    public static void main(final String[] args) throws Exception
+    {
+        final int builds = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int lineCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        final Chart<Integer, Double> chart = createChart(builds, lineCount);
+
+        if (!legacyDataString(chart).equals(chart.getDataString(FORMATTER)) || !legacyXData(chart).equals(chart.getXData()))
+        {
+            throw new IllegalStateException("Output differs from the legacy rendering");
+        }
+
+        System.out.printf(Locale.ENGLISH, "Chart: %d builds x %d lines%n", builds, lineCount);
+
+        measure("Legacy", chart, new Renderer()
+        {
+            @Override
+            public int render(final Chart<Integer, Double> c)
+            {
+                return legacyDataString(c).length() + legacyXData(c).length();
+            }
+        });
+        measure("String", chart, new Renderer()
+        {
+            @Override
+            public int render(final Chart<Integer, Double> c)
+            {
+                return c.getDataString(FORMATTER).length() + c.getXData().length();
+            }
+        });
+        measure("Writer", chart, new Renderer()
+        {
+            @Override
+            public int render(final Chart<Integer, Double> c) throws Exception
+            {
+                final StringWriter out = new StringWriter();
+                c.writeDataString(out, FORMATTER);
+                c.writeXData(out);
+                return out.getBuffer().length();
+            }
+        });
+    }
+
+    private interface Renderer
+    {
+        int render(Chart<Integer, Double> chart) throws Exception;
+    }
+
+    private static void measure(final String name, final Chart<Integer, Double> chart, final Renderer renderer) throws Exception
+    {
+        int length = 0;
+        for (int i = 0; i < WARMUP; i++)
+        {
+            length += renderer.render(chart);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            length += renderer.render(chart);
+        }
+        final double millis = (System.nanoTime() - start) / 1000000.0 / ITERATIONS;
+
+        System.out.printf(Locale.ENGLISH, "%-8s %10.2f ms/op (%d chars)%n", name, millis, length / (WARMUP + ITERATIONS));
+    }
+
+    private static Chart<Integer, Double> createChart(final int builds, final int lineCount)
+    {
+        final Chart<Integer, Double> chart = new Chart<Integer, Double>("chart", "Chart");
+        for (int l = 0; l < lineCount; l++)
+        {
+            chart.getLines().add(new ChartLine<Integer, Double>("line" + l, "Line " + l, builds, false));
+        }
+
+        for (int b = 0; b < builds; b++)
+        {
+            for (final ChartLine<Integer, Double> line : chart.getLines())
+            {
+                final ChartLineValue<Integer, Double> value = new ChartLineValue<Integer, Double>(chart.getXIndex(), b * 1.5);
+                value.setDataObjectValue("buildNumber", "\"" + b + "\"");
+                value.setDataObjectValue("showBuildNumber", "true");
+                value.setDataObjectValue("buildTime", "\"2020-01-01 12:00\"");
+                line.addLineValue(value);
+            }
+            chart.nextXIndex();
+        }
+        return chart;
+    }
+
+    /*
+     * The previous implementation, kept here for comparison.
+     */
+
+    private static String legacyDataString(final Chart<Integer, Double> chart)
+    {
+        String data = "[";
+        Iterator<ChartLine<Integer, Double>> iterator = chart.getLines().iterator();
+        while (iterator.hasNext())
+        {
+            data += legacyLineDataString(iterator.next()) + ",";
+        }
+        data += "]";
+        return data;
+    }
+
+    private static String legacyLineDataString(final ChartLine<Integer, Double> line)
+    {
+        String lineObject = "{";
+
+        String data = "data:[";
+        Iterator<ChartLineValue<Integer, Double>> iterator = line.getValues().iterator();
+        while (iterator.hasNext())
+        {
+            data += iterator.next().getDataString();
+            if (iterator.hasNext())
+            {
+                data += ",";
+            }
+        }
+        data += "],";
+
+        String mouse = "mouse:{";
+        mouse += "trackFormatter:function(o){ return (" + FORMATTER + ")(\"" + line.getName() + "\", o, xData);},";
+        mouse += "},";
+
+        String label = "label:\"" + line.getName() + "\",";
+
+        lineObject += data + mouse + label + "}";
+        return lineObject;
+    }
+
+    private static String legacyXData(final Chart<Integer, Double> chart)
+    {
+        List<Integer> processedValues = new ArrayList<Integer>();
+
+        String data = "{";
+        for (ChartLine<Integer, Double> eachLine : chart.getLines())
+        {
+            for (ChartLineValue<Integer, Double> value : eachLine.getValues())
+            {
+                final Integer x = value.getXValue();
+                if (!processedValues.contains(x))
+                {
+                    processedValues.add(x);
+
+                    data += "\"" + x + "\":{" + value.getDataObjectValues() + "},";
+                }
+            }
+        }
+        data += "}";
+        return data;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.xceptance.xlt.tools.jenkins.Chart.ChartLine;
+import com.xceptance.xlt.tools.jenkins.Chart.ChartLineValue;
+import com.xceptance.xlt.tools.jenkins.CompactChart.BuildTable;
+
+public class CompactChartTest
+{
+    private static Chart<Integer, Double> newChart(final String chartID, final int builds, final int maxCount)
+    {
+        final Chart<Integer, Double> chart = new Chart<Integer, Double>(chartID, "Chart " + chartID);
+        chart.getLines().add(new ChartLine<Integer, Double>("a", "Line A", maxCount, false));
+        chart.getLines().add(new ChartLine<Integer, Double>("b", "Line B", maxCount, false));
+
+        for (int b = 1; b <= builds; b++)
+        {
+            for (final ChartLine<Integer, Double> line : chart.getLines())
+            {
+                if (b % 2 == 0 && line.getLineID().equals("b"))
+                {
+                    continue;
+                }
+
+                final ChartLineValue<Integer, Double> value = new ChartLineValue<Integer, Double>(chart.getXIndex(), b * 1.5);
+                value.setDataObjectValue("buildNumber", "\"" + b + "\"");
+                value.setDataObjectValue("showBuildNumber", "true");
+                value.setDataObjectValue("buildTime", "\"2020-01-0" + b + " 12:00\"");
+                line.addLineValue(value);
+            }
+            chart.nextXIndex();
+        }
+        return chart;
+    }
+
+    @Test
+    public void testConvertedChartsRenderTheSame()
+    {
+        final List<Chart<Integer, Double>> charts = new ArrayList<Chart<Integer, Double>>();
+        charts.add(newChart("1", 5, 3));
+        charts.add(newChart("2", 2, 10));
+
+        final List<CompactChart> compactCharts = CompactChart.of(charts);
+        assertEquals(2, compactCharts.size());
+        assertSame(compactCharts.get(0).getBuilds(), compactCharts.get(1).getBuilds());
+        assertEquals(5, compactCharts.get(0).getBuilds().size());
+
+        for (int i = 0; i < charts.size(); i++)
+        {
+            final Chart<Integer, Double> chart = charts.get(i);
+            final CompactChart compactChart = compactCharts.get(i);
+
+            assertEquals(chart.getChartID(), compactChart.getChartID());
+            assertEquals(chart.getTitle(), compactChart.getTitle());
+            assertEquals(chart.getXIndex(), compactChart.getXIndex());
+            assertEquals(chart.getDataString("f"), compactChart.getDataString("f"));
+            assertEquals(chart.getXData(), compactChart.getXData());
+        }
+    }
+
+    @Test
+    public void testLineDropsOldestValues()
+    {
+        final BuildTable builds = new BuildTable();
+        final CompactChart chart = new CompactChart("id", "title", builds);
+        final CompactChart.Line line = new CompactChart.Line("a", "Line A", 3, false);
+        chart.getLines().add(line);
+
+        for (int b = 1; b <= 5; b++)
+        {
+            line.addValue(chart.getXIndex(), b);
+            chart.nextXIndex(builds.add(b, "time" + b, false));
+        }
+
+        assertEquals(3, line.size());
+        assertEquals(2, line.getX(0));
+        assertEquals(3.0, line.getY(0), 0.0);
+        assertEquals(4, line.getX(2));
+        assertEquals(5.0, line.getY(2), 0.0);
+
+        assertEquals("[{data:[[2,3.0],[3,4.0],[4,5.0]],mouse:{trackFormatter:function(o){ return (f)(\"Line A\", o, xData);},},label:\"Line A\",},]",
+                     chart.getDataString("f"));
+        assertEquals("{\"2\":{buildNumber:\"3\",showBuildNumber:false,buildTime:\"time3\"},\"3\":{buildNumber:\"4\",showBuildNumber:false,buildTime:\"time4\"},\"4\":{buildNumber:\"5\",showBuildNumber:false,buildTime:\"time5\"},}",
+                     chart.getXData());
+    }
+
+    @Test
+    public void testWriteJson() throws Exception
+    {
+        final BuildTable builds = new BuildTable();
+        final CompactChart chart = new CompactChart("id", "My \"Chart\"", builds);
+        final CompactChart.Line a = new CompactChart.Line("a", "Line A", 10, false);
+        final CompactChart.Line b = new CompactChart.Line("b", "Line B", 10, false);
+        chart.getLines().add(a);
+        chart.getLines().add(b);
+
+        for (int build = 1; build <= 3; build++)
+        {
+            a.addValue(chart.getXIndex(), build);
+            if (build != 2)
+            {
+                b.addValue(chart.getXIndex(), Double.NaN);
+            }
+            chart.nextXIndex(builds.add(build, "time" + build, build == 3));
+        }
+
+        final StringBuilder all = new StringBuilder();
+        chart.writeJson(all, 0);
+        assertEquals("{\"id\":\"id\",\"title\":\"My \\\"Chart\\\"\",\"lines\":[" +
+                     "{\"id\":\"a\",\"name\":\"Line A\",\"data\":[[0,1.0],[1,2.0],[2,3.0]]}," +
+                     "{\"id\":\"b\",\"name\":\"Line B\",\"data\":[[0,null],[2,null]]}],\"xData\":{" +
+                     "\"0\":{\"buildNumber\":1,\"showBuildNumber\":false,\"buildTime\":\"time1\"}," +
+                     "\"1\":{\"buildNumber\":2,\"showBuildNumber\":false,\"buildTime\":\"time2\"}," +
+                     "\"2\":{\"buildNumber\":3,\"showBuildNumber\":true,\"buildTime\":\"time3\"}}}", all.toString());
+
+        final StringBuilder recent = new StringBuilder();
+        chart.writeJson(recent, 2);
+        assertEquals("{\"id\":\"id\",\"title\":\"My \\\"Chart\\\"\",\"lines\":[" +
+                     "{\"id\":\"a\",\"name\":\"Line A\",\"data\":[[1,2.0],[2,3.0]]}," +
+                     "{\"id\":\"b\",\"name\":\"Line B\",\"data\":[[2,null]]}],\"xData\":{" +
+                     "\"1\":{\"buildNumber\":2,\"showBuildNumber\":false,\"buildTime\":\"time2\"}," +
+                     "\"2\":{\"buildNumber\":3,\"showBuildNumber\":true,\"buildTime\":\"time3\"}}}", recent.toString());
+    }
+
+    @Test
+    public void testLineWithoutCapacityStaysEmpty()
+    {
+        final CompactChart.Line line = new CompactChart.Line("a", "Line A", 0, false);
+        line.addValue(0, 1.0);
+
+        assertEquals(0, line.size());
+    }
+}
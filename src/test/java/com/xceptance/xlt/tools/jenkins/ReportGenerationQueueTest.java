@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReportGenerationQueueTest
+{
+    private ExecutorService executor;
+
+    private List<String> runs;
+
+    private AtomicInteger done;
+
+    private ReportGenerationQueue.Slot slot;
+
+    @Before
+    public void setUp()
+    {
+        executor = Executors.newFixedThreadPool(2);
+        runs = Collections.synchronizedList(new ArrayList<String>());
+        done = new AtomicInteger();
+        slot = new ReportGenerationQueue.Slot(executor, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                done.incrementAndGet();
+            }
+        });
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A task that records its run and blocks until released.
+     */
+    private class BlockingTask implements Runnable
+    {
+        private final String name;
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private BlockingTask(final String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public void run()
+        {
+            runs.add(name);
+            started.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void awaitStarted() throws InterruptedException
+        {
+            assertTrue(name + " did not start", started.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private void awaitIdle() throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (slot.isBusy())
+        {
+            assertTrue("slot did not become idle", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testLatestRequestRunsOnceAfterCurrent() throws Exception
+    {
+        assertFalse(slot.isBusy());
+
+        final BlockingTask first = new BlockingTask("first");
+        slot.submit(first);
+        first.awaitStarted();
+        assertTrue(slot.isBusy());
+
+        final BlockingTask second = new BlockingTask("second");
+        final BlockingTask third = new BlockingTask("third");
+        final BlockingTask fourth = new BlockingTask("fourth");
+        slot.submit(second);
+        slot.submit(third);
+        slot.submit(fourth);
+
+        // the free executor thread must not start another run of the slot
+        Thread.sleep(100);
+        assertEquals(Arrays.asList("first"), runs);
+
+        first.release.countDown();
+        fourth.awaitStarted();
+        assertTrue(slot.isBusy());
+        fourth.release.countDown();
+        awaitIdle();
+
+        assertEquals(Arrays.asList("first", "fourth"), runs);
+        assertEquals(2, done.get());
+    }
+
+    @Test
+    public void testRequestAfterIdleRunsAgain() throws Exception
+    {
+        final BlockingTask first = new BlockingTask("first");
+        first.release.countDown();
+        slot.submit(first);
+        awaitIdle();
+
+        final BlockingTask second = new BlockingTask("second");
+        second.release.countDown();
+        slot.submit(second);
+        awaitIdle();
+
+        assertEquals(Arrays.asList("first", "second"), runs);
+        assertEquals(2, done.get());
+    }
+
+    @Test
+    public void testFailedTaskDoesNotBlockSlot() throws Exception
+    {
+        final BlockingTask failing = new BlockingTask("failing")
+        {
+            @Override
+            public void run()
+            {
+                super.run();
+                throw new IllegalStateException("expected");
+            }
+        };
+        slot.submit(failing);
+        failing.awaitStarted();
+
+        final BlockingTask next = new BlockingTask("next");
+        next.release.countDown();
+        slot.submit(next);
+
+        failing.release.countDown();
+        awaitIdle();
+        assertEquals(Arrays.asList("failing", "next"), runs);
+
+        // a failure of the last task resets the slot as well
+        final BlockingTask last = new BlockingTask("last")
+        {
+            @Override
+            public void run()
+            {
+                super.run();
+                throw new IllegalStateException("expected");
+            }
+        };
+        last.release.countDown();
+        slot.submit(last);
+        awaitIdle();
+
+        assertFalse(slot.isBusy());
+        assertEquals(Arrays.asList("failing", "next", "last"), runs);
+        assertEquals(3, done.get());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.xceptance.xlt.tools.jenkins.Chart.ChartLineValue;
+import com.xceptance.xlt.tools.jenkins.CompactChart.BuildTable;
+import com.xceptance.xlt.tools.jenkins.util.BuildMetrics;
+import com.xceptance.xlt.tools.jenkins.util.ChartUtils;
+import com.xceptance.xlt.tools.jenkins.util.ChartUtils.ChartLineListener;
+
+public class XltChartActionTest
+{
+    private static JSONObject plot(final String id, final boolean showNoValues)
+    {
+        return new JSONObject().put("id", id).put("title", "Plot " + id).put("buildCount", "10").put("enabled", "yes")
+                               .put("showNoValues", showNoValues ? "yes" : "no");
+    }
+
+    private static JSONObject value(final String id, final String plotID)
+    {
+        return new JSONObject().put("id", id).put("name", "Value " + id).put("xPath", "/testreport/" + id).put("condition", "")
+                               .put("plotID", plotID);
+    }
+
+    private static PlotValuesConfiguration config()
+    {
+        final JSONArray plots = new JSONArray().put(plot("zeros", true)).put(plot("gaps", false));
+        final JSONArray values = new JSONArray().put(value("a", "zeros")).put(value("b", "zeros")).put(value("c", "gaps"));
+        return PlotValuesConfiguration.fromJson(new JSONObject().put("plots", plots).put("values", values));
+    }
+
+    private static Map<String, Double> values(final Double a, final Double b, final Double c)
+    {
+        final Map<String, Double> values = new HashMap<>();
+        values.put("a", a);
+        values.put("b", b);
+        values.put("c", c);
+        return values;
+    }
+
+    private static List<CompactChart> buildCharts(final int buildNumber, final Map<String, Double> values,
+                                                  final PlotValuesConfiguration config)
+    {
+        // as published by a build
+        return CompactChart.of(ChartUtils.xml2Charts(values, config, new ChartLineListener()
+        {
+            @Override
+            public void onValueAdded(final ChartLineValue<Integer, Double> value)
+            {
+                value.setDataObjectValue("buildNumber", "\"" + buildNumber + "\"");
+                value.setDataObjectValue("showBuildNumber", "true");
+                value.setDataObjectValue("buildTime", "\"Build " + buildNumber + "\"");
+            }
+        }));
+    }
+
+    @Test
+    public void testChartsFromHistoryMatchChartsFromRuns()
+    {
+        final PlotValuesConfiguration config = config();
+
+        // values that did not match anything are NaN in the report metrics as well as in the history
+        final List<Map<String, Double>> builds = Arrays.asList(values(1.0, 2.0, 3.0), values(Double.NaN, 4.0, Double.NaN),
+                                                               values(5.0, Double.NaN, 6.0), values(Double.NaN, Double.NaN, Double.NaN),
+                                                               values(7.0, 8.0, 9.0));
+
+        final List<CompactChart> template = buildCharts(1, builds.get(0), config);
+
+        final BuildTable runBuilds = new BuildTable();
+        final List<CompactChart> fromRuns = XltChartAction.initCharts(template, runBuilds);
+
+        final BuildTable historyBuilds = new BuildTable();
+        final List<CompactChart> fromHistory = XltChartAction.initCharts(template, historyBuilds);
+
+        for (int i = 0; i < builds.size(); i++)
+        {
+            final int buildNumber = i + 1;
+            XltChartAction.addCharts(fromRuns, runBuilds, buildCharts(buildNumber, builds.get(i), config));
+            XltChartAction.addHistoryRow(fromHistory, historyBuilds, new BuildMetrics(buildNumber, 0L, builds.get(i)),
+                                         "Build " + buildNumber, true);
+        }
+
+        assertEquals(2, fromRuns.size());
+        for (int i = 0; i < fromRuns.size(); i++)
+        {
+            assertEquals(fromRuns.get(i).getXIndex(), fromHistory.get(i).getXIndex());
+            assertEquals(fromRuns.get(i).getDataString("f"), fromHistory.get(i).getDataString("f"));
+            assertEquals(fromRuns.get(i).getXData(), fromHistory.get(i).getXData());
+        }
+
+        // missing values are plotted as 0 or skipped, depending on the plot
+        assertEquals(5, fromHistory.get(0).getXIndex());
+        assertEquals(3, fromHistory.get(1).getXIndex());
+    }
+
+    @Test
+    public void testGetBuildValues()
+    {
+        final PlotValuesConfiguration config = config();
+        final List<Map<String, Double>> builds = Arrays.asList(values(1.0, 2.0, 3.0), values(Double.NaN, 4.0, Double.NaN),
+                                                               values(Double.NaN, Double.NaN, Double.NaN));
+
+        // charts that hold the points of several builds
+        final BuildTable table = new BuildTable();
+        final List<CompactChart> charts = XltChartAction.initCharts(buildCharts(1, builds.get(0), config), table);
+        for (int i = 0; i < builds.size(); i++)
+        {
+            XltChartAction.addCharts(charts, table, buildCharts(i + 1, builds.get(i), config));
+        }
+
+        assertEquals(values(1.0, 2.0, 3.0), XltChartAction.getBuildValues(charts, 1));
+
+        // the 0 that fills the gap of a is missing, and the last point of c belongs to build 1
+        final Map<String, Double> values = XltChartAction.getBuildValues(charts, 2);
+        assertEquals(1, values.size());
+        assertEquals(4.0, values.get("b"), 0.0);
+
+        assertTrue(XltChartAction.getBuildValues(charts, 3).isEmpty());
+        assertTrue(XltChartAction.getBuildValues(charts, 4).isEmpty());
+    }
+}
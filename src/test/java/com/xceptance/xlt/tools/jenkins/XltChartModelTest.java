@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+
+public class XltChartModelTest
+{
+    @Rule
+    public final JenkinsRule rule = new JenkinsRule();
+
+    private static XltRecorderAction recorderAction(final String stepId)
+    {
+        return new XltRecorderAction(stepId, null, Collections.<CriterionResult> emptyList(), Collections.<TestCaseInfo> emptyList(),
+                                     Collections.<SlowRequestInfo> emptyList(), null);
+    }
+
+    @Test
+    public void testModelsAreCachedPerStep() throws Exception
+    {
+        final FreeStyleProject job = rule.createFreeStyleProject();
+
+        final XltChartModel a = XltChartModel.get(job, "a");
+        final XltChartModel b = XltChartModel.get(job, "b");
+        assertNotSame(a, b);
+        assertSame(a, XltChartModel.get(job, "a"));
+        assertNull(a.getLastBuildAction());
+
+        XltChartModel.invalidate(job, "a");
+        assertNotSame(a, XltChartModel.get(job, "a"));
+        assertSame(b, XltChartModel.get(job, "b"));
+
+        // other jobs have their own models
+        assertNotSame(b, XltChartModel.get(rule.createFreeStyleProject(), "b"));
+    }
+
+    @Test
+    public void testBuildsInvalidateTheirStepsOnly() throws Exception
+    {
+        final FreeStyleProject job = rule.createFreeStyleProject();
+        final FreeStyleBuild build = rule.buildAndAssertSuccess(job);
+        build.addAction(recorderAction("a"));
+
+        XltChartModel a = XltChartModel.get(job, "a");
+        final XltChartModel b = XltChartModel.get(job, "b");
+
+        // a build without any load test step leaves all models alone
+        rule.buildAndAssertSuccess(job);
+        assertSame(a, XltChartModel.get(job, "a"));
+        assertSame(b, XltChartModel.get(job, "b"));
+
+        new XltRunListener().onCompleted(build, TaskListener.NULL);
+        assertNotSame(a, XltChartModel.get(job, "a"));
+        assertSame(b, XltChartModel.get(job, "b"));
+
+        a = XltChartModel.get(job, "a");
+        build.delete();
+        assertNotSame(a, XltChartModel.get(job, "a"));
+        assertSame(b, XltChartModel.get(job, "b"));
+    }
+}
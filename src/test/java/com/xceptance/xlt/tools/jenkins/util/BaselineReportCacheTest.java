@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+
+public class BaselineReportCacheTest
+{
+    private final TaskListener listener = TaskListener.NULL;
+
+    private File dir;
+
+    private BaselineReportCache cache;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("baselineReportCache").toFile();
+        cache = new BaselineReportCache(new FilePath(new File(dir, "node")));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private FilePath createBaseline(final String name) throws Exception
+    {
+        final FilePath baseline = new FilePath(new File(dir, name));
+        baseline.child("testreport.xml").write("<testreport>" + name + "</testreport>", "UTF-8");
+        baseline.child("css/default.css").write("body {}", "UTF-8");
+        return baseline;
+    }
+
+    /**
+     * Pretends that the given cache entry was used last the given number of days ago.
+     */
+    private static void setLastUsed(final FilePath entry, final int daysAgo)
+    {
+        final File marker = new File(entry.getRemote(), NodeFolderCache.COMPLETE_MARKER);
+        assertTrue(marker.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysAgo)));
+    }
+
+    @Test
+    public void testCacheHit() throws Exception
+    {
+        final FilePath baseline = createBaseline("baseline");
+
+        final FilePath entry = cache.get(baseline, listener);
+        assertEquals(baseline.child("testreport.xml").readToString(), entry.child("testreport.xml").readToString());
+        assertEquals("body {}", entry.child("css/default.css").readToString());
+
+        // the cached copy is used as it is and not transferred again
+        entry.child("probe").write("", "UTF-8");
+        setLastUsed(entry, 2);
+
+        final FilePath again = cache.get(baseline, listener);
+        assertEquals(entry.getRemote(), again.getRemote());
+        assertTrue(again.child("probe").exists());
+
+        // a hit counts as a use
+        assertTrue(System.currentTimeMillis() - again.child(NodeFolderCache.COMPLETE_MARKER).lastModified() < TimeUnit.DAYS.toMillis(1));
+    }
+
+    @Test
+    public void testChangedBaselineIsCachedAgain() throws Exception
+    {
+        final FilePath baseline = createBaseline("baseline");
+        final FilePath entry = cache.get(baseline, listener);
+
+        baseline.child("testreport.xml").write("<testreport>changed</testreport>", "UTF-8");
+        final FilePath changed = cache.get(baseline, listener);
+        assertNotEquals(entry.getRemote(), changed.getRemote());
+        assertEquals("<testreport>changed</testreport>", changed.child("testreport.xml").readToString());
+
+        baseline.child("css/more.css").write("", "UTF-8");
+        final FilePath added = cache.get(baseline, listener);
+        assertNotEquals(changed.getRemote(), added.getRemote());
+        assertTrue(added.child("css/more.css").exists());
+
+        // the previous versions are left alone
+        assertEquals("<testreport>baseline</testreport>", entry.child("testreport.xml").readToString());
+
+        // the same files at another location are another baseline
+        final File copy = new File(dir, "copy");
+        FileUtils.copyDirectory(new File(baseline.getRemote()), copy);
+        assertNotEquals(added.getRemote(), cache.get(new FilePath(copy), listener).getRemote());
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        final FilePath[] baselines = new FilePath[5];
+        final FilePath[] entries = new FilePath[5];
+        for (int i = 0; i < 5; i++)
+        {
+            baselines[i] = createBaseline("baseline" + i);
+        }
+        for (int i = 0; i < 4; i++)
+        {
+            entries[i] = cache.get(baselines[i], listener);
+        }
+
+        // recently used entries are kept beyond the number of versions
+        assertEquals(4, entries[0].getParent().listDirectories().size());
+
+        setLastUsed(entries[0], 4);
+        setLastUsed(entries[1], 3);
+        setLastUsed(entries[2], 2);
+
+        // used again, so it is the most recent one, and the oldest idle entry beyond the kept versions goes
+        assertEquals(entries[0].getRemote(), cache.get(baselines[0], listener).getRemote());
+        assertFalse(entries[1].exists());
+        assertTrue(entries[2].exists());
+
+        // a leftover of an interrupted transfer
+        final File leftover = new File(entries[0].getParent().getRemote(), "leftover.tmp");
+        assertTrue(leftover.mkdirs());
+        assertTrue(leftover.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+
+        entries[4] = cache.get(baselines[4], listener);
+
+        // the three most recently used versions
+        assertTrue(entries[4].exists());
+        assertTrue(entries[0].exists());
+        assertTrue(entries[3].exists());
+        assertFalse(entries[2].exists());
+        assertFalse(leftover.exists());
+        assertEquals(3, entries[0].getParent().listDirectories().size());
+    }
+}
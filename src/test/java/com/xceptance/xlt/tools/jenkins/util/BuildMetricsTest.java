@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hudson.FilePath;
+
+public class BuildMetricsTest
+{
+    private File dir;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("buildMetrics").toFile();
+        file = new File(dir, BuildMetrics.FILE_NAME);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        final Map<String, Double> values = new HashMap<>();
+        values.put("a", 1.5);
+        values.put("b/c", -20.0);
+        values.put("unmatched", Double.NaN);
+        values.put("infinite", Double.POSITIVE_INFINITY);
+        values.put("null", null);
+
+        final BuildMetrics metrics = new BuildMetrics(42, 1234567890123L, values);
+        assertEquals(2, metrics.getValues().size());
+        metrics.write(new FilePath(file));
+
+        final BuildMetrics read = BuildMetrics.read(new FilePath(file));
+        assertNotNull(read);
+        assertEquals(42, read.getBuildNumber());
+        assertEquals(1234567890123L, read.getTimestamp());
+        assertEquals(metrics.getValues(), read.getValues());
+        assertFalse(read.getValues().containsKey("unmatched"));
+    }
+
+    @Test
+    public void testEmptyValues() throws Exception
+    {
+        new BuildMetrics(1, 0L, new HashMap<String, Double>()).write(new FilePath(file));
+
+        final BuildMetrics read = BuildMetrics.read(new FilePath(file));
+        assertNotNull(read);
+        assertEquals(1, read.getBuildNumber());
+        assertEquals(0, read.getValues().size());
+    }
+
+    @Test
+    public void testMissingFile()
+    {
+        assertNull(BuildMetrics.read(new FilePath(file)));
+    }
+
+    @Test
+    public void testUnknownVersion() throws Exception
+    {
+        FileUtils.write(file, "{\"version\":2,\"build\":1,\"timestamp\":0,\"values\":{\"a\":1}}", StandardCharsets.UTF_8);
+        assertNull(BuildMetrics.read(new FilePath(file)));
+
+        FileUtils.write(file, "{\"build\":1,\"timestamp\":0,\"values\":{\"a\":1}}", StandardCharsets.UTF_8);
+        assertNull(BuildMetrics.read(new FilePath(file)));
+    }
+
+    @Test
+    public void testCorruptFile() throws Exception
+    {
+        // e.g. a write that was cut off
+        FileUtils.write(file, "{\"version\":1,\"build\":1,\"timestamp\":0,\"values\":{\"a\":", StandardCharsets.UTF_8);
+        assertNull(BuildMetrics.read(new FilePath(file)));
+
+        FileUtils.write(file, "", StandardCharsets.UTF_8);
+        assertNull(BuildMetrics.read(new FilePath(file)));
+
+        FileUtils.write(file, "{\"version\":1,\"build\":1,\"timestamp\":0}", StandardCharsets.UTF_8);
+        assertNull(BuildMetrics.read(new FilePath(file)));
+
+        FileUtils.write(file, "{\"version\":1,\"build\":1,\"timestamp\":0,\"values\":{\"a\":\"x\"}}", StandardCharsets.UTF_8);
+        assertNull(BuildMetrics.read(new FilePath(file)));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.xceptance.xlt.tools.jenkins.CriterionResult;
+
+public class CriterionCheckerTest
+{
+    @Test
+    public void testParsesFailedAndErrorCriteria() throws Exception
+    {
+        final String output = "{\"checks\": [" +
+                              "  {\"file\": \"diffreport.xml\", \"details\": {" +
+                              "    \"MaxRuntime\": {\"status\": \"FAILED\", \"message\": \"Runtime exceeded \\\"10%\\\"\"}," +
+                              "    \"NoErrors\": {\"status\": \"PASSED\", \"message\": \"\"}," +
+                              "    \"P95\": {\"status\": \"ERROR\", \"message\": \"Invalid XPath\", \"extra\": [1, {\"a\": null}]}," +
+                              "    \"Unknown\": {\"status\": \"FAILED\", \"message\": \"not defined\"}" +
+                              "  }}]," +
+                              " \"criteria\": [" +
+                              "  {\"id\": \"MaxRuntime\", \"enabled\": true, \"condition\": \"count(//max[number()>10])=0\"}," +
+                              "  {\"id\": \"NoErrors\", \"enabled\": false, \"condition\": \"not(//errors)\"}," +
+                              "  {\"id\": \"P95\", \"enabled\": true, \"condition\": \"//p95[\"}" +
+                              " ]," +
+                              " \"version\": 1.5e0}";
+
+        final List<CriterionResult> results = CriterionChecker.parseCriteriaValidationResult(new StringReader(output));
+        assertEquals(2, results.size());
+
+        assertEquals(CriterionResult.Type.FAILED, results.get(0).getType());
+        assertEquals("MaxRuntime", results.get(0).getCriterionID());
+        assertEquals("Runtime exceeded \"10%\"", results.get(0).getMessage());
+        assertEquals("count(//max[number()>10])=0", results.get(0).getCondition());
+
+        assertEquals(CriterionResult.Type.ERROR, results.get(1).getType());
+        assertEquals("P95", results.get(1).getCriterionID());
+        assertEquals("//p95[", results.get(1).getCondition());
+    }
+
+    @Test
+    public void testEmptyOutput() throws Exception
+    {
+        assertTrue(CriterionChecker.parseCriteriaValidationResult(new StringReader("")).isEmpty());
+        assertTrue(CriterionChecker.parseCriteriaValidationResult(new StringReader("{}")).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedOutput() throws Exception
+    {
+        CriterionChecker.parseCriteriaValidationResult(new StringReader("{\"checks\": [{\"details\": {"));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CriterionLedgerTest
+{
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("criterionLedger").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testAppendAndReadLast() throws Exception
+    {
+        final CriterionLedger ledger = new CriterionLedger(new File(dir, "step"));
+        assertFalse(ledger.exists());
+        assertTrue(ledger.readLast(5, 0).isEmpty());
+
+        for (int i = 1; i <= 10; i++)
+        {
+            ledger.append(new CriterionLedger.Outcome(i, i % 2, i % 3));
+        }
+        assertTrue(ledger.exists());
+
+        final List<CriterionLedger.Outcome> outcomes = ledger.readLast(3, 0);
+        assertEquals(3, outcomes.size());
+        assertEquals(10, outcomes.get(0).getBuildNumber());
+        assertEquals(0, outcomes.get(0).getFailedCount());
+        assertEquals(1, outcomes.get(0).getErrorCount());
+        assertEquals(9, outcomes.get(1).getBuildNumber());
+        assertEquals(8, outcomes.get(2).getBuildNumber());
+
+        assertEquals(10, ledger.readLast(100, 0).size());
+    }
+
+    @Test
+    public void testDeletedAndDuplicateBuilds() throws Exception
+    {
+        final CriterionLedger ledger = new CriterionLedger(new File(dir, "step"));
+        for (int i = 1; i <= 6; i++)
+        {
+            ledger.append(new CriterionLedger.Outcome(i, 0, 0));
+        }
+        ledger.append(new CriterionLedger.Outcome(6, 2, 0));
+        ledger.markDeleted(5);
+        ledger.markDeleted(4);
+
+        final List<CriterionLedger.Outcome> outcomes = ledger.readLast(3, 0);
+        assertEquals(3, outcomes.size());
+        assertEquals(6, outcomes.get(0).getBuildNumber());
+        assertEquals(2, outcomes.get(0).getFailedCount());
+        assertEquals(3, outcomes.get(1).getBuildNumber());
+        assertEquals(2, outcomes.get(2).getBuildNumber());
+    }
+
+    @Test
+    public void testBuildNumberWindow() throws Exception
+    {
+        final CriterionLedger ledger = new CriterionLedger(new File(dir, "step"));
+        ledger.append(new CriterionLedger.Outcome(1, 1, 0));
+        ledger.append(new CriterionLedger.Outcome(2, 1, 0));
+        ledger.append(new CriterionLedger.Outcome(5, 1, 0));
+        ledger.append(new CriterionLedger.Outcome(4, 0, 0));
+
+        // builds 3 and 6 did not write an entry, so the last three builds are 4 to 6
+        final List<CriterionLedger.Outcome> outcomes = ledger.readLast(3, 3);
+        assertEquals(2, outcomes.size());
+        assertEquals(4, outcomes.get(0).getBuildNumber());
+        assertEquals(5, outcomes.get(1).getBuildNumber());
+
+        assertTrue(ledger.readLast(3, 5).isEmpty());
+    }
+
+    @Test
+    public void testPartialEntryIsRepaired() throws Exception
+    {
+        final CriterionLedger ledger = new CriterionLedger(new File(dir, "step"));
+        ledger.append(new CriterionLedger.Outcome(1, 1, 0));
+
+        // simulate an interrupted append
+        try (final FileOutputStream out = new FileOutputStream(new File(new File(dir, "step"), "ledger.bin"), true))
+        {
+            out.write(new byte[5]);
+        }
+        assertEquals(1, ledger.readLast(5, 0).size());
+
+        ledger.append(new CriterionLedger.Outcome(2, 0, 1));
+        final List<CriterionLedger.Outcome> outcomes = ledger.readLast(5, 0);
+        assertEquals(2, outcomes.size());
+        assertEquals(2, outcomes.get(0).getBuildNumber());
+        assertEquals(1, outcomes.get(1).getFailedCount());
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.slaves.DumbSlave;
+import hudson.util.StreamTaskListener;
+
+public class FolderTransferTest
+{
+    @Rule
+    public final JenkinsRule rule = new JenkinsRule();
+
+    private final TaskListener listener = StreamTaskListener.fromStdout();
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("folderTransfer").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Creates a folder with files in nested folders, one of them large and compressible.
+     */
+    private static void createResults(final FilePath folder) throws Exception
+    {
+        folder.child("config/test.properties").write("a=1", "UTF-8");
+        folder.child("ac0001_00/TMyTest/0/timers.csv").write("R,Homepage,1000,200,false", "UTF-8");
+        folder.child("ac0001_00/TMyTest/1/timers.csv").write("R,Homepage,2000,300,true", "UTF-8");
+        folder.child("ac0001_00/TMyTest/1/deep/er/still/data.bin").write(StringUtils.repeat("0123456789", 100000), "UTF-8");
+    }
+
+    /**
+     * Returns the relative paths and contents of all files in the given folder.
+     */
+    private static Map<String, String> contents(final FilePath folder) throws Exception
+    {
+        final Map<String, String> contents = new TreeMap<>();
+        if (folder.isDirectory())
+        {
+            for (final FilePath file : folder.list("**"))
+            {
+                final String path = file.getRemote().substring(folder.getRemote().length() + 1).replace('\\', '/');
+                contents.put(path, file.readToString());
+            }
+        }
+        return contents;
+    }
+
+    private FilePath createAgentFolder(final String name) throws Exception
+    {
+        final DumbSlave agent = rule.createOnlineSlave();
+        return agent.getRootPath().child(name);
+    }
+
+    @Test
+    public void testCopyLocal() throws Exception
+    {
+        final FilePath src = new FilePath(new File(dir, "src"));
+        final FilePath dest = new FilePath(new File(dir, "dest"));
+        createResults(src);
+
+        FolderTransfer.copy(src, dest, FolderTransfer.MAX_COMPRESSION, listener);
+
+        assertEquals(4, contents(dest).size());
+        assertEquals(contents(src), contents(dest));
+    }
+
+    @Test
+    public void testMoveLocal() throws Exception
+    {
+        final FilePath src = new FilePath(new File(dir, "src"));
+        final FilePath dest = new FilePath(new File(dir, "sub/dest"));
+        createResults(src);
+        final Map<String, String> expected = contents(src);
+
+        FolderTransfer.move(src, dest, FolderTransfer.NO_COMPRESSION, listener);
+
+        assertFalse(src.exists());
+        assertEquals(expected, contents(dest));
+    }
+
+    @Test
+    public void testMoveLocalToExistingFolder() throws Exception
+    {
+        final FilePath src = new FilePath(new File(dir, "src"));
+        final FilePath dest = new FilePath(new File(dir, "dest"));
+        createResults(src);
+        dest.child("old.txt").write("old", "UTF-8");
+        dest.child("config/test.properties").write("a=0", "UTF-8");
+
+        final Map<String, String> expected = contents(src);
+        expected.put("old.txt", "old");
+
+        FolderTransfer.move(src, dest, FolderTransfer.NO_COMPRESSION, listener);
+
+        assertFalse(src.exists());
+        assertEquals(expected, contents(dest));
+    }
+
+    @Test
+    public void testMoveLocalEmptyFolder() throws Exception
+    {
+        final FilePath src = new FilePath(new File(dir, "src"));
+        final FilePath dest = new FilePath(new File(dir, "dest"));
+        src.mkdirs();
+
+        FolderTransfer.move(src, dest, FolderTransfer.NO_COMPRESSION, listener);
+
+        assertFalse(src.exists());
+        assertTrue(dest.isDirectory());
+        assertTrue(contents(dest).isEmpty());
+    }
+
+    @Test
+    public void testMissingFolderIsIgnored() throws Exception
+    {
+        final FilePath src = new FilePath(new File(dir, "src"));
+        final FilePath dest = new FilePath(new File(dir, "dest"));
+
+        FolderTransfer.copy(src, dest, FolderTransfer.NO_COMPRESSION, listener);
+        FolderTransfer.move(src, dest, FolderTransfer.NO_COMPRESSION, listener);
+
+        assertFalse(dest.exists());
+    }
+
+    @Test
+    public void testCopyFromAgentUncompressed() throws Exception
+    {
+        final FilePath src = createAgentFolder("src");
+        final FilePath dest = new FilePath(new File(dir, "dest"));
+        createResults(src);
+
+        FolderTransfer.copy(src, dest, FolderTransfer.NO_COMPRESSION, listener);
+
+        assertEquals(4, contents(dest).size());
+        assertEquals(contents(src), contents(dest));
+        assertTrue(src.exists());
+    }
+
+    @Test
+    public void testCopyFromAgentCompressed() throws Exception
+    {
+        final FilePath src = createAgentFolder("src");
+        final FilePath dest = new FilePath(new File(dir, "dest"));
+        createResults(src);
+
+        FolderTransfer.copy(src, dest, FolderTransfer.MAX_COMPRESSION, listener);
+
+        assertEquals(4, contents(dest).size());
+        assertEquals(contents(src), contents(dest));
+    }
+
+    @Test
+    public void testCopyEmptyFolderFromAgent() throws Exception
+    {
+        final FilePath src = createAgentFolder("src");
+        final FilePath dest = new FilePath(new File(dir, "dest"));
+        src.mkdirs();
+
+        FolderTransfer.copy(src, dest, FolderTransfer.MAX_COMPRESSION, listener);
+
+        assertTrue(dest.isDirectory());
+        assertTrue(contents(dest).isEmpty());
+    }
+
+    @Test
+    public void testMoveFromAgentToExistingFolder() throws Exception
+    {
+        final FilePath src = createAgentFolder("src");
+        final FilePath dest = new FilePath(new File(dir, "dest"));
+        createResults(src);
+        dest.child("old.txt").write("old", "UTF-8");
+
+        final Map<String, String> expected = contents(src);
+        expected.put("old.txt", "old");
+
+        FolderTransfer.move(src, dest, FolderTransfer.MAX_COMPRESSION, listener);
+
+        assertFalse(src.exists());
+        assertEquals(expected, contents(dest));
+    }
+
+    @Test
+    public void testPackFromAgent() throws Exception
+    {
+        final FilePath src = createAgentFolder("src");
+        createResults(src);
+        final Map<String, String> expected = contents(src);
+
+        for (final int level : new int[] { FolderTransfer.NO_COMPRESSION, FolderTransfer.MAX_COMPRESSION })
+        {
+            final File container = new File(dir, "results" + level + ResultsContainer.FILE_EXTENSION);
+            FolderTransfer.pack(src, new FilePath(container), level, listener);
+
+            assertTrue(ResultsContainer.isContainer(container));
+            assertFalse(new File(container.getPath() + ".tmp").exists());
+
+            final Map<String, String> packed = new TreeMap<>();
+            try (final ZipFile zip = new ZipFile(container))
+            {
+                final Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements())
+                {
+                    final ZipEntry entry = entries.nextElement();
+                    packed.put(entry.getName(), IOUtils.toString(zip.getInputStream(entry), StandardCharsets.UTF_8));
+                }
+            }
+            assertEquals(expected, packed);
+        }
+
+        // the large file compresses well
+        assertTrue(new File(dir, "results9.zip").length() < new File(dir, "results0.zip").length() / 10);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.xceptance.xlt.tools.jenkins.Chart.ChartLineValue;
+import com.xceptance.xlt.tools.jenkins.CompactChart;
+import com.xceptance.xlt.tools.jenkins.CriterionResult;
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration;
+import com.xceptance.xlt.tools.jenkins.XltChartAction;
+import com.xceptance.xlt.tools.jenkins.util.ChartUtils.ChartLineListener;
+
+public class MetricDiffTest
+{
+    private static JSONObject value(final String id, final String maxIncrease, final String maxDecrease)
+    {
+        return new JSONObject().put("id", id).put("xPath", "/testreport/" + id).put("condition", "").put("plotID", "plot")
+                               .put("name", id).put("maxIncrease", maxIncrease).put("maxDecrease", maxDecrease);
+    }
+
+    private static PlotValuesConfiguration config(final JSONObject... values)
+    {
+        final JSONArray valueArray = new JSONArray();
+        for (final JSONObject value : values)
+        {
+            valueArray.put(value);
+        }
+        return PlotValuesConfiguration.fromJson(new JSONObject().put("values", valueArray).put("plots", new JSONArray()));
+    }
+
+    private static Map<String, Double> values(final double runtime, final double throughput)
+    {
+        final Map<String, Double> values = new HashMap<>();
+        values.put("runtime", runtime);
+        values.put("throughput", throughput);
+        return values;
+    }
+
+    @Test
+    public void testRelativeLimits()
+    {
+        final PlotValuesConfiguration config = config(value("runtime", "10%", ""), value("throughput", "", "5 %"));
+
+        assertTrue(MetricDiff.getFailed(values(110, 95), values(100, 100), config).isEmpty());
+
+        final List<CriterionResult> failed = MetricDiff.getFailed(values(111, 94), values(100, 100), config);
+        assertEquals(2, failed.size());
+        for (final CriterionResult result : failed)
+        {
+            assertEquals(CriterionResult.Type.FAILED, result.getType());
+            if (result.getCriterionID().equals("runtime"))
+            {
+                assertEquals("Value increased from 100 (baseline) to 111", result.getMessage());
+                assertEquals("maxIncrease: 10%", result.getCondition());
+                assertEquals("111", result.getValue());
+            }
+            else
+            {
+                assertEquals("Value decreased from 100 (baseline) to 94", result.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testAbsoluteLimits()
+    {
+        final PlotValuesConfiguration config = config(value("runtime", "200", "50"));
+
+        assertTrue(MetricDiff.getFailed(values(1200, 0), values(1000, 0), config).isEmpty());
+        assertTrue(MetricDiff.getFailed(values(950, 0), values(1000, 0), config).isEmpty());
+        assertEquals(1, MetricDiff.getFailed(values(1200.5, 0), values(1000, 0), config).size());
+        assertEquals(1, MetricDiff.getFailed(values(949, 0), values(1000, 0), config).size());
+    }
+
+    @Test
+    public void testMissingValuesAndInvalidLimits()
+    {
+        final PlotValuesConfiguration config = config(value("runtime", "ten", ""), value("errors", "0", ""));
+
+        final List<CriterionResult> failed = MetricDiff.getFailed(values(1, 1), values(1, 1), config);
+        assertEquals(2, failed.size());
+        for (final CriterionResult result : failed)
+        {
+            assertEquals(CriterionResult.Type.ERROR, result.getType());
+        }
+    }
+
+    @Test
+    public void testUnmatchedValues()
+    {
+        final PlotValuesConfiguration config = config(value("runtime", "10%", ""), value("throughput", "", "10%"));
+
+        final List<CriterionResult> failed = MetricDiff.getFailed(values(Double.NaN, 100), values(100, Double.NaN), config);
+        assertEquals(2, failed.size());
+        for (final CriterionResult result : failed)
+        {
+            assertEquals(CriterionResult.Type.ERROR, result.getType());
+            if (result.getCriterionID().equals("runtime"))
+            {
+                assertEquals("No result for XPath", result.getMessage());
+            }
+            else
+            {
+                assertEquals("No result for XPath in baseline", result.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testBaselineBuildWithoutSidecar() throws Exception
+    {
+        // only the runtime is plotted
+        final JSONObject plot = new JSONObject().put("id", "plot").put("title", "Plot").put("buildCount", "10").put("enabled", "yes")
+                                                .put("showNoValues", "yes");
+        final JSONArray values = new JSONArray().put(value("runtime", "10%", "")).put(value("errors", "0", "").put("plotID", "unplotted"));
+        final PlotValuesConfiguration config = PlotValuesConfiguration.fromJson(new JSONObject().put("values", values)
+                                                                                                .put("plots",
+                                                                                                     new JSONArray().put(plot)));
+
+        final String xml = "<testreport><runtime>100</runtime><errors>3</errors></testreport>";
+        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                                                        .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        final ReportMetrics baselineReport = ReportMetrics.evaluate(ReportData.of(document), config);
+
+        // a build from before the metrics sidecar only recorded its charts
+        final List<CompactChart> charts = CompactChart.of(ChartUtils.xml2Charts(baselineReport, config, new ChartLineListener()
+        {
+            @Override
+            public void onValueAdded(final ChartLineValue<Integer, Double> value)
+            {
+                value.setDataObjectValue("buildNumber", "\"7\"");
+                value.setDataObjectValue("showBuildNumber", "true");
+                value.setDataObjectValue("buildTime", "\"Build 7\"");
+            }
+        }));
+        final Map<String, Double> recorded = XltChartAction.getBuildValues(charts, 7);
+        assertEquals(100.0, recorded.get("runtime"), 0.0);
+        assertFalse(MetricDiff.hasLimitedValues(recorded, config));
+
+        // so the baseline is taken from its test report, which has the value that was not plotted
+        final Map<String, Double> baseline = baselineReport.getNumbers();
+        assertTrue(MetricDiff.hasLimitedValues(baseline, config));
+
+        final Map<String, Double> current = new HashMap<>();
+        current.put("runtime", 105.0);
+        current.put("errors", 4.0);
+        final List<CriterionResult> failed = MetricDiff.getFailed(current, baseline, config);
+        assertEquals(1, failed.size());
+        assertEquals(CriterionResult.Type.FAILED, failed.get(0).getType());
+        assertEquals("Value increased from 3 (baseline) to 4", failed.get(0).getMessage());
+    }
+}
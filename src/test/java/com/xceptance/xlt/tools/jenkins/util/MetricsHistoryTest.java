@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsHistoryTest
+{
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("metricsHistory").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static BuildMetrics metrics(final int build, final Object... idsAndValues)
+    {
+        final Map<String, Double> values = new HashMap<>();
+        for (int i = 0; i < idsAndValues.length; i += 2)
+        {
+            values.put((String) idsAndValues[i], (Double) idsAndValues[i + 1]);
+        }
+        return new BuildMetrics(build, build * 1000L, values);
+    }
+
+    @Test
+    public void testAppendAndReadLast() throws Exception
+    {
+        final MetricsHistory history = new MetricsHistory(new File(dir, "step"));
+        assertFalse(history.exists());
+
+        history.append(metrics(1, "a", 1.0));
+        history.append(metrics(2, "a", 2.0, "b/c", 20.0));
+        history.append(metrics(4, "a", Double.NaN, "b/c", 40.0));
+        history.append(metrics(3, "a", 3.0));
+        assertTrue(history.exists());
+
+        final List<BuildMetrics> rows = history.readLast(3, 3, Arrays.asList("a", "b/c", "unknown"));
+        assertEquals(3, rows.size());
+
+        assertEquals(1, rows.get(0).getBuildNumber());
+        assertEquals(1000L, rows.get(0).getTimestamp());
+        assertEquals(1.0, rows.get(0).getValues().get("a"), 0.0);
+        assertNull(rows.get(0).getValues().get("b/c"));
+
+        assertEquals(2, rows.get(1).getBuildNumber());
+        assertEquals(20.0, rows.get(1).getValues().get("b/c"), 0.0);
+
+        assertEquals(3, rows.get(2).getBuildNumber());
+        assertEquals(3.0, rows.get(2).getValues().get("a"), 0.0);
+        assertNull(rows.get(2).getValues().get("b/c"));
+        assertNull(rows.get(2).getValues().get("unknown"));
+
+        final List<BuildMetrics> last = history.readLast(2, Integer.MAX_VALUE, Arrays.asList("a", "b/c"));
+        assertEquals(3, last.get(0).getBuildNumber());
+        assertEquals(4, last.get(1).getBuildNumber());
+        assertNull(last.get(1).getValues().get("a"));
+        assertEquals(40.0, last.get(1).getValues().get("b/c"), 0.0);
+    }
+
+    @Test
+    public void testMarkDeleted() throws Exception
+    {
+        final MetricsHistory history = new MetricsHistory(dir);
+        history.append(metrics(1, "a", 1.0));
+        history.append(metrics(2, "a", 2.0));
+        history.append(metrics(3, "a", 3.0));
+
+        history.markDeleted(2);
+
+        final List<BuildMetrics> rows = history.readLast(10, Integer.MAX_VALUE, Arrays.asList("a"));
+        assertEquals(2, rows.size());
+        assertEquals(1, rows.get(0).getBuildNumber());
+        assertEquals(3, rows.get(1).getBuildNumber());
+        assertEquals(3.0, rows.get(1).getValues().get("a"), 0.0);
+    }
+
+    @Test
+    public void testGetBuildNumbers() throws Exception
+    {
+        final MetricsHistory history = new MetricsHistory(dir);
+        assertEquals(0, history.getBuildNumbers().length);
+
+        history.append(metrics(5, "a", 1.0));
+        history.append(metrics(2, "a", 2.0));
+        history.append(metrics(7, "a", 3.0));
+        history.append(metrics(5, "a", 4.0));
+        history.markDeleted(7);
+
+        assertTrue(Arrays.equals(new int[] { 2, 5 }, history.getBuildNumbers()));
+    }
+
+    @Test
+    public void testInterruptedAppendIsRepaired() throws Exception
+    {
+        final MetricsHistory history = new MetricsHistory(dir);
+        history.append(metrics(1, "a", 1.0));
+
+        // simulate an append that wrote the value but not the build number
+        for (final File f : dir.listFiles())
+        {
+            if (f.getName().startsWith("value-"))
+            {
+                try (final FileOutputStream out = new FileOutputStream(f, true))
+                {
+                    out.write(new byte[8]);
+                }
+            }
+        }
+
+        history.append(metrics(2, "a", 2.0));
+
+        final List<BuildMetrics> rows = history.readLast(10, Integer.MAX_VALUE, Arrays.asList("a"));
+        assertEquals(2, rows.size());
+        assertEquals(2.0, rows.get(1).getValues().get("a"), 0.0);
+    }
+}
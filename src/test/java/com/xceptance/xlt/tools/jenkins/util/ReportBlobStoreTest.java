@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReportBlobStoreTest
+{
+    private File dir;
+
+    private ReportBlobStore store;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("reportBlobs").toFile();
+        store = new ReportBlobStore(new File(dir, "blobs"));
+        assumeTrue(store.isSupported());
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private File report(final int build) throws Exception
+    {
+        final File report = new File(dir, "report" + build);
+        FileUtils.write(new File(report, "css/default.css"), "body {}", StandardCharsets.UTF_8);
+        FileUtils.write(new File(report, "index.html"), "build " + build, StandardCharsets.UTF_8);
+        FileUtils.write(new File(report, "empty.txt"), "", StandardCharsets.UTF_8);
+        return report;
+    }
+
+    @Test
+    public void testSharesIdenticalFiles() throws Exception
+    {
+        final File report1 = report(1);
+        final File report2 = report(2);
+
+        final ReportBlobStore.Stats result1 = store.deduplicate(report1);
+        assertEquals(2, result1.getFiles());
+        assertEquals(0, result1.getSharedFiles());
+
+        final ReportBlobStore.Stats result2 = store.deduplicate(report2);
+        assertEquals(2, result2.getFiles());
+        assertEquals(1, result2.getSharedFiles());
+        assertEquals("body {}".length(), result2.getSavedBytes());
+
+        assertTrue(Files.isSameFile(new File(report1, "css/default.css").toPath(), new File(report2, "css/default.css").toPath()));
+        assertFalse(Files.isSameFile(new File(report1, "index.html").toPath(), new File(report2, "index.html").toPath()));
+        assertEquals("build 2", FileUtils.readFileToString(new File(report2, "index.html"), StandardCharsets.UTF_8));
+
+        // nothing changes the second time
+        assertEquals(0, store.deduplicate(report2).getSharedFiles());
+    }
+
+    @Test
+    public void testCollectsUnusedBlobs() throws Exception
+    {
+        final File report1 = report(1);
+        final File report2 = report(2);
+        store.deduplicate(report1);
+        store.deduplicate(report2);
+
+        // all blobs are in use
+        assertEquals(0, store.collectGarbage(0));
+
+        // the index page of build 1 is not used anymore, the style sheet still is
+        FileUtils.deleteDirectory(report1);
+        assertEquals(1, store.collectGarbage(0));
+
+        // not due yet
+        FileUtils.deleteDirectory(report2);
+        assertEquals(0, store.collectGarbage());
+        assertEquals(2, store.collectGarbage(0));
+    }
+}
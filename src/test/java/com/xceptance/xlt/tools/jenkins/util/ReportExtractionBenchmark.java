@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+
+/**
+ * Compares wall time and peak heap of the DOM based evaluation of test report values with the streaming extraction.
+ * <p>
+ * This is not a unit test. Run it manually with a fixed heap size, e.g.
+ * <code>java -Xmx2g ... ReportExtractionBenchmark 50 200</code> to evaluate 200 values on a synthetic report of about 50 MB.
+ * Each mode should be run in its own JVM to get comparable peak heap numbers: pass <code>dom</code> or <code>stream</code> as
+ * third argument.
+ */
+public class ReportExtractionBenchmark
+{
+    public static void main(final String[] args) throws Exception
+    {
+        final int sizeMB = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        final int valueCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        final String mode = args.length > 2 ? args[2] : "both";
+
+        final File report = File.createTempFile("testreport", ".xml");
+        report.deleteOnExit();
+
+        final int requestCount = writeReport(report, sizeMB * 1024L * 1024L);
+        final List<String> xpaths = createXPaths(valueCount, requestCount);
+
+        System.out.printf(Locale.ENGLISH, "Report: %.1f MB, %d requests, %d values%n", report.length() / 1048576.0, requestCount,
+                          xpaths.size());
+
+        if (!"stream".equals(mode))
+        {
+            measure("DOM", report, xpaths, true);
+        }
+        if (!"dom".equals(mode))
+        {
+            measure("Streaming", report, xpaths, false);
+        }
+    }
+
+    private static void measure(final String name, final File report, final List<String> xpaths, final boolean dom) throws Exception
+    {
+        System.gc();
+        resetPeakHeap();
+        final long baseline = getPeakHeap();
+
+        final long start = System.nanoTime();
+        double checksum = 0;
+        if (dom)
+        {
+            final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(report);
+            final XPath xpath = XPathFactory.newInstance().newXPath();
+            for (final String expr : xpaths)
+            {
+                checksum += (Double) xpath.evaluate(expr, document, XPathConstants.NUMBER);
+            }
+        }
+        else
+        {
+            final StreamingReportExtractor extractor = new StreamingReportExtractor();
+            for (final String expr : xpaths)
+            {
+                extractor.addValue(expr);
+            }
+            try (final InputStream in = new BufferedInputStream(new FileInputStream(report)))
+            {
+                final StreamingReportExtractor.Extraction extraction = extractor.extract(in);
+                for (final String expr : xpaths)
+                {
+                    checksum += StreamingReportExtractor.toNumber(extraction.getValue(expr).getText());
+                }
+            }
+        }
+        final long millis = (System.nanoTime() - start) / 1000000L;
+
+        System.out.printf(Locale.ENGLISH, "%-10s time: %6d ms, peak heap: %7.1f MB (checksum %.3f)%n", name, millis,
+                          (getPeakHeap() - baseline) / 1048576.0, checksum);
+    }
+
+    private static int writeReport(final File file, final long targetSize) throws Exception
+    {
+        int requests = 0;
+        try (final Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))
+        {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testreport>\n");
+            w.write("  <summary>\n    <requests>\n      <name>All Requests</name>\n      <count>123456</count>\n");
+            w.write("      <errors>12</errors>\n      <max>9876</max>\n      <mean>123.456</mean>\n    </requests>\n  </summary>\n");
+            w.write("  <requests>\n");
+
+            long written = 0;
+            while (written < targetSize)
+            {
+                final StringBuilder sb = new StringBuilder(2048);
+                sb.append("    <request>\n      <name>Request ").append(requests).append("</name>\n");
+                sb.append("      <count>").append(1000 + requests).append("</count>\n");
+                sb.append("      <errors>").append(requests % 7).append("</errors>\n");
+                sb.append("      <min>1</min>\n      <max>").append(2000 + requests % 1000).append("</max>\n");
+                sb.append("      <mean>").append(100 + requests % 100).append(".5</mean>\n");
+                sb.append("      <percentiles>\n");
+                for (int p = 1; p < 100; p += 2)
+                {
+                    sb.append("        <p").append(p).append('>').append(p * 10).append(".000</p").append(p).append(">\n");
+                }
+                sb.append("      </percentiles>\n    </request>\n");
+
+                w.write(sb.toString());
+                written += sb.length();
+                requests++;
+            }
+
+            w.write("  </requests>\n</testreport>\n");
+        }
+        return requests;
+    }
+
+    private static List<String> createXPaths(final int count, final int requestCount)
+    {
+        final List<String> xpaths = new ArrayList<>(count);
+        xpaths.add("/testreport/summary/requests/errors");
+        xpaths.add("/testreport/summary/requests/max");
+        xpaths.add("/testreport/summary/requests/mean");
+
+        for (int i = 0; xpaths.size() < count; i++)
+        {
+            final int request = (int) ((long) i * 7919 % requestCount);
+            xpaths.add("/testreport/requests/request[name='Request " + request + "']/" + (i % 2 == 0 ? "mean" : "percentiles/p95"));
+        }
+        return xpaths;
+    }
+
+    private static void resetPeakHeap()
+    {
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeap()
+    {
+        long peak = 0;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
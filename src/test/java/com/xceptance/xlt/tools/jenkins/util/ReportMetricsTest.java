@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration;
+import com.xceptance.xlt.tools.jenkins.PlotValuesConfiguration.Value;
+import com.xceptance.xlt.tools.jenkins.util.ReportData.RecordPath;
+import com.xceptance.xlt.tools.jenkins.util.ReportMetrics.Metric;
+
+public class ReportMetricsTest
+{
+    private static final String REPORT = "<testreport>" +
+                                         "<summary><requests><mean> 120.5 </mean><max>900</max><errors>0</errors></requests></summary>" +
+                                         "<requests>" + "<request><name>Homepage</name><mean>100</mean></request>" +
+                                         "<request><name>Login</name><mean>2000</mean></request>" + "</requests>" +
+                                         "<text>abc</text>" + "</testreport>";
+
+    private static final RecordPath REQUESTS = new RecordPath("/testreport/requests/request", "name", "mean");
+
+    private static JSONObject value(final String id, final String xpath, final String condition)
+    {
+        return new JSONObject().put("id", id).put("name", id).put("xPath", xpath).put("condition", condition).put("plotID", "plot");
+    }
+
+    private static PlotValuesConfiguration config()
+    {
+        final JSONArray values = new JSONArray().put(value("mean", "/testreport/summary/requests/mean", "[. < 200]"))
+                                                .put(value("max", "/testreport/summary/requests/max", "[. < 500]"))
+                                                .put(value("anyMean", "/testreport/requests/request/mean", "[. > 1000]"))
+                                                .put(value("errors", "/testreport/summary/requests/errors", ""))
+                                                .put(value("missing", "/testreport/nothing", "[. = 0]"))
+                                                .put(value("count", "count(/testreport/requests/request)", ""))
+                                                .put(value("login", "/testreport/requests/request/mean", "[../name = 'Login']"))
+                                                .put(value("text", "/testreport/text", "[. = 'abc']"));
+        return PlotValuesConfiguration.fromJson(new JSONObject().put("values", values).put("plots", new JSONArray()));
+    }
+
+    private static Document parse() throws Exception
+    {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                                     .parse(new ByteArrayInputStream(REPORT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Wraps the given report data so that values are evaluated one query at a time.
+     */
+    private static ReportData perQuery(final ReportData data)
+    {
+        return new ReportData()
+        {
+            @Override
+            public Double getNumber(final String xpath)
+            {
+                return data.getNumber(xpath);
+            }
+
+            @Override
+            public String getText(final String xpath)
+            {
+                return data.getText(xpath);
+            }
+
+            @Override
+            public boolean matches(final String xpath, final String condition)
+            {
+                return data.matches(xpath, condition);
+            }
+
+            @Override
+            public List<String[]> getRecords(final RecordPath path)
+            {
+                return data.getRecords(path);
+            }
+        };
+    }
+
+    private static void assertMetric(final ReportMetrics metrics, final String id, final double number, final String text,
+                                     final Boolean conditionMet)
+    {
+        final Metric metric = metrics.getMetric(id);
+        assertEquals(id, number, metric.getNumber(), 0.0);
+        assertEquals(id, text, metric.getText());
+        assertEquals(id, conditionMet, metric.isConditionMet());
+    }
+
+    @Test
+    public void testEvaluate() throws Exception
+    {
+        final ReportMetrics metrics = ReportMetrics.evaluate(ReportData.of(parse()), config(), REQUESTS);
+
+        assertMetric(metrics, "mean", 120.5, "120.5", true);
+        assertMetric(metrics, "max", 900, "900", false);
+        assertMetric(metrics, "anyMean", 100, "100", true);
+        assertMetric(metrics, "errors", 0, null, null);
+        assertMetric(metrics, "missing", Double.NaN, null, false);
+        assertMetric(metrics, "count", 2, null, null);
+        assertMetric(metrics, "login", 100, "100", true);
+        assertMetric(metrics, "text", Double.NaN, "abc", true);
+        assertNull(metrics.getMetric("unknown"));
+
+        final Map<String, Double> numbers = metrics.getNumbers();
+        assertEquals(8, numbers.size());
+        assertEquals(120.5, numbers.get("mean"), 0.0);
+        assertTrue(numbers.get("missing").isNaN());
+
+        final List<String[]> records = metrics.getRecords(REQUESTS);
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] { "Login", "2000" }, records.get(1));
+        assertTrue(metrics.getRecords(new RecordPath("/testreport/other", "name")).isEmpty());
+    }
+
+    @Test
+    public void testSameResultsAsPerQueryEvaluation() throws Exception
+    {
+        final PlotValuesConfiguration config = config();
+        final Document document = parse();
+
+        final ReportMetrics metrics = ReportMetrics.evaluate(ReportData.of(document), config);
+        final ReportMetrics expected = ReportMetrics.evaluate(perQuery(ReportData.of(document)), config);
+
+        for (final Value value : config.getValues())
+        {
+            final Metric metric = expected.getMetric(value.getId());
+            assertMetric(metrics, value.getId(), metric.getNumber(), metric.getText(), metric.isConditionMet());
+        }
+    }
+
+    @Test
+    public void testValueIsEvaluatedOnce() throws Exception
+    {
+        final JSONArray values = new JSONArray().put(value("mean", "/testreport/summary/requests/mean", "[. < 200]"));
+        final PlotValuesConfiguration config = PlotValuesConfiguration.fromJson(new JSONObject().put("values", values)
+                                                                                                .put("plots", new JSONArray()));
+        final ReportData data = ReportData.of(parse());
+
+        final long before = XmlUtils.getXPathCacheHits() + XmlUtils.getXPathCacheMisses();
+        ReportMetrics.evaluate(data, config);
+
+        // the XPath expression once, and the condition on its node
+        assertEquals(2, XmlUtils.getXPathCacheHits() + XmlUtils.getXPathCacheMisses() - before);
+    }
+
+    @Test
+    public void testNoReportData()
+    {
+        assertNull(ReportMetrics.evaluate(null, config()));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RingBufferTest
+{
+    @Test
+    public void testKeepsInsertionOrderBelowCapacity()
+    {
+        final RingBuffer<Integer> buffer = new RingBuffer<>(100);
+        for (int i = 0; i < 40; i++)
+        {
+            buffer.add(i);
+        }
+
+        assertEquals(40, buffer.size());
+        assertEquals(Integer.valueOf(0), buffer.get(0));
+        assertEquals(Integer.valueOf(39), buffer.get(39));
+    }
+
+    @Test
+    public void testDropsOldestElementsWhenFull()
+    {
+        final RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        for (int i = 1; i <= 7; i++)
+        {
+            buffer.add(i);
+        }
+
+        assertEquals(Arrays.asList(5, 6, 7), new ArrayList<>(buffer));
+
+        final List<Integer> iterated = new ArrayList<>();
+        for (final Integer i : buffer)
+        {
+            iterated.add(i);
+        }
+        assertEquals(Arrays.asList(5, 6, 7), iterated);
+    }
+
+    @Test
+    public void testCopiesMostRecentElements()
+    {
+        final RingBuffer<String> buffer = new RingBuffer<>(2, Arrays.asList("a", "b", "c"));
+
+        assertEquals(Arrays.asList("b", "c"), buffer);
+    }
+
+    @Test
+    public void testNoCapacity()
+    {
+        final RingBuffer<String> buffer = new RingBuffer<>(-1);
+
+        assertFalse(buffer.add("a"));
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange()
+    {
+        final RingBuffer<String> buffer = new RingBuffer<>(2);
+        buffer.add("a");
+        buffer.get(1);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class StageGraphTest
+{
+    private static final PrintStream LOG = new PrintStream(new ByteArrayOutputStream());
+
+    private static StageGraph.Stage record(final List<String> order, final String name)
+    {
+        return new StageGraph.Stage()
+        {
+            @Override
+            public void run()
+            {
+                order.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void testRunsStagesAfterTheirDependencies() throws Exception
+    {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        final StageGraph graph = new StageGraph("Test", 2, LOG);
+        graph.add("a", record(order, "a"));
+        graph.add("b", record(order, "b"), "a");
+        graph.add("c", record(order, "c"), "a");
+        graph.add("d", record(order, "d"), "b", "c");
+        graph.execute();
+
+        assertEquals(4, order.size());
+        assertEquals("a", order.get(0));
+        assertEquals("d", order.get(3));
+        assertTrue(graph.isDone("d"));
+    }
+
+    @Test
+    public void testIndependentStagesOverlap() throws Exception
+    {
+        // each stage waits for the other one, which only works if both run at the same time
+        final CountDownLatch latch = new CountDownLatch(2);
+        final StageGraph.Stage stage = new StageGraph.Stage()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                latch.countDown();
+                if (!latch.await(10, TimeUnit.SECONDS))
+                {
+                    throw new Exception("Stages did not overlap");
+                }
+            }
+        };
+
+        final StageGraph graph = new StageGraph("Test", 2, LOG);
+        graph.add("a", stage);
+        graph.add("b", stage);
+        graph.execute();
+
+        assertTrue(graph.isDone("a"));
+        assertTrue(graph.isDone("b"));
+    }
+
+    @Test
+    public void testFailureSkipsRemainingStages() throws Exception
+    {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final Exception failure = new Exception("failed");
+
+        final StageGraph graph = new StageGraph("Test", 1, LOG);
+        graph.add("a", new StageGraph.Stage()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                throw failure;
+            }
+        });
+        graph.add("b", record(order, "b"), "a");
+        graph.add("c", record(order, "c"));
+
+        try
+        {
+            graph.execute();
+            fail("Exception expected");
+        }
+        catch (final Exception e)
+        {
+            assertSame(failure, e);
+        }
+
+        assertFalse(graph.isDone("a"));
+        assertFalse(graph.isDone("b"));
+        assertTrue(order.isEmpty() || order.equals(Collections.singletonList("c")));
+    }
+
+    @Test
+    public void testInterruptionWaitsForRunningStages() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean stageFinished = new AtomicBoolean();
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        final StageGraph graph = new StageGraph("Test", 2, LOG);
+        graph.add("a", new StageGraph.Stage()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                started.countDown();
+                try
+                {
+                    Thread.sleep(10000);
+                }
+                catch (final InterruptedException e)
+                {
+                    // cleanup that takes a while, like killing a process
+                    final long end = System.currentTimeMillis() + 300;
+                    while (System.currentTimeMillis() < end)
+                    {
+                        Thread.yield();
+                    }
+                    stageFinished.set(true);
+                    throw e;
+                }
+            }
+        });
+        graph.add("b", record(order, "b"), "a");
+
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final AtomicBoolean finishedBeforeReturn = new AtomicBoolean();
+        final Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    graph.execute();
+                }
+                catch (final Exception e)
+                {
+                    failure.set(e);
+                }
+                finishedBeforeReturn.set(stageFinished.get());
+            }
+        };
+        thread.start();
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        thread.interrupt();
+        thread.join(10000);
+
+        assertFalse(thread.isAlive());
+        assertTrue(failure.get() instanceof InterruptedException);
+        assertTrue(finishedBeforeReturn.get());
+        assertTrue(order.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependency()
+    {
+        new StageGraph("Test", 1, LOG).add("a", record(new ArrayList<String>(), "a"), "b");
+    }
+}
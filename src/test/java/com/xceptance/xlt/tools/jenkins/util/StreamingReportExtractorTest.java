@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.xceptance.xlt.tools.jenkins.util.StreamingReportExtractor.Extraction;
+
+public class StreamingReportExtractorTest
+{
+    private static final String REPORT = "/com/xceptance/xlt/tools/jenkins/dummy-xlt/bin/testreport.xml";
+
+    private static final String[] XPATHS =
+        {
+            "/testreport/summary/transactions/errors", "/testreport/summary/requests/mean", "/testreport/summary/requests/max",
+            "/testreport/requests/request[name='Homepage [200]']/mean", "/testreport/requests/request[name=\"Login [303]\"]/count",
+            "/testreport/requests/request/count", "/testreport/requests/request[name='No Such Request']/mean",
+            "/testreport/summary/transactions", "/testreport/general/duration"
+        };
+
+    @Test
+    public void testSupportedExpressions()
+    {
+        assertTrue(StreamingReportExtractor.isSupported("/testreport/summary/requests/errors"));
+        assertTrue(StreamingReportExtractor.isSupported("/testreport/requests/request[name='Homepage [200]']/mean"));
+        assertTrue(StreamingReportExtractor.isSupported("/a/b[@id = \"x\"][c='y']/d"));
+
+        assertFalse(StreamingReportExtractor.isSupported("//request/mean"));
+        assertFalse(StreamingReportExtractor.isSupported("/testreport/requests/request[1]/mean"));
+        assertFalse(StreamingReportExtractor.isSupported("count(/testreport/requests/request)"));
+        assertFalse(StreamingReportExtractor.isSupported("/testreport/requests/request[contains(name, 'Home')]/mean"));
+        assertFalse(StreamingReportExtractor.isSupported("testreport/summary"));
+        assertFalse(StreamingReportExtractor.isSupported(""));
+    }
+
+    @Test
+    public void testSameValuesAsDom() throws Exception
+    {
+        final Document document;
+        try (final InputStream in = getClass().getResourceAsStream(REPORT))
+        {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+        }
+
+        final StreamingReportExtractor extractor = new StreamingReportExtractor();
+        for (final String xpath : XPATHS)
+        {
+            assertTrue(xpath, extractor.addValue(xpath));
+        }
+
+        final Extraction extraction;
+        try (final InputStream in = getClass().getResourceAsStream(REPORT))
+        {
+            extraction = extractor.extract(in);
+        }
+
+        for (final String xpath : XPATHS)
+        {
+            final Double expected = (Double) XPathFactory.newInstance().newXPath().evaluate(xpath, document, XPathConstants.NUMBER);
+            final Object node = XPathFactory.newInstance().newXPath().evaluate(xpath, document, XPathConstants.NODE);
+
+            if (node == null)
+            {
+                assertNull(xpath, extraction.getValue(xpath));
+            }
+            else
+            {
+                final String text = extraction.getValue(xpath).getText();
+                assertEquals(xpath, expected, StreamingReportExtractor.toNumber(text), 0.0);
+                assertEquals(xpath, ((org.w3c.dom.Node) node).getTextContent(), text);
+            }
+        }
+
+        assertTrue(extraction.isAmbiguous("/testreport/requests/request/count"));
+        assertFalse(extraction.isAmbiguous("/testreport/summary/requests/mean"));
+    }
+
+    @Test
+    public void testPredicateAfterMatch() throws Exception
+    {
+        final String xml = "<r><e><v>1</v><k>a</k></e><e><v>2</v><k>b</k></e><e k='c'><v>3</v><k>b</k></e></r>";
+
+        final StreamingReportExtractor extractor = new StreamingReportExtractor();
+        extractor.addValue("/r/e[k='b']/v");
+        extractor.addValue("/r/e[@k='c'][k='b']/v");
+        extractor.addRecords("/r/e[k='b']", "v", "x");
+
+        final Extraction extraction = extractor.extract(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("2", extraction.getValue("/r/e[k='b']/v").getText());
+        assertTrue(extraction.isAmbiguous("/r/e[k='b']/v"));
+        assertEquals("3", extraction.getValue("/r/e[@k='c'][k='b']/v").getText());
+
+        final List<String[]> records = extraction.getRecords("/r/e[k='b']");
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[]
+            {
+                "2", null
+            }, records.get(0));
+        assertArrayEquals(new String[]
+            {
+                "3", null
+            }, records.get(1));
+    }
+
+    @Test
+    public void testToNumber()
+    {
+        assertEquals(12.5, StreamingReportExtractor.toNumber(" 12.5\n"), 0.0);
+        assertEquals(-3, StreamingReportExtractor.toNumber("-3"), 0.0);
+        assertEquals(0.5, StreamingReportExtractor.toNumber(".5"), 0.0);
+        assertTrue(Double.isNaN(StreamingReportExtractor.toNumber("1e3")));
+        assertTrue(Double.isNaN(StreamingReportExtractor.toNumber("+1")));
+        assertTrue(Double.isNaN(StreamingReportExtractor.toNumber("")));
+        assertTrue(Double.isNaN(StreamingReportExtractor.toNumber(null)));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SummaryResultsStagingTest
+{
+    private File dir;
+
+    private File staged;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("summaryResults").toFile();
+        staged = new File(dir, "staged");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private File results(final int build, final boolean withWebDriverTimers) throws Exception
+    {
+        final File results = new File(dir, "results" + build);
+        FileUtils.write(new File(results, "config/test.properties"), "build=" + build, StandardCharsets.UTF_8);
+        FileUtils.write(new File(results, "ac0001_00/TMyTest/0/timers.csv"), "timers" + build, StandardCharsets.UTF_8);
+        if (withWebDriverTimers)
+        {
+            FileUtils.write(new File(results, "ac0001_00/TMyTest/0/wd-timers.csv"), "wd" + build, StandardCharsets.UTF_8);
+        }
+        return results;
+    }
+
+    private String read(final String path) throws Exception
+    {
+        return FileUtils.readFileToString(new File(staged, path), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testAddsNewAndRemovesOldBuilds() throws Exception
+    {
+        final SummaryResultsStaging staging = new SummaryResultsStaging(staged);
+
+        final Map<Integer, File> window = new TreeMap<>();
+        window.put(1, results(1, false));
+        window.put(2, results(2, true));
+        assertEquals(2, staging.update(window));
+
+        assertEquals("timers1", read("ac0001_00/TMyTest/0/timers.csv.1"));
+        assertEquals("timers2", read("ac0001_00/TMyTest/0/timers.csv.2"));
+        assertEquals("wd2", read("ac0001_00/TMyTest/0/wd-timers.csv"));
+        assertEquals("build=2", read("config/test.properties"));
+
+        window.remove(1);
+        window.put(3, results(3, true));
+        assertEquals(1, staging.update(window));
+
+        assertFalse(new File(staged, "ac0001_00/TMyTest/0/timers.csv.1").exists());
+        assertEquals("timers2", read("ac0001_00/TMyTest/0/timers.csv.2"));
+        assertEquals("timers3", read("ac0001_00/TMyTest/0/timers.csv.3"));
+        assertEquals("wd2", read("ac0001_00/TMyTest/0/wd-timers.csv"));
+        assertEquals("build=3", read("config/test.properties"));
+
+        // the WebDriver timers of the oldest build in the window win
+        window.remove(2);
+        assertEquals(0, staging.update(window));
+
+        assertFalse(new File(staged, "ac0001_00/TMyTest/0/timers.csv.2").exists());
+        assertEquals("wd3", read("ac0001_00/TMyTest/0/wd-timers.csv"));
+    }
+
+    @Test
+    public void testStagesFromContainers() throws Exception
+    {
+        final SummaryResultsStaging staging = new SummaryResultsStaging(staged);
+
+        final Map<Integer, File> window = new TreeMap<>();
+        window.put(1, results(1, true));
+        window.put(2, pack(results(2, true)));
+        assertEquals(2, staging.update(window));
+
+        assertEquals("timers1", read("ac0001_00/TMyTest/0/timers.csv.1"));
+        assertEquals("timers2", read("ac0001_00/TMyTest/0/timers.csv.2"));
+        assertEquals("wd1", read("ac0001_00/TMyTest/0/wd-timers.csv"));
+        assertEquals("build=2", read("config/test.properties"));
+
+        // the WebDriver timers are taken from the container once the folder left the window
+        window.remove(1);
+        assertEquals(0, staging.update(window));
+
+        assertFalse(new File(staged, "ac0001_00/TMyTest/0/timers.csv.1").exists());
+        assertEquals("wd2", read("ac0001_00/TMyTest/0/wd-timers.csv"));
+    }
+
+    private File pack(final File results) throws Exception
+    {
+        final File container = ResultsContainer.getContainerFile(results);
+        ResultsContainer.write(results, new FileOutputStream(container), 1);
+        FileUtils.deleteDirectory(results);
+        return container;
+    }
+
+    @Test
+    public void testRestagesWithoutManifest() throws Exception
+    {
+        final SummaryResultsStaging staging = new SummaryResultsStaging(staged);
+
+        final Map<Integer, File> window = new TreeMap<>();
+        window.put(1, results(1, false));
+        staging.update(window);
+
+        // simulate an interrupted update
+        assertTrue(new File(dir, "staged.staging").delete());
+        FileUtils.write(new File(staged, "ac0001_00/TMyTest/0/timers.csv.99"), "stale", StandardCharsets.UTF_8);
+
+        assertEquals(1, staging.update(window));
+        assertFalse(new File(staged, "ac0001_00/TMyTest/0/timers.csv.99").exists());
+        assertEquals("timers1", read("ac0001_00/TMyTest/0/timers.csv.1"));
+    }
+}
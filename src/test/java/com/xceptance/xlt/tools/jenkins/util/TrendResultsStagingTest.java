@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrendResultsStagingTest
+{
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("trendResults").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private File report(final int build, final boolean withXml) throws Exception
+    {
+        final File report = new File(dir, "report" + build);
+        FileUtils.write(new File(report, "index.html"), "html", StandardCharsets.UTF_8);
+        if (withXml)
+        {
+            final String testReport = "<testreport><general><build>" + build + "</build></general>" +
+                                      "<errors><error><trace>at Foo</trace></error></errors><events><event/></events>" +
+                                      "<transactions/></testreport>";
+            FileUtils.write(new File(report, "testreport.xml"), testReport, StandardCharsets.UTF_8);
+            FileUtils.write(new File(report, "other.xml"), "<other/>", StandardCharsets.UTF_8);
+        }
+        return report;
+    }
+
+    @Test
+    public void testAddsNewAndRemovesOldBuilds() throws Exception
+    {
+        final TrendResultsStaging staging = new TrendResultsStaging(new File(dir, "staged"));
+
+        final Map<Integer, File> window = new TreeMap<>();
+        window.put(1, report(1, true));
+        window.put(2, report(2, false));
+        window.put(3, report(3, true));
+        assertEquals(2, staging.update(window));
+
+        final String testReport = FileUtils.readFileToString(new File(staging.getBuildFolder(1), "testreport.xml"), StandardCharsets.UTF_8);
+        assertTrue(testReport, testReport.contains("<testreport><general><build>1</build></general><transactions></transactions></testreport>"));
+        assertEquals("<other/>", FileUtils.readFileToString(new File(staging.getBuildFolder(1), "other.xml"), StandardCharsets.UTF_8));
+        assertFalse(new File(staging.getBuildFolder(1), "index.html").exists());
+        assertFalse(staging.getBuildFolder(2).exists());
+
+        // leftover of an interrupted update
+        assertTrue(new File(dir, "staged/4.tmp").mkdirs());
+
+        window.remove(1);
+        window.put(4, report(4, true));
+        assertEquals(1, staging.update(window));
+
+        assertFalse(staging.getBuildFolder(1).exists());
+        assertTrue(staging.getBuildFolder(3).isDirectory());
+        assertTrue(new File(staging.getBuildFolder(4), "testreport.xml").isFile());
+        assertFalse(new File(dir, "staged/4.tmp").exists());
+    }
+}
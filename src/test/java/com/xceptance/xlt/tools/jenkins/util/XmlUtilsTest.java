@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014-2020 Xceptance Software Technologies GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.xceptance.xlt.tools.jenkins.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XmlUtilsTest
+{
+    @Test
+    public void testCompiledExpressionsAreCached() throws Exception
+    {
+        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                                                        .parse(new ByteArrayInputStream("<r><v>12</v></r>".getBytes(StandardCharsets.UTF_8)));
+
+        final String xpath = "/r/v[number() > " + System.nanoTime() + "]";
+        final long hits = XmlUtils.getXPathCacheHits();
+        final long misses = XmlUtils.getXPathCacheMisses();
+
+        assertNull(XmlUtils.evaluateXPath(document, xpath));
+        assertNull(XmlUtils.evaluateXPath(document, xpath));
+        assertEquals(12.0, XmlUtils.evaluateXPath(document, "/r/v", Double.class), 0.0);
+
+        assertEquals(misses + 2, XmlUtils.getXPathCacheMisses());
+        assertEquals(hits + 1, XmlUtils.getXPathCacheHits());
+        assertSame(XmlUtils.compile(xpath), XmlUtils.compile(xpath));
+    }
+}